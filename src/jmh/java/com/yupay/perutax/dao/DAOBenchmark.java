@@ -0,0 +1,96 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import com.yupay.perutax.entities.TaxAccount;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips of the data access layer against a live PostgreSQL
+ * database (a local or disposable instance, never production),
+ * reading the tax accounts table. The connection settings are read
+ * from the file in system property {@code perutax.jmh.settings}, or
+ * else from (user.home)/.yupay/perutax/jpa/developer.properties, as
+ * the DAO tests do. Excluded from the default run, see build.gradle.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DAOBenchmark {
+    /**
+     * An existing account id, to fetch by id.
+     */
+    private String someId;
+
+    /**
+     * Starts the persistence unit.
+     */
+    @Setup
+    public void setup() {
+        var settings = System.getProperty("perutax.jmh.settings", "");
+        DAOSource.get().initPersistence(settings.isBlank()
+                ? Path.of(System.getProperty("user.home"),
+                ".yupay",
+                "perutax",
+                "jpa",
+                "developer.properties")
+                : Path.of(settings));
+        var page = DAO.taxAccount().findNextPage("id", true, null, 1);
+        if (page.isEmpty())
+            throw new IllegalStateException("Tax accounts table is empty.");
+        someId = page.get(0).getId();
+    }
+
+    /**
+     * Stops the persistence unit.
+     */
+    @TearDown
+    public void tearDown() {
+        DAOSource.get().stopPersistence();
+    }
+
+    @Benchmark
+    public long count() {
+        return DAO.taxAccount().count();
+    }
+
+    @Benchmark
+    public TaxAccount fetch() {
+        return DAO.taxAccount().fetch(someId);
+    }
+
+    @Benchmark
+    public void firstPage(Blackhole bh) {
+        DAO.taxAccount().findNextPage("id", true, null, 200).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void streamAll(Blackhole bh) {
+        try (var s = DAO.taxAccount().findAll()) {
+            s.forEach(bh::consume);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.entities.functionals;
+
+import com.yupay.perutax.entities.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Boolean.parseBoolean;
+
+/**
+ * Throughput of the line parsers used to import reference data,
+ * against the former regular expression based implementations
+ * (kept here as baseline). Each invocation parses a batch of
+ * {@value #LINES} lines shaped as the files in the model folder.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParserBenchmark {
+    /**
+     * Lines per invocation.
+     */
+    private static final int LINES = 1_000;
+    /**
+     * Baseline date formatter.
+     */
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("uuuu-MM-dd");
+    /**
+     * Shared parser instances.
+     */
+    private final XRateParser xrateParser = new XRateParser();
+    private final TaxAccountParser accountParser = new TaxAccountParser();
+    private final TypeFolioParser folioParser = new TypeFolioParser();
+    /**
+     * The sample lines.
+     */
+    private String[] xrates;
+    private String[] accounts;
+    private String[] folios;
+
+    /**
+     * Builds the sample lines.
+     */
+    @Setup
+    public void setup() {
+        xrates = new String[LINES];
+        accounts = new String[LINES];
+        folios = new String[LINES];
+        var date = LocalDate.of(2000, 1, 1);
+        for (int i = 0; i < LINES; i++) {
+            xrates[i] = "%s,%d.%03d,%d.%03d".formatted(date.plusDays(i), 3, 500 + i % 400, 3, 510 + i % 400);
+            accounts[i] = "%08d|Cuenta de prueba número %d|%s|PEN|%s|%s".formatted(
+                    10_000_000 + i, i,
+                    i % 2 == 0 ? "DEBIT" : "CREDIT",
+                    i % 3 == 0 ? "" : CostGroup.values()[i % CostGroup.values().length].name(),
+                    i % 2 == 0);
+            folios[i] = "%02d;TIPO %d;(\\d){4}|E001|F(\\d|\\w){3};\\d{1,8};true;%s;false;true"
+                    .formatted(i % 100, i, i % 2 == 0);
+        }
+    }
+
+    @Benchmark
+    public void xrateScanner(Blackhole bh) {
+        for (var s : xrates) bh.consume(xrateParser.apply(s));
+    }
+
+    @Benchmark
+    public void xrateRegex(Blackhole bh) {
+        for (var s : xrates) bh.consume(regexXRate(s));
+    }
+
+    @Benchmark
+    public void taxAccountScanner(Blackhole bh) {
+        for (var s : accounts) bh.consume(accountParser.apply(s));
+    }
+
+    @Benchmark
+    public void taxAccountRegex(Blackhole bh) {
+        for (var s : accounts) bh.consume(regexTaxAccount(s));
+    }
+
+    @Benchmark
+    public void typeFolioScanner(Blackhole bh) {
+        for (var s : folios) bh.consume(folioParser.apply(s));
+    }
+
+    @Benchmark
+    public void typeFolioSplit(Blackhole bh) {
+        for (var s : folios) bh.consume(splitTypeFolio(s));
+    }
+
+    /**
+     * Former XRateParser implementation.
+     *
+     * @param s the line.
+     * @return the parsed xrate.
+     */
+    private static XRate regexXRate(String s) {
+        if (s == null || s.isBlank()) return null;
+        var str = s.strip();
+        if (!str.matches("\\d{4}-\\d{2}-\\d{2}[,;|]\\d+\\.\\d+[,;|]\\d+\\.\\d+"))
+            return null;
+        var parts = str.split("[,;|]");
+        var xrte = new XRate();
+        xrte.setTaxDate(LocalDate.parse(parts[0], FORMATTER));
+        xrte.setPrch(new BigDecimal(parts[1]));
+        xrte.setSale(new BigDecimal(parts[2]));
+        return xrte;
+    }
+
+    /**
+     * Former TaxAccountParser implementation.
+     *
+     * @param s the line.
+     * @return the parsed account.
+     */
+    private static TaxAccount regexTaxAccount(String s) {
+        if (s == null || s.isBlank()) return null;
+        var parts = s.strip().split("[|;]", -1);
+        var r = new TaxAccount();
+        r.setId(parts[0]);
+        r.setName(parts[1].toUpperCase());
+        r.setNature(AccountNature.valueOf(parts[2]));
+        r.setCurrency(Currenci.valueOf(parts[3]));
+        if (!parts[4].isBlank()) r.setGroupCost(CostGroup.valueOf(parts[4]));
+        r.setUsable(Boolean.parseBoolean(parts[5]));
+        r.setTrash(false);
+        return r;
+    }
+
+    /**
+     * Former TypeFolioParser implementation.
+     *
+     * @param s the line.
+     * @return the parsed folio type.
+     */
+    private static TypeFolio splitTypeFolio(String s) {
+        if (s == null || s.isBlank()) return null;
+        var parts = s.strip().split(";", -1);
+        var r = new TypeFolio();
+        r.setId(parts[0]);
+        r.setTitle(parts[1].strip().toUpperCase());
+        r.setRegexSerie(parts[2].strip());
+        r.setRegexNumber(parts[3].strip());
+        r.setCtxtPurchase(parseBoolean(parts[4].strip()));
+        r.setCtxtSale(parseBoolean(parts[5].strip()));
+        r.setCtxtForeign(parseBoolean(parts[6].strip()));
+        r.setCtxtTaxCredit(parseBoolean(parts[7].strip()));
+        r.setTrash(false);
+        return r;
+    }
+}
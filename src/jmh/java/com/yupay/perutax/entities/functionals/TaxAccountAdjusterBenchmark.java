@@ -0,0 +1,102 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.entities.functionals;
+
+import com.yupay.perutax.entities.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.math.RoundingMode.HALF_UP;
+
+/**
+ * Throughput of the tax account balance adjustment for the lines
+ * of a journal entry. Only the aggregation of the balance deltas
+ * is measured, without applying them to the database.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TaxAccountAdjusterBenchmark {
+    /**
+     * Journal lines per invocation.
+     */
+    @Param({"10", "1000"})
+    public int lines;
+    /**
+     * The journal lines.
+     */
+    private List<JournalDt> detail;
+    /**
+     * The exchange rate.
+     */
+    private final BigDecimal xrate = new BigDecimal("3.812");
+
+    /**
+     * Builds 40 accounts, half in each currency and nature,
+     * and the lines spread over them.
+     */
+    @Setup
+    public void setup() {
+        var accounts = new TaxAccount[40];
+        for (int i = 0; i < accounts.length; i++) {
+            var acc = new TaxAccount();
+            acc.setId("%08d".formatted(i));
+            acc.setNature(i % 2 == 0 ? AccountNature.DEBIT : AccountNature.CREDIT);
+            acc.setCurrency(i % 4 < 2 ? Currenci.PEN : Currenci.USD);
+            accounts[i] = acc;
+        }
+        detail = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            var acc = accounts[i % accounts.length];
+            var amount = BigDecimal.valueOf(100 + i * 37L, 2);
+            var dt = new JournalDt();
+            dt.setAccount(acc);
+            if (i % 3 == 0) {
+                dt.setDebitFc(amount);
+                dt.setDebitSc(amount.multiply(xrate).setScale(2, HALF_UP));
+            } else {
+                dt.setCreditFc(amount);
+                dt.setCreditSc(amount.multiply(xrate).setScale(2, HALF_UP));
+            }
+            detail.add(dt);
+        }
+    }
+
+    @Benchmark
+    public void penJournal(Blackhole bh) {
+        var adjuster = new TaxAccountAdjuster(Currenci.PEN, BigDecimal.ONE);
+        detail.forEach(adjuster);
+        bh.consume(adjuster.deltas());
+    }
+
+    @Benchmark
+    public void usdJournal(Blackhole bh) {
+        var adjuster = new TaxAccountAdjuster(Currenci.USD, xrate);
+        detail.forEach(adjuster);
+        bh.consume(adjuster.deltas());
+    }
+}
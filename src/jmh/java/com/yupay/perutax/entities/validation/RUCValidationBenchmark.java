@@ -0,0 +1,64 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.entities.validation;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the local RUC validation, over a mix of
+ * valid numbers, bad check digits and malformed inputs,
+ * one by one and as a text column of 10000 lines.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RUCValidationBenchmark {
+    /**
+     * The shared validator.
+     */
+    private final RUCValidation validation = new RUCValidation();
+    /**
+     * The sample inputs.
+     */
+    private final String[] samples = {
+            "20604427909", "10700968133", "20100070970", "10700968132",
+            "30604427909", "2060442790", "1070096813a", ""
+    };
+    /**
+     * The samples repeated as a text column.
+     */
+    private final String column = String.join("\n", samples).repeat(1_250);
+
+    @Benchmark
+    public void test(Blackhole bh) {
+        for (var s : samples) bh.consume(validation.test(s));
+    }
+
+    @Benchmark
+    public BitSet failures() {
+        return validation.failures(column);
+    }
+}
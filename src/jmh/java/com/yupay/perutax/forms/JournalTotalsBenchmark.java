@@ -0,0 +1,93 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.forms;
+
+import com.yupay.perutax.entities.JournalDt;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.math.RoundingMode.HALF_UP;
+
+/**
+ * Throughput of the journal totals, computed as in
+ * JournalCard.updateTotals: system currency amounts are
+ * recomputed from the exchange rate, then the four columns
+ * are reduced with one stream each.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JournalTotalsBenchmark {
+    /**
+     * Journal lines.
+     */
+    @Param({"10", "100", "1000"})
+    public int lines;
+    /**
+     * The exchange rate.
+     */
+    private final BigDecimal rte = new BigDecimal("3.812");
+    /**
+     * The journal lines.
+     */
+    private List<JournalDt> detail;
+
+    /**
+     * Builds the journal lines, alternating debit and credit.
+     */
+    @Setup
+    public void setup() {
+        detail = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            var dt = new JournalDt();
+            var amount = BigDecimal.valueOf(100 + i * 37L, 2);
+            if (i % 2 == 0) dt.setDebitFc(amount);
+            else dt.setCreditFc(amount);
+            detail.add(dt);
+        }
+    }
+
+    @Benchmark
+    public void updateTotals(Blackhole bh) {
+        detail.forEach(l -> l.setDebitSc(l.getDebitFc().multiply(rte)
+                .setScale(2, HALF_UP)));
+        detail.forEach(l -> l.setCreditSc(l.getCreditFc().multiply(rte)
+                .setScale(2, HALF_UP)));
+        bh.consume(detail.stream()
+                .map(JournalDt::getDebitFc)
+                .reduce(new BigDecimal("0.00"), BigDecimal::add));
+        bh.consume(detail.stream()
+                .map(JournalDt::getCreditFc)
+                .reduce(new BigDecimal("0.00"), BigDecimal::add));
+        bh.consume(detail.stream()
+                .map(JournalDt::getDebitSc)
+                .reduce(new BigDecimal("0.00"), BigDecimal::add));
+        bh.consume(detail.stream()
+                .map(JournalDt::getCreditSc)
+                .reduce(new BigDecimal("0.00"), BigDecimal::add));
+    }
+}
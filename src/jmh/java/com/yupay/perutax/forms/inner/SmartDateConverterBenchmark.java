@@ -0,0 +1,53 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.forms.inner;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the smart date converter, using one
+ * input of each accepted format plus an invalid one.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SmartDateConverterBenchmark {
+    /**
+     * The shared converter.
+     */
+    private final SmartDateConverter converter = new SmartDateConverter();
+    /**
+     * The sample user inputs.
+     */
+    private final String[] samples = {
+            "15", "15/03", "15-03-2022", "15.3.22", "1503", "150322",
+            "15032022", "+3", "-10", "hoy", "32/13"
+    };
+
+    @Benchmark
+    public void fromString(Blackhole bh) {
+        for (var s : samples) bh.consume(converter.fromString(s));
+    }
+}
@@ -51,4 +51,9 @@ public final class LocalUser {
      * with different tokens for different purposes.
      */
     public static final Path TOKENS = PERUTAX.resolve("tokens");
+    /**
+     * Blobs folder, within PERUTAX containing the content
+     * addressed files of electronic folios (pdf, xml, cdr).
+     */
+    public static final Path BLOBS = PERUTAX.resolve("blobs");
 }
@@ -18,7 +18,10 @@
 
 package com.yupay.perutax;
 
+import com.yupay.perutax.concurrent.IOScheduler;
+import com.yupay.perutax.dao.DAOCache;
 import com.yupay.perutax.dao.DAOSource;
+import com.yupay.perutax.dao.SearchIndex;
 import com.yupay.perutax.forms.PeruTaxFXApp;
 import javafx.application.Application;
 
@@ -38,6 +41,10 @@ public class PeruTaxApp {
     public static void main(String[] args) {
         DAOSource.get().initPersistence(LocalUser.JPA
                 .resolve("developer.properties"));
+        IOScheduler.get().configure(DAOSource.get().maxConnections(),
+                Boolean.getBoolean("perutax.io.virtual-threads"));
+        IOScheduler.lane("warmup").schedule(DAOCache.get()::warmup);
+        IOScheduler.lane("warmup").schedule(SearchIndex::preloadAll);
         Application.launch(PeruTaxFXApp.class, args);
     }
 }
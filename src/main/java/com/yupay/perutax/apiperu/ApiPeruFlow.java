@@ -18,6 +18,7 @@
 
 package com.yupay.perutax.apiperu;
 
+import com.yupay.perutax.concurrent.IOScheduler;
 import com.yupay.perutax.entities.Person;
 import com.yupay.perutax.forms.ErrorAlert;
 import freetimelabs.io.reactorfx.schedulers.FxSchedulers;
@@ -146,9 +147,9 @@ public final class ApiPeruFlow {
         Mono.fromSupplier(new ApiPeruRequestBuilder()
                         .withDocument(getDocument())
                         .withEndpoint(endpoint))
-                .subscribeOn(Schedulers.single())
-                .publishOn(FxSchedulers.fxThread())
                 .map(processor)
+                .subscribeOn(IOScheduler.lane("apiperu:" + endpoint))
+                .publishOn(FxSchedulers.fxThread())
                 .subscribe(getOnSuccess(), getOnError());
 
     }
@@ -0,0 +1,241 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.blobs;
+
+import com.yupay.perutax.LocalUser;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Content addressed file store. Each blob is saved once, named
+ * after the SHA-256 digest of its (uncompressed) content, so
+ * the same document stored twice takes the space of one; and
+ * it's read and written as a stream, never as a whole array.
+ * <br/>
+ * Blobs are laid out as {@code root/ab/abcdef...}, where
+ * {@code ab} are the first two hex digits of the digest. A
+ * compressed blob has the {@code .gz} suffix. Writes go to a
+ * temporary file which is atomically moved into place, so a
+ * blob is either complete or absent.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class BlobStore {
+    /**
+     * The digest algorithm.
+     */
+    private static final String ALGORITHM = "SHA-256";
+    /**
+     * The digest length, in hex digits.
+     */
+    private static final int DIGEST_LENGTH = 64;
+    /**
+     * The suffix of compressed blobs.
+     */
+    private static final String GZIP = ".gz";
+    /**
+     * The streams buffer size.
+     */
+    private static final int BUFFER = 64 * 1024;
+    /**
+     * The root folder.
+     */
+    private final Path root;
+
+    /**
+     * Default constructor.
+     *
+     * @param root the root folder (created on first write).
+     */
+    public BlobStore(@NotNull Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Static factory.
+     *
+     * @return the store of the local user.
+     * @see LocalUser#BLOBS
+     */
+    @Contract("->new")
+    public static @NotNull BlobStore local() {
+        return new BlobStore(LocalUser.BLOBS);
+    }
+
+    /**
+     * Writes the content of a stream as a blob. If a blob
+     * with the same content already exists, it's kept and
+     * nothing is written.
+     *
+     * @param in       the content (not closed).
+     * @param compress true to gzip the blob on disk.
+     * @return the digest of the content.
+     * @throws IOException if something fails.
+     */
+    public @NotNull String put(@NotNull InputStream in, boolean compress) throws IOException {
+        var tmp = temporary();
+        try {
+            var md = messageDigest();
+            try (var out = output(tmp, compress)) {
+                new DigestInputStream(in, md).transferTo(out);
+            }
+            var digest = HexFormat.of().formatHex(md.digest());
+            if (!contains(digest)) {
+                var target = path(digest, compress);
+                Files.createDirectories(target.getParent());
+                Files.move(tmp, target, ATOMIC_MOVE);
+            }
+            return digest;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Writes the content of a file as a blob.
+     *
+     * @param file     the file.
+     * @param compress true to gzip the blob on disk.
+     * @return the digest of the content.
+     * @throws IOException if something fails.
+     * @see #put(InputStream, boolean)
+     */
+    public @NotNull String put(@NotNull Path file, boolean compress) throws IOException {
+        try (var in = Files.newInputStream(file)) {
+            return put(in, compress);
+        }
+    }
+
+    /**
+     * Checks if a blob exists.
+     *
+     * @param digest the blob digest.
+     * @return true if exists.
+     * @throws IllegalArgumentException if it isn't a digest.
+     */
+    public boolean contains(@NotNull String digest) {
+        return Files.exists(path(digest, false))
+                || Files.exists(path(digest, true));
+    }
+
+    /**
+     * Opens a blob for reading its (uncompressed) content.
+     *
+     * @param digest the blob digest.
+     * @return the stream, to be closed by the caller.
+     * @throws NoSuchFileException      if the blob doesn't exist.
+     * @throws IOException              if something fails.
+     * @throws IllegalArgumentException if it isn't a digest.
+     */
+    public @NotNull InputStream open(@NotNull String digest) throws IOException {
+        var plain = path(digest, false);
+        if (Files.exists(plain)) return Files.newInputStream(plain);
+        var gzip = path(digest, true);
+        if (Files.exists(gzip)) return new GZIPInputStream(Files.newInputStream(gzip), BUFFER);
+        throw new NoSuchFileException(plain.toString(), null, "Blob not found.");
+    }
+
+    /**
+     * Copies the (uncompressed) content of a blob into a file,
+     * ie: to open it with an external viewer.
+     *
+     * @param digest the blob digest.
+     * @param target the target file (replaced if exists).
+     * @return the target file.
+     * @throws IOException if something fails.
+     */
+    public @NotNull Path copy(@NotNull String digest, @NotNull Path target) throws IOException {
+        try (var in = open(digest)) {
+            Files.copy(in, target, REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    /**
+     * Resolves the path of a blob.
+     *
+     * @param digest     the blob digest.
+     * @param compressed true for the compressed variant.
+     * @return the path (may not exist).
+     * @throws IllegalArgumentException if it isn't a digest.
+     */
+    private @NotNull Path path(@NotNull String digest, boolean compressed) {
+        if (digest.length() != DIGEST_LENGTH || !digest.chars().allMatch(HexFormat::isHexDigit))
+            throw new IllegalArgumentException("Not a blob digest: " + digest);
+        var name = digest.toLowerCase();
+        return root.resolve(name.substring(0, 2)).resolve(compressed ? name + GZIP : name);
+    }
+
+    /**
+     * Creates a temporary file in the store, so it
+     * can be atomically moved within the file system.
+     *
+     * @return the temporary file.
+     * @throws IOException if something fails.
+     */
+    private @NotNull Path temporary() throws IOException {
+        var tmp = root.resolve("tmp");
+        Files.createDirectories(tmp);
+        return Files.createTempFile(tmp, "blob", ".tmp");
+    }
+
+    /**
+     * Opens the output stream of a temporary file.
+     *
+     * @param tmp      the temporary file.
+     * @param compress true to gzip the content.
+     * @return the stream.
+     * @throws IOException if something fails.
+     */
+    private static @NotNull OutputStream output(@NotNull Path tmp, boolean compress) throws IOException {
+        var out = Files.newOutputStream(tmp);
+        return compress ? new GZIPOutputStream(out, BUFFER) : out;
+    }
+
+    /**
+     * Creates the message digest.
+     *
+     * @return a new SHA-256 message digest.
+     */
+    private static @NotNull MessageDigest messageDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            //Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.blobs;
+
+import com.yupay.perutax.entities.FolioFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * The documents of a folio file. Each one knows its column in
+ * the {@code folio_file} table, which holds the content shared
+ * by every client; its digest in the {@link FolioFile} entity;
+ * and how it's kept in the local blob store: the PDF is already
+ * compressed, while the XML documents are gzipped.
+ * <br/>
+ * The documents are stored and read through {@code DAOFolioFile}.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public enum FolioDocument {
+    /**
+     * PDF representation of folio.
+     */
+    PDF("pdf", false, ".pdf", false, FolioFile::getPdfSha, FolioFile::setPdfSha),
+    /**
+     * XML file (for electronic - UBL compliant folios).
+     */
+    XML("xml", true, ".xml", true, FolioFile::getXmlSha, FolioFile::setXmlSha),
+    /**
+     * XML reception certificate (for electronic - SUNAT/PSE/OSE compliants).
+     */
+    CDR("cdr", true, ".xml", true, FolioFile::getCdrSha, FolioFile::setCdrSha);
+    /**
+     * The content column.
+     */
+    private final String column;
+    /**
+     * True if the column is text (UTF-8), false if bytea.
+     */
+    private final boolean text;
+    /**
+     * The file extension.
+     */
+    private final String extension;
+    /**
+     * True to gzip the blob on disk.
+     */
+    private final boolean compress;
+    /**
+     * The digest getter.
+     */
+    private final Function<FolioFile, String> getter;
+    /**
+     * The digest setter.
+     */
+    private final BiConsumer<FolioFile, String> setter;
+
+    /**
+     * Default constructor.
+     *
+     * @param column    the content column.
+     * @param text      true if the column is text, false if bytea.
+     * @param extension the file extension.
+     * @param compress  true to gzip the blob on disk.
+     * @param getter    the digest getter.
+     * @param setter    the digest setter.
+     */
+    FolioDocument(@NotNull String column,
+                  boolean text,
+                  @NotNull String extension,
+                  boolean compress,
+                  @NotNull Function<FolioFile, String> getter,
+                  @NotNull BiConsumer<FolioFile, String> setter) {
+        this.column = column;
+        this.text = text;
+        this.extension = extension;
+        this.compress = compress;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #column}
+     */
+    public @NotNull String getColumn() {
+        return column;
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #text}
+     */
+    public boolean isText() {
+        return text;
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #extension}
+     */
+    public @NotNull String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #compress}
+     */
+    public boolean isCompress() {
+        return compress;
+    }
+
+    /**
+     * Gets the digest of this document.
+     *
+     * @param file the folio file.
+     * @return the digest, or null if there's no such document.
+     */
+    public @Nullable String digest(@NotNull FolioFile file) {
+        return getter.apply(file);
+    }
+
+    /**
+     * Sets the digest of this document.
+     *
+     * @param file   the folio file.
+     * @param digest the digest, or null if there's no such document.
+     */
+    public void digest(@NotNull FolioFile file, @Nullable String digest) {
+        setter.accept(file, digest);
+    }
+}
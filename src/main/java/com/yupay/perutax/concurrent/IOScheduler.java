@@ -0,0 +1,554 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.concurrent;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * The application wide scheduler for blocking work: database
+ * queries and web service calls. It's a bounded elastic pool
+ * sized from the JDBC connection pool (more threads would only
+ * wait for a connection), so concurrent screens load in parallel.
+ * <br/>
+ * Work is submitted through named lanes (ie: one per flow), which
+ * share the threads but keep their own metrics: queue depth, wait
+ * time (from submission to start) and run time.
+ * <br/>
+ * On a JDK with virtual threads (21+), the virtual threads mode is
+ * enabled with {@code -Dperutax.io.virtual-threads=true}: each task
+ * runs on its own virtual thread. Then the threads no longer bound
+ * the database work; the connection permits of the pooled data
+ * source do (see {@code DAOPool}), held from the opening of a
+ * connection until it's closed. On older JDKs the setting is
+ * ignored.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class IOScheduler {
+    /**
+     * Threads used until {@link #configure(int, boolean)} is called.
+     */
+    public static final int DEFAULT_THREADS = 10;
+    /**
+     * Maximum count of tasks waiting for a thread.
+     */
+    private static final int QUEUE_CAP = 100_000;
+    /**
+     * Seconds before an idle thread is released.
+     */
+    private static final int TTL_SECONDS = 60;
+    /**
+     * The single instance.
+     */
+    private static final IOScheduler INSTANCE = new IOScheduler();
+    /**
+     * The lanes, by name.
+     */
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    /**
+     * The shared pool, lazily created.
+     */
+    private volatile Scheduler pool;
+    /**
+     * The threads cap of the pool.
+     */
+    private volatile int threads = DEFAULT_THREADS;
+    /**
+     * Whether virtual threads were requested.
+     */
+    private volatile boolean virtual;
+    /**
+     * Whether the pool is backed by virtual threads.
+     */
+    private volatile boolean virtualPool;
+
+    /**
+     * Private constructor - singleton pattern.
+     */
+    private IOScheduler() {
+    }
+
+    /**
+     * Constructor of a standalone scheduler, not shared
+     * with the application (ie: for testing purposes).
+     *
+     * @param threads the threads cap (at least 2).
+     * @param virtual true to run on virtual threads, if available.
+     */
+    IOScheduler(int threads, boolean virtual) {
+        configure(threads, virtual);
+    }
+
+    /**
+     * Static getter of the single instance.
+     *
+     * @return the single IO scheduler.
+     */
+    @NotNull
+    public static IOScheduler get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Static getter of a lane. Shorthand of
+     * {@link #get()}.{@link #laneOf(String)}
+     *
+     * @param name the lane name.
+     * @return the lane scheduler.
+     */
+    @NotNull
+    public static Scheduler lane(@NotNull String name) {
+        return INSTANCE.laneOf(name);
+    }
+
+    /**
+     * Sets the threads cap and the execution mode. It's meant
+     * to be called on startup, because tasks already running
+     * on the former pool are interrupted.
+     *
+     * @param threads the threads cap (at least 2).
+     * @param virtual true to run on virtual threads, if available.
+     */
+    public synchronized void configure(int threads, boolean virtual) {
+        this.threads = Math.max(2, threads);
+        this.virtual = virtual;
+        var old = pool;
+        pool = null;
+        if (old != null) old.dispose();
+    }
+
+    /**
+     * Getter for the threads cap.
+     *
+     * @return the maximum count of threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Checks if the tasks run on virtual threads.
+     *
+     * @return true if virtual threads were requested and available.
+     */
+    public boolean isVirtual() {
+        pool();
+        return virtualPool;
+    }
+
+    /**
+     * Gets (or creates) the lane with the given name.
+     *
+     * @param name the lane name.
+     * @return the lane scheduler.
+     */
+    @NotNull
+    public Scheduler laneOf(@NotNull String name) {
+        return lanes.computeIfAbsent(name, Lane::new);
+    }
+
+    /**
+     * Takes a snapshot of the metrics of every lane.
+     *
+     * @return the metrics, by lane name.
+     */
+    @NotNull
+    public List<Stats> stats() {
+        return lanes.values().stream()
+                .map(Lane::snapshot)
+                .sorted(Comparator.comparing(Stats::lane))
+                .toList();
+    }
+
+    /**
+     * Gets the shared pool, creating it if needed.
+     *
+     * @return the pool.
+     */
+    @NotNull
+    private Scheduler pool() {
+        var r = pool;
+        if (r == null) {
+            synchronized (this) {
+                r = pool;
+                if (r == null) {
+                    var executor = virtual ? virtualExecutor() : null;
+                    virtualPool = executor != null;
+                    r = executor != null
+                            ? Schedulers.fromExecutorService(executor, "perutax-io-virtual")
+                            : Schedulers.newBoundedElastic(threads, QUEUE_CAP, "perutax-io", TTL_SECONDS, true);
+                    pool = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per task.
+     * It's looked up reflectively, since this code targets Java 17.
+     *
+     * @return the executor, or null if virtual threads aren't available.
+     */
+    private static @Nullable ExecutorService virtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            //Older JDK, or preview features not enabled.
+            return null;
+        }
+    }
+
+    /**
+     * Snapshot of the metrics of a lane.
+     *
+     * @param lane         the lane name.
+     * @param submitted    tasks submitted since startup.
+     * @param completed    tasks completed (or failed).
+     * @param queued       tasks waiting for a thread.
+     * @param active       tasks running.
+     * @param waitNanos    total time from submission to start.
+     * @param maxWaitNanos longest time from submission to start.
+     * @param runNanos     total running time.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    public record Stats(String lane,
+                        long submitted,
+                        long completed,
+                        int queued,
+                        int active,
+                        long waitNanos,
+                        long maxWaitNanos,
+                        long runNanos) {
+        /**
+         * Average time from submission to start.
+         *
+         * @return the average wait, in milliseconds.
+         */
+        public double avgWaitMillis() {
+            return completed == 0 ? 0.0 : (double) waitNanos / completed / 1_000_000.0;
+        }
+
+        /**
+         * Average running time.
+         *
+         * @return the average run time, in milliseconds.
+         */
+        public double avgRunMillis() {
+            return completed == 0 ? 0.0 : (double) runNanos / completed / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return "%s: submitted=%d, completed=%d, queued=%d, active=%d, avgWait=%.3fms, maxWait=%.3fms, avgRun=%.3fms"
+                    .formatted(lane, submitted, completed, queued, active, avgWaitMillis(),
+                            maxWaitNanos / 1_000_000.0, avgRunMillis());
+        }
+    }
+
+    /**
+     * A named lane of the shared pool.
+     *
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    private final class Lane implements Scheduler {
+        /**
+         * The lane name.
+         */
+        private final String name;
+        /**
+         * Submitted tasks count.
+         */
+        private final LongAdder submitted = new LongAdder();
+        /**
+         * Completed tasks count.
+         */
+        private final LongAdder completed = new LongAdder();
+        /**
+         * Total wait nanoseconds.
+         */
+        private final LongAdder waitNanos = new LongAdder();
+        /**
+         * Total run nanoseconds.
+         */
+        private final LongAdder runNanos = new LongAdder();
+        /**
+         * Tasks waiting for a thread.
+         */
+        private final AtomicInteger queued = new AtomicInteger();
+        /**
+         * Tasks running.
+         */
+        private final AtomicInteger active = new AtomicInteger();
+        /**
+         * The longest wait, in nanoseconds.
+         */
+        private volatile long maxWait;
+
+        /**
+         * Default constructor.
+         *
+         * @param name the lane name.
+         */
+        private Lane(@NotNull String name) {
+            this.name = name;
+        }
+
+        @Override
+        public @NotNull Disposable schedule(@NotNull Runnable task) {
+            var t = new Task(task, 0L);
+            return t.submit(pool()::schedule);
+        }
+
+        @Override
+        public @NotNull Disposable schedule(@NotNull Runnable task, long delay, @NotNull TimeUnit unit) {
+            var t = new Task(task, unit.toNanos(delay));
+            return t.submit(r -> pool().schedule(r, delay, unit));
+        }
+
+        @Override
+        public @NotNull Disposable schedulePeriodically(@NotNull Runnable task,
+                                                        long initialDelay,
+                                                        long period,
+                                                        @NotNull TimeUnit unit) {
+            return pool().schedulePeriodically(task, initialDelay, period, unit);
+        }
+
+        @Override
+        public @NotNull Worker createWorker() {
+            return new LaneWorker(pool().createWorker());
+        }
+
+        /**
+         * Takes a snapshot of the metrics.
+         *
+         * @return the snapshot.
+         */
+        private @NotNull Stats snapshot() {
+            return new Stats(name,
+                    submitted.sum(),
+                    completed.sum(),
+                    queued.get(),
+                    active.get(),
+                    waitNanos.sum(),
+                    maxWait,
+                    runNanos.sum());
+        }
+
+        @Override
+        public String toString() {
+            return "IOScheduler(" + name + ")";
+        }
+
+        /**
+         * A task measured by the lane. Disposing the task before
+         * it starts removes it from the queue depth.
+         *
+         * @author InfoYupay SACS
+         * @version 1.0
+         */
+        private final class Task implements Runnable, Disposable {
+            /**
+             * Waiting state.
+             */
+            private static final int QUEUED = 0;
+            /**
+             * Running (or ran) state.
+             */
+            private static final int STARTED = 1;
+            /**
+             * Disposed before start state.
+             */
+            private static final int CANCELLED = 2;
+            /**
+             * The actual task.
+             */
+            private final Runnable task;
+            /**
+             * When the task was due, in nanoseconds.
+             */
+            private final long due;
+            /**
+             * The task state.
+             */
+            private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+            /**
+             * Default constructor.
+             *
+             * @param task       the actual task.
+             * @param delayNanos the scheduling delay.
+             */
+            private Task(@NotNull Runnable task, long delayNanos) {
+                this.task = task;
+                this.due = System.nanoTime() + delayNanos;
+                submitted.increment();
+                queued.incrementAndGet();
+            }
+
+            /**
+             * Submits the task, undoing the queue depth
+             * if it's rejected.
+             *
+             * @param schedule the actual scheduling.
+             * @return the disposable of the task.
+             */
+            private @NotNull Disposable submit(@NotNull Function<Runnable, Disposable> schedule) {
+                try {
+                    return Disposables.composite(this, schedule.apply(this));
+                } catch (RuntimeException e) {
+                    dispose();
+                    throw e;
+                }
+            }
+
+            @Override
+            public void run() {
+                if (!state.compareAndSet(QUEUED, STARTED)) return;
+                var start = System.nanoTime();
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                var wait = Math.max(0L, start - due);
+                waitNanos.add(wait);
+                if (wait > maxWait) maxWait = wait;
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    runNanos.add(System.nanoTime() - start);
+                    completed.increment();
+                }
+            }
+
+            @Override
+            public void dispose() {
+                if (state.compareAndSet(QUEUED, CANCELLED)) queued.decrementAndGet();
+            }
+
+            @Override
+            public boolean isDisposed() {
+                return state.get() == CANCELLED;
+            }
+        }
+
+        /**
+         * A worker of the lane, backed by a worker of the pool.
+         *
+         * @author InfoYupay SACS
+         * @version 1.0
+         */
+        private final class LaneWorker implements Worker {
+            /**
+             * The worker of the pool.
+             */
+            private final Worker worker;
+            /**
+             * The tasks not yet disposed, so disposing
+             * the worker keeps the queue depth right.
+             */
+            private final Disposable.Composite tasks = Disposables.composite();
+
+            /**
+             * Default constructor.
+             *
+             * @param worker the worker of the pool.
+             */
+            private LaneWorker(@NotNull Worker worker) {
+                this.worker = worker;
+            }
+
+            @Override
+            public @NotNull Disposable schedule(@NotNull Runnable task) {
+                return track(new Task(task, 0L), r -> worker.schedule(r));
+            }
+
+            @Override
+            public @NotNull Disposable schedule(@NotNull Runnable task, long delay, @NotNull TimeUnit unit) {
+                return track(new Task(task, unit.toNanos(delay)), r -> worker.schedule(r, delay, unit));
+            }
+
+            @Override
+            public @NotNull Disposable schedulePeriodically(@NotNull Runnable task,
+                                                            long initialDelay,
+                                                            long period,
+                                                            @NotNull TimeUnit unit) {
+                return worker.schedulePeriodically(task, initialDelay, period, unit);
+            }
+
+            /**
+             * Schedules a task, tracking it until it completes.
+             *
+             * @param t        the task.
+             * @param schedule the actual scheduling.
+             * @return the disposable of the task.
+             */
+            @Contract("_,_->new")
+            private @NotNull Disposable track(@NotNull Task t,
+                                              @NotNull Function<Runnable, Disposable> schedule) {
+                tasks.add(t);
+                try {
+                    return Disposables.composite(t, schedule.apply(() -> {
+                        try {
+                            t.run();
+                        } finally {
+                            tasks.remove(t);
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    tasks.remove(t);
+                    t.dispose();
+                    throw e;
+                }
+            }
+
+            @Override
+            public void dispose() {
+                tasks.dispose();
+                worker.dispose();
+            }
+
+            @Override
+            public boolean isDisposed() {
+                return worker.isDisposed();
+            }
+        }
+    }
+}
@@ -30,4 +30,13 @@ public interface BookConstants {
      * This constant is for journal book (PLE spec).
      */
     String JOURNAL = "050100";
+    /**
+     * This constant is for journal book's chart of
+     * accounts detail (PLE spec).
+     */
+    String JOURNAL_ACCOUNTS = "050300";
+    /**
+     * This constant is for sales book (PLE spec).
+     */
+    String SALES = "140100";
 }
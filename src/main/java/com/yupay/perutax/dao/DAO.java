@@ -184,6 +184,36 @@ public final class DAO {
         return new DAOSaleScheme();
     }
 
+    /**
+     * Factory of entity DAO implementation.
+     *
+     * @return a new DAO for Sales.
+     */
+    @Contract("->new")
+    public static @NotNull DAOBase<Sale, DAOSale> sale() {
+        return new DAOSale();
+    }
+
+    /**
+     * Factory of entity DAO implementation.
+     *
+     * @return a new DAO for Account balances.
+     */
+    @Contract("->new")
+    public static @NotNull DAOBase<AccountBalance, DAOAccountBalance> accountBalance() {
+        return new DAOAccountBalance();
+    }
+
+    /**
+     * Factory of entity DAO implementation.
+     *
+     * @return a new DAO for Folio files.
+     */
+    @Contract("->new")
+    public static @NotNull DAOBase<FolioFile, DAOFolioFile> folioFile() {
+        return new DAOFolioFile();
+    }
+
     /**
      * Utility method to fetch a DAO implementation for a given tClass.
      *
@@ -223,6 +253,12 @@ public final class DAO {
             return (DAOBase<T, U>) mUnit();
         } else if (tClass == SaleScheme.class) {
             return (DAOBase<T, U>) saleScheme();
+        } else if (tClass == Sale.class) {
+            return (DAOBase<T, U>) sale();
+        } else if (tClass == FolioFile.class) {
+            return (DAOBase<T, U>) folioFile();
+        } else if (tClass == AccountBalance.class) {
+            return (DAOBase<T, U>) accountBalance();
         } else {
             throw new NoSuchElementException("Cannot identify a DAO implementation for " + tClass);
         }
@@ -0,0 +1,330 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.dao;
+
+import com.yupay.perutax.entities.AccountBalance;
+import com.yupay.perutax.entities.Journal;
+import com.yupay.perutax.entities.TaxAccount;
+import com.yupay.perutax.entities.TaxPeriod;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * DAO implementation for Account balance entities.
+ * <br/>
+ * Account balances are a snapshot of each tax account per tax
+ * period, so the trial balance of any period is read without
+ * scanning the journal detail. They're maintained with native
+ * statements, within the same transaction that writes the
+ * journal entries:
+ * <ul>
+ *     <li>when posting, the movements of the new journal entries are
+ *     added to the period rows, and the opening and closing balances
+ *     of the later periods are shifted by the same net amount;</li>
+ *     <li>when a period is closed, its rows are rebuilt from the
+ *     journal detail and the previous period balances, and later
+ *     periods are shifted by the difference.</li>
+ * </ul>
+ * The foreign currency amounts follow the same rule used to adjust
+ * the tax account balances: the journal amounts if the journal is in
+ * USD, otherwise the system currency amounts divided by the exchange
+ * rate.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class DAOAccountBalance extends DAOBase<AccountBalance, DAOAccountBalance> {
+    /**
+     * Movements of journal entries per period and account,
+     * filtered by the given condition.
+     */
+    private static final String MOVEMENTS = "SELECT J.tax_period AS period, D.account_id AS account, " +
+            "COALESCE(sum(D.debit_sc), 0) AS debit_sc, " +
+            "COALESCE(sum(D.credit_sc), 0) AS credit_sc, " +
+            "COALESCE(sum(CASE WHEN J.currency = 'USD' THEN D.debit_fc " +
+            "ELSE round(D.debit_sc / NULLIF(J.xrate, 0), 2) END), 0) AS debit_fc, " +
+            "COALESCE(sum(CASE WHEN J.currency = 'USD' THEN D.credit_fc " +
+            "ELSE round(D.credit_sc / NULLIF(J.xrate, 0), 2) END), 0) AS credit_fc " +
+            "FROM public.journal J JOIN public.journal_dt D ON D.trans_id = J.id " +
+            "WHERE %s GROUP BY J.tax_period, D.account_id";
+    /**
+     * Shifts the balances of the periods after the given one.
+     */
+    private static final String SHIFT = "UPDATE public.account_balance B SET " +
+            "opening_sc = B.opening_sc + %1$s.net_sc, closing_sc = B.closing_sc + %1$s.net_sc, " +
+            "opening_fc = B.opening_fc + %1$s.net_fc, closing_fc = B.closing_fc + %1$s.net_fc " +
+            "FROM %1$s WHERE B.account = %1$s.account AND B.period > ? " +
+            "AND (%1$s.net_sc <> 0 OR %1$s.net_fc <> 0)";
+    /**
+     * Column list of inserts.
+     */
+    private static final String COLUMNS = "(period, account, opening_sc, debit_sc, credit_sc, closing_sc, " +
+            "opening_fc, debit_fc, credit_fc, closing_fc)";
+    /**
+     * Adds the movements of some journal entries of a single period
+     * (parameters: period, journal ids, period).
+     */
+    private static final String POST = "WITH M AS (" + MOVEMENTS.formatted("J.tax_period = ? AND J.id = ANY (?)") + "), " +
+            "N AS (SELECT account, debit_sc - credit_sc AS net_sc, debit_fc - credit_fc AS net_fc FROM M), " +
+            "S AS (" + SHIFT.formatted("N") + ") " +
+            "INSERT INTO public.account_balance " + COLUMNS + " " +
+            "SELECT M.period, M.account, " +
+            "COALESCE(P.closing_sc, 0), M.debit_sc, M.credit_sc, COALESCE(P.closing_sc, 0) + M.debit_sc - M.credit_sc, " +
+            "COALESCE(P.closing_fc, 0), M.debit_fc, M.credit_fc, COALESCE(P.closing_fc, 0) + M.debit_fc - M.credit_fc " +
+            "FROM M LEFT JOIN LATERAL (SELECT closing_sc, closing_fc FROM public.account_balance X " +
+            "WHERE X.account = M.account AND X.period < M.period ORDER BY X.period DESC LIMIT 1) P ON TRUE " +
+            "ORDER BY M.account " +
+            "ON CONFLICT (period, account) DO UPDATE SET " +
+            "debit_sc = account_balance.debit_sc + EXCLUDED.debit_sc, " +
+            "credit_sc = account_balance.credit_sc + EXCLUDED.credit_sc, " +
+            "closing_sc = account_balance.closing_sc + EXCLUDED.debit_sc - EXCLUDED.credit_sc, " +
+            "debit_fc = account_balance.debit_fc + EXCLUDED.debit_fc, " +
+            "credit_fc = account_balance.credit_fc + EXCLUDED.credit_fc, " +
+            "closing_fc = account_balance.closing_fc + EXCLUDED.debit_fc - EXCLUDED.credit_fc";
+    /**
+     * Rebuilds the rows of a period (every parameter is the period).
+     * Rows are upserted rather than deleted and inserted, so every
+     * row is written once by the statement. The former closing of
+     * each account (O) is the one in effect at the period, so an
+     * account without a row in the period shifts the later ones
+     * only by what actually changed.
+     */
+    private static final String REBUILD = "WITH P AS (SELECT DISTINCT ON (account) account, closing_sc, closing_fc " +
+            "FROM public.account_balance WHERE period < ? ORDER BY account, period DESC), " +
+            "M AS (" + MOVEMENTS.formatted("J.tax_period = ?") + "), " +
+            "F AS (SELECT account, " +
+            "COALESCE(P.closing_sc, 0) AS opening_sc, COALESCE(M.debit_sc, 0) AS debit_sc, COALESCE(M.credit_sc, 0) AS credit_sc, " +
+            "COALESCE(P.closing_fc, 0) AS opening_fc, COALESCE(M.debit_fc, 0) AS debit_fc, COALESCE(M.credit_fc, 0) AS credit_fc " +
+            "FROM P FULL JOIN M USING (account) " +
+            "WHERE M.account IS NOT NULL OR P.closing_sc <> 0 OR P.closing_fc <> 0), " +
+            "O AS (SELECT DISTINCT ON (account) account, closing_sc, closing_fc " +
+            "FROM public.account_balance WHERE period <= ? ORDER BY account, period DESC), " +
+            "N AS (SELECT account, " +
+            "COALESCE(F.opening_sc + F.debit_sc - F.credit_sc, 0) - COALESCE(O.closing_sc, 0) AS net_sc, " +
+            "COALESCE(F.opening_fc + F.debit_fc - F.credit_fc, 0) - COALESCE(O.closing_fc, 0) AS net_fc " +
+            "FROM F FULL JOIN O USING (account)), " +
+            "S AS (" + SHIFT.formatted("N") + "), " +
+            "G AS (DELETE FROM public.account_balance B WHERE B.period = ? " +
+            "AND NOT EXISTS (SELECT 1 FROM F WHERE F.account = B.account)) " +
+            "INSERT INTO public.account_balance " + COLUMNS + " " +
+            "SELECT ?, account, opening_sc, debit_sc, credit_sc, opening_sc + debit_sc - credit_sc, " +
+            "opening_fc, debit_fc, credit_fc, opening_fc + debit_fc - credit_fc FROM F ORDER BY account " +
+            "ON CONFLICT (period, account) DO UPDATE SET " +
+            "opening_sc = EXCLUDED.opening_sc, debit_sc = EXCLUDED.debit_sc, " +
+            "credit_sc = EXCLUDED.credit_sc, closing_sc = EXCLUDED.closing_sc, " +
+            "opening_fc = EXCLUDED.opening_fc, debit_fc = EXCLUDED.debit_fc, " +
+            "credit_fc = EXCLUDED.credit_fc, closing_fc = EXCLUDED.closing_fc";
+
+    /**
+     * Package-private constructor.
+     * Use a static factory.
+     *
+     * @see DAO#accountBalance()
+     */
+    DAOAccountBalance() {
+    }
+
+    @Override
+    protected @NotNull Class<AccountBalance> tClass() {
+        return AccountBalance.class;
+    }
+
+    @Override
+    public @NotNull DAOAccountBalance specialize() {
+        return this;
+    }
+
+    @Override
+    protected @NotNull @Unmodifiable Object id(@NotNull AccountBalance item) {
+        return new AccountBalance.Key(item.getPeriod(), item.getAccount());
+    }
+
+    /**
+     * Reads the trial balance of a tax period: one row per tax
+     * account with balance or movements in the period, sorted
+     * by account id. Accounts without movements in the period
+     * carry their last closing balance as opening and closing.
+     * The rows are read from the snapshot, one per account, through
+     * the (account, period) index; the tax accounts are read first,
+     * so the rows find them in the persistence context.
+     *
+     * @param period the tax period.
+     * @return the trial balance rows (detached).
+     */
+    @SuppressWarnings("unchecked")
+    public @NotNull List<AccountBalance> trialBalance(@NotNull TaxPeriod period) {
+        var em = DAOSource.manager();
+        try {
+            em.createQuery("SELECT A FROM TaxAccount A", TaxAccount.class).getResultList();
+            List<AccountBalance> rows = em.createNativeQuery("SELECT B.* FROM public.tax_account A " +
+                                    "CROSS JOIN LATERAL (SELECT * FROM public.account_balance X " +
+                                    "WHERE X.account = A.id AND X.period <= ?1 " +
+                                    "ORDER BY X.period DESC LIMIT 1) B " +
+                                    "ORDER BY A.id",
+                            AccountBalance.class)
+                    .setParameter(1, period.getId())
+                    .getResultList();
+            var r = new ArrayList<AccountBalance>(rows.size());
+            for (var row : rows) {
+                if (period.getId().equals(row.getPeriod())) {
+                    r.add(row);
+                } else if (row.getClosingSc().signum() != 0 || row.getClosingFc().signum() != 0) {
+                    r.add(carried(period, row));
+                }
+            }
+            return r;
+        } finally {
+            if (em.isOpen()) em.close();
+        }
+    }
+
+    /**
+     * Rebuilds the balances of a tax period from its journal entries,
+     * in its own transaction.
+     *
+     * @param period the tax period.
+     */
+    public void rebuild(@NotNull TaxPeriod period) {
+        var em = DAOSource.manager();
+        var tx = em.getTransaction();
+        try {
+            tx.begin();
+            rebuild(em, period.getId());
+            tx.commit();
+            evict(em);
+            afterWrite();
+        } catch (RuntimeException e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        } finally {
+            if (em.isOpen()) em.close();
+        }
+    }
+
+    /**
+     * Rebuilds the balances of every tax period, in period order
+     * and in a single transaction. Meant to populate the snapshot
+     * of a database with journal entries posted before it existed.
+     */
+    public void rebuildAll() {
+        var em = DAOSource.manager();
+        var tx = em.getTransaction();
+        try {
+            tx.begin();
+            var ids = em.createQuery("SELECT T.id FROM TaxPeriod T ORDER BY T.id", String.class)
+                    .getResultList();
+            for (var id : ids) rebuild(em, id);
+            tx.commit();
+            evict(em);
+            afterWrite();
+        } catch (RuntimeException e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        } finally {
+            if (em.isOpen()) em.close();
+        }
+    }
+
+    /**
+     * Adds the movements of posted journal entries to the balances,
+     * within the active transaction of the given entity manager. The
+     * journal entries must have been flushed, and the tax accounts
+     * locked (see TaxAccountAdjuster), so concurrent postings on the
+     * same accounts are serialized.
+     *
+     * @param em       the entity manager, with an active transaction.
+     * @param journals the posted journal entries.
+     * @throws PersistenceException if the statement fails.
+     */
+    static void post(@NotNull EntityManager em, @NotNull Collection<Journal> journals) {
+        //One statement per period, in period order, so later periods see earlier ones.
+        var byPeriod = new TreeMap<String, List<String>>();
+        for (var j : journals)
+            byPeriod.computeIfAbsent(j.getPeriod().getId(), k -> new ArrayList<>()).add(j.getId());
+        var con = em.unwrap(Connection.class);
+        try (var st = con.prepareStatement(POST)) {
+            for (var e : byPeriod.entrySet()) {
+                st.setString(1, e.getKey());
+                st.setArray(2, con.createArrayOf("text", e.getValue().toArray()));
+                st.setString(3, e.getKey());
+                st.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Cannot update account balances.", e);
+        }
+    }
+
+    /**
+     * Rebuilds the balances of a tax period, within the active
+     * transaction of the given entity manager.
+     *
+     * @param em     the entity manager, with an active transaction.
+     * @param period the tax period id.
+     * @throws PersistenceException if the statement fails.
+     */
+    static void rebuild(@NotNull EntityManager em, @NotNull String period) {
+        var con = em.unwrap(Connection.class);
+        try (var st = con.prepareStatement(REBUILD)) {
+            for (int i = 1; i <= 6; i++) st.setString(i, period);
+            st.executeUpdate();
+        } catch (SQLException e) {
+            throw new PersistenceException("Cannot rebuild account balances of period " + period + ".", e);
+        }
+    }
+
+    /**
+     * Evicts the account balances from the shared cache,
+     * since they're written bypassing JPA.
+     *
+     * @param em any entity manager.
+     */
+    static void evict(@NotNull EntityManager em) {
+        em.getEntityManagerFactory().getCache().evict(AccountBalance.class);
+    }
+
+    /**
+     * Creates the row of an account without movements in a period.
+     *
+     * @param period the tax period.
+     * @param last   the last balance of the account.
+     * @return the carried balance.
+     */
+    private static @NotNull AccountBalance carried(@NotNull TaxPeriod period,
+                                                   @NotNull AccountBalance last) {
+        var r = new AccountBalance();
+        r.setPeriod(period.getId());
+        r.setAccount(last.getAccount());
+        r.setTaxAccount(last.getTaxAccount());
+        r.setOpeningSc(last.getClosingSc());
+        r.setClosingSc(last.getClosingSc());
+        r.setOpeningFc(last.getClosingFc());
+        r.setClosingFc(last.getClosingFc());
+        return r;
+    }
+}
@@ -18,12 +18,26 @@
 
 package com.yupay.perutax.dao;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.Expression;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Unmodifiable;
+import org.postgresql.PGConnection;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.stream.Stream;
 
 /**
@@ -35,7 +49,17 @@ import java.util.stream.Stream;
  * @param <T> the type erasure of entity.
  * @param <U> type erasure of implementation.
  */
-public abstract sealed class DAOBase<T, U extends DAOBase<T, U>> permits DAOCorrelative, DAOCostCenter, DAOCountry, DAOJournal, DAOJournalSS, DAOMUnit, DAOPerson, DAOSaleScheme, DAOSubdiary, DAOTaxAccount, DAOTaxPeriod, DAOTypeDOI, DAOTypeFolio, DAOXRate {
+public abstract sealed class DAOBase<T, U extends DAOBase<T, U>> permits DAOAccountBalance, DAOCorrelative, DAOCostCenter, DAOCountry, DAOFolioFile, DAOJournal, DAOJournalSS, DAOMUnit, DAOPerson, DAOSale, DAOSaleScheme, DAOSubdiary, DAOTaxAccount, DAOTaxPeriod, DAOTypeDOI, DAOTypeFolio, DAOXRate {
+    /**
+     * Progress listener that does nothing.
+     */
+    private static final IntConsumer EMPTY_PROGRESS = x -> {
+    };
+    /**
+     * The JDBC fetch size used by streaming queries.
+     */
+    private int fetchSize = DAOSource.get().getFetchSize();
+
     /**
      * The class representing the entity.
      *
@@ -63,45 +87,228 @@ public abstract sealed class DAOBase<T, U extends DAOBase<T, U>> permits DAOCorr
     @Unmodifiable
     protected abstract Object id(@NotNull T item);
 
+    /**
+     * Fluent setter - with.
+     *
+     * @param fetchSize the JDBC fetch size for streaming queries.
+     * @return this instance.
+     */
+    @Contract("_->this")
+    public @NotNull U withFetchSize(int fetchSize) {
+        if (fetchSize < 1)
+            throw new IllegalArgumentException("Fetch size must be positive, but was %d."
+                    .formatted(fetchSize));
+        this.fetchSize = fetchSize;
+        return specialize();
+    }
+
+    /**
+     * Runs a query through a server side cursor. The entity manager
+     * and the cursor are kept open until the returned stream is
+     * closed or fully consumed, so the caller should close it
+     * (ie: try-with-resources or {@code Flux.fromStream}).
+     *
+     * @param query function creating the query with the given manager.
+     * @return the stream of results.
+     */
+    @NotNull
+    protected Stream<T> stream(@NotNull Function<EntityManager, TypedQuery<T>> query) {
+        return DAOCursor.stream(query, fetchSize);
+    }
+
+    /**
+     * Invoked after each write (insert, update, trash or delete)
+     * has been committed. By default, invalidates the entity in the
+     * {@link DAOCache}; implementations holding other cached data
+     * should override to invalidate it too.
+     */
+    protected void afterWrite() {
+        DAOCache.get().invalidate(tClass());
+    }
+
+    /**
+     * Invoked after a write of some items has been committed, by
+     * the generic write methods of this class. By default, invokes
+     * {@link #afterWrite()}; implementations keeping an index of
+     * the items (ie: {@link SearchIndex}) should override to update it.
+     *
+     * @param items the written items (inserted, updated, trashed
+     *              or deleted).
+     */
+    protected void afterWrite(@NotNull Collection<T> items) {
+        afterWrite();
+    }
+
     /**
      * Finds all elements in database, without any
-     * kind of filter.
+     * kind of filter. The results are streamed from a
+     * server side cursor, so the stream must be closed
+     * if it's not fully consumed. Reference data is
+     * served by the {@link DAOCache}.
      *
      * @return all elements stored in database.
      */
     @NotNull
     public Stream<T> findAll() {
-        var em = DAOSource.manager();
-        try {
+        var cached = DAOCache.get().region(tClass());
+        if (cached != null) return cached.all();
+        return stream(em -> {
             var cb = em.getCriteriaBuilder();
             var cq = cb.createQuery(tClass());
             var root = cq.from(tClass());
             var all = cq.select(root);
-            return em.createQuery(all).getResultStream();
-        } finally {
-            if (em.isOpen()) em.close();
-        }
+            return em.createQuery(all);
+        });
     }
 
     /**
      * Finds all elements in database with trash flag = FALSE.
+     * The results are streamed from a server side cursor, so
+     * the stream must be closed if it's not fully consumed.
+     * Reference data is served by the {@link DAOCache}.
      *
      * @return all active elements (not in trash).
      */
     @NotNull
     public Stream<T> findActive() {
+        var cached = DAOCache.get().region(tClass());
+        if (cached != null) return cached.active();
+        return stream(em -> {
+            var cb = em.getCriteriaBuilder();
+            var cq = cb.createQuery(tClass());
+            var root = cq.from(tClass());
+            var all = cq.select(root).where(cb.isFalse(root.get("trash")));
+            return em.createQuery(all);
+        });
+    }
+
+    /**
+     * Counts all elements in database.
+     *
+     * @return the elements count.
+     */
+    public long count() {
+        var em = DAOSource.manager();
+        try {
+            var cb = em.getCriteriaBuilder();
+            var cq = cb.createQuery(Long.class);
+            cq.select(cb.count(cq.from(tClass())));
+            return em.createQuery(cq).getSingleResult();
+        } finally {
+            if (em.isOpen()) em.close();
+        }
+    }
+
+    /**
+     * Finds a page of elements using offset pagination, sorted by
+     * the given column and then by id (so the order is stable).
+     * Offset pages are meant for "jump to page N" use cases,
+     * prefer {@link #findNextPage(String, boolean, Object, int)}
+     * when the pages are read in sequence.
+     *
+     * @param column    the sort attribute (ie: "id", "fullName").
+     * @param ascending true to sort ascending.
+     * @param first     position of the first result, starting at 0.
+     * @param size      maximum results in page.
+     * @return the page elements.
+     */
+    public @NotNull List<T> findPage(@NotNull String column,
+                                     boolean ascending,
+                                     int first,
+                                     int size) {
         var em = DAOSource.manager();
         try {
             var cb = em.getCriteriaBuilder();
             var cq = cb.createQuery(tClass());
             var root = cq.from(tClass());
-            var all = cq.select(root).where(cb.isFalse(root.get("trash")));
-            return em.createQuery(all).getResultStream();
+            cq.select(root).orderBy(ascending
+                    ? List.of(cb.asc(root.get(column)), cb.asc(root.get("id")))
+                    : List.of(cb.desc(root.get(column)), cb.desc(root.get("id"))));
+            return em.createQuery(cq)
+                    .setFirstResult(first)
+                    .setMaxResults(size)
+                    .getResultList();
+        } finally {
+            if (em.isOpen()) em.close();
+        }
+    }
+
+    /**
+     * Finds the page of elements that follows a given element
+     * using keyset (seek) pagination, sorted by the given column
+     * and then by id. Unlike offset pages, the cost of each page
+     * doesn't grow with the position of the page, because the
+     * database seeks directly to the last read key.
+     *
+     * @param column    the sort attribute, should be not null
+     *                  (ie: "id", "fullName", "createdAt").
+     * @param ascending true to sort ascending.
+     * @param last      the last element of previous page, or
+     *                  null to read the first page.
+     * @param size      maximum results in page.
+     * @return the page elements, fewer than size if it's the last one.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public @NotNull List<T> findNextPage(@NotNull String column,
+                                         boolean ascending,
+                                         @Nullable T last,
+                                         int size) {
+        var em = DAOSource.manager();
+        try {
+            var cb = em.getCriteriaBuilder();
+            var cq = cb.createQuery(tClass());
+            var root = cq.from(tClass());
+            cq.select(root);
+            Expression<Comparable> key = root.get(column);
+            Expression<Comparable> id = root.get("id");
+            if (last != null) {
+                var lastId = (Comparable) id(last);
+                if ("id".equals(column)) {
+                    cq.where(ascending ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId));
+                } else {
+                    var lastKey = (Comparable) attribute(em, last, column);
+                    cq.where(cb.or(
+                            ascending ? cb.greaterThan(key, lastKey) : cb.lessThan(key, lastKey),
+                            cb.and(cb.equal(key, lastKey),
+                                    ascending ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId))));
+                }
+            }
+            cq.orderBy(ascending
+                    ? List.of(cb.asc(key), cb.asc(id))
+                    : List.of(cb.desc(key), cb.desc(id)));
+            return em.createQuery(cq)
+                    .setMaxResults(size)
+                    .getResultList();
         } finally {
             if (em.isOpen()) em.close();
         }
     }
 
+    /**
+     * Reads the value of an entity attribute, using the
+     * JPA metamodel to find its accessor.
+     *
+     * @param em     the entity manager.
+     * @param item   the entity.
+     * @param column the attribute name.
+     * @return the attribute value.
+     */
+    private @Nullable Object attribute(@NotNull EntityManager em,
+                                       @NotNull T item,
+                                       @NotNull String column) {
+        var member = em.getMetamodel().entity(tClass()).getAttribute(column).getJavaMember();
+        try {
+            if (member instanceof Method m) return m.invoke(item);
+            if (member instanceof Field f) {
+                f.trySetAccessible();
+                return f.get(item);
+            }
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot read attribute " + column + " of " + item, e);
+        }
+        throw new IllegalStateException("Unsupported accessor for attribute " + column);
+    }
+
     /**
      * Persits one new item into the database.
      *
@@ -115,6 +322,7 @@ public abstract sealed class DAOBase<T, U extends DAOBase<T, U>> permits DAOCorr
             tx.begin();
             em.persist(item);
             tx.commit();
+            afterWrite(List.of(item));
             return item;
         } catch (RuntimeException e) {
             if (tx.isActive()) tx.rollback();
@@ -129,15 +337,96 @@ public abstract sealed class DAOBase<T, U extends DAOBase<T, U>> permits DAOCorr
      *
      * @param items the new items.
      * @return persisted items.
+     * @see #insertMany(List, IntConsumer)
      */
     public @NotNull List<T> insertMany(@NotNull List<T> items) {
+        return insertMany(items, EMPTY_PROGRESS);
+    }
+
+    /**
+     * Persits many new items into the database, in a single
+     * transaction. The inserts are sent using JDBC batches
+     * (see {@code eclipselink.jdbc.batch-writing.size}), and the
+     * persistence context is flushed and cleared after each batch,
+     * so its size doesn't grow with the items count.
+     *
+     * @param items    the new items.
+     * @param progress receives the count of items flushed so far,
+     *                 once per batch.
+     * @return persisted items.
+     */
+    public @NotNull List<T> insertMany(@NotNull List<T> items,
+                                       @NotNull IntConsumer progress) {
+        var batch = DAOSource.get().getBatchSize();
+        var em = DAOSource.manager();
+        var tx = em.getTransaction();
+        try {
+            tx.begin();
+            for (int i = 0; i < items.size(); i++) {
+                em.persist(items.get(i));
+                if ((i + 1) % batch == 0) {
+                    em.flush();
+                    em.clear();
+                    progress.accept(i + 1);
+                }
+            }
+            tx.commit();
+            afterWrite(items);
+            //The last full batch has been reported already.
+            if (items.size() % batch != 0) progress.accept(items.size());
+            return items;
+        } catch (RuntimeException e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        } finally {
+            if (em.isOpen()) em.close();
+        }
+    }
+
+    /**
+     * The mapping of the entity for the PostgreSQL COPY fast path.
+     * By default, there's no mapping, so bulk copies fall back to
+     * batched inserts.
+     *
+     * @return the copy mapping, or null if not supported.
+     */
+    @Nullable
+    protected DAOCopy<T> copyMapping() {
+        return null;
+    }
+
+    /**
+     * Persists many new items using PostgreSQL {@code COPY}, in a
+     * single transaction. This is the fastest way to bulk insert, but
+     * skips JPA lifecycle (ie: cascades); so it's meant for flat
+     * catalogs such as exchange rates or tax accounts. If the entity
+     * has no copy mapping or the database isn't PostgreSQL, the items
+     * are inserted with {@link #insertMany(List, IntConsumer)}.
+     *
+     * @param items    the new items.
+     * @param progress receives the count of items sent so far.
+     * @return persisted items.
+     */
+    public @NotNull List<T> copyMany(@NotNull List<T> items,
+                                     @NotNull IntConsumer progress) {
+        var mapping = copyMapping();
+        if (mapping == null || items.isEmpty()) return insertMany(items, progress);
         var em = DAOSource.manager();
         var tx = em.getTransaction();
         try {
             tx.begin();
-            items.forEach(em::persist);
+            var con = em.unwrap(Connection.class);
+            if (!con.isWrapperFor(PGConnection.class)) {
+                tx.rollback();
+                return insertMany(items, progress);
+            }
+            mapping.copy(con, items, progress);
             tx.commit();
+            afterWrite(items);
             return items;
+        } catch (SQLException e) {
+            if (tx.isActive()) tx.rollback();
+            throw new PersistenceException("Cannot check the JDBC connection.", e);
         } catch (RuntimeException e) {
             if (tx.isActive()) tx.rollback();
             throw e;
@@ -160,6 +449,7 @@ public abstract sealed class DAOBase<T, U extends DAOBase<T, U>> permits DAOCorr
             tx.begin();
             var r = em.merge(item);
             tx.commit();
+            afterWrite(List.of(r));
             return r;
         } catch (RuntimeException e) {
             if (tx.isActive()) tx.rollback();
@@ -191,6 +481,10 @@ public abstract sealed class DAOBase<T, U extends DAOBase<T, U>> permits DAOCorr
             qry.where(root.get("id").in(Stream.of(items).map(this::id).toArray()));
             var r = em.createQuery(qry).executeUpdate();
             tx.commit();
+            //Copied by hand, passing the array on is a [varargs] warning.
+            var written = new ArrayList<T>(items.length);
+            for (var item : items) written.add(item);
+            afterWrite(written);
             return r;
         } catch (RuntimeException e) {
             if (tx.isActive()) tx.rollback();
@@ -221,6 +515,7 @@ public abstract sealed class DAOBase<T, U extends DAOBase<T, U>> permits DAOCorr
                         "Expected one item to be deleted, but %d matched query."
                                 .formatted(x));
             tx.commit();
+            afterWrite(List.of(item));
         } catch (RuntimeException e) {
             if (tx.isActive()) tx.rollback();
             throw e;
@@ -231,12 +526,15 @@ public abstract sealed class DAOBase<T, U extends DAOBase<T, U>> permits DAOCorr
 
     /**
      * Fetches the entity with given ID.
+     * Reference data is served by the {@link DAOCache}.
      *
      * @param id the given ID.
      * @return fetched entity, or null if no such entity.
      */
     @Nullable
     public T fetch(@NotNull Object id) {
+        var cached = DAOCache.get().region(tClass());
+        if (cached != null) return cached.byId(id);
         var em = DAOSource.manager();
         try {
             return em.find(tClass(), id);
@@ -244,4 +542,22 @@ public abstract sealed class DAOBase<T, U extends DAOBase<T, U>> permits DAOCorr
             if (em.isOpen()) em.close();
         }
     }
+
+    /**
+     * Escapes the LIKE wildcards of a text, so it's matched
+     * literally (backslash is the default escape in PostgreSQL).
+     *
+     * @param s the text.
+     * @return the escaped text.
+     */
+    @Contract(pure = true)
+    protected static @NotNull String likeEscape(@NotNull String s) {
+        var r = new StringBuilder(s.length() + 4);
+        for (int i = 0; i < s.length(); i++) {
+            var c = s.charAt(i);
+            if (c == '\\' || c == '%' || c == '_') r.append('\\');
+            r.append(c);
+        }
+        return r.toString();
+    }
 }
@@ -0,0 +1,414 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import com.yupay.perutax.entities.*;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Read through cache of the reference data (catalog) tables:
+ * types of DOI, types of folio, countries, measure units, sale
+ * schemes and subdiaries. It's singleton, app wide.
+ * <br/>
+ * Each table is read whole upon the first request, and served from
+ * memory until its time to live expires or a write through its DAO
+ * invalidates it. Callers always get copies of the cached entities,
+ * so they're free to edit them. It's configured from the persistence
+ * .properties file, using the keys prefixed with {@code perutax.cache.}
+ * (see model-&gt;developer.properties).
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class DAOCache {
+    /**
+     * Prefix of every cache setting.
+     */
+    public static final String PREFIX = "perutax.cache.";
+    /**
+     * The single instance.
+     */
+    private static final DAOCache INSTANCE = new DAOCache();
+    /**
+     * The cached tables, by entity class.
+     */
+    private final Map<Class<?>, Region<?>> regions = new LinkedHashMap<>();
+    /**
+     * False if caching is disabled.
+     */
+    private volatile boolean enabled = true;
+
+    /**
+     * The private initializer - singleton pattern.
+     */
+    private DAOCache() {
+        register(TypeDOI.class, TypeDOI::getId, TypeDOI::isTrash, TypeDOI::new);
+        register(TypeFolio.class, TypeFolio::getId, TypeFolio::isTrash, TypeFolio::new);
+        register(Country.class, Country::getId, Country::isTrash, Country::new);
+        register(MeasureUnit.class, MeasureUnit::getId, MeasureUnit::isTrash, MeasureUnit::new);
+        register(SaleScheme.class, SaleScheme::getId, SaleScheme::isTrash, SaleScheme::new);
+        register(Subdiary.class, Subdiary::getId, Subdiary::isTrash, Subdiary::new);
+    }
+
+    /**
+     * Static getter of the single instance.
+     *
+     * @return the single cache object.
+     */
+    @NotNull
+    public static DAOCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers a cached table.
+     *
+     * @param type  the entity class.
+     * @param id    the id extractor.
+     * @param trash the trash flag extractor.
+     * @param copy  the copy constructor.
+     * @param <T>   the type erasure of the entity.
+     */
+    private <T> void register(@NotNull Class<T> type,
+                              @NotNull Function<T, Object> id,
+                              @NotNull Predicate<T> trash,
+                              @NotNull UnaryOperator<T> copy) {
+        regions.put(type, new Region<>(type, id, trash, copy));
+    }
+
+    /**
+     * Reads the cache settings: {@code perutax.cache.enabled}
+     * (true by default), {@code perutax.cache.ttl} the time to live
+     * in seconds (600 by default) and {@code perutax.cache.ttl.Entity}
+     * to override it for an entity (ie: ttl.Country). A time to live
+     * of 0 disables caching of that entity. Cached data is discarded.
+     *
+     * @param props the settings.
+     */
+    void configure(@NotNull Properties props) {
+        enabled = Boolean.parseBoolean(props.getProperty(PREFIX + "enabled", "true"));
+        var ttl = secondsOf(props, "ttl", 600L);
+        for (var r : regions.values()) {
+            r.ttlNanos = TimeUnit.SECONDS.toNanos(
+                    secondsOf(props, "ttl." + r.type.getSimpleName(), ttl));
+        }
+        invalidateAll();
+    }
+
+    /**
+     * Reads a seconds setting.
+     *
+     * @param props the settings.
+     * @param key   the key, without prefix.
+     * @param def   the default value.
+     * @return the setting value.
+     */
+    private static long secondsOf(@NotNull Properties props, @NotNull String key, long def) {
+        var v = props.getProperty(PREFIX + key);
+        return v == null || v.isBlank() ? def : Long.parseLong(v.strip());
+    }
+
+    /**
+     * Gets the cached table of an entity.
+     *
+     * @param type the entity class.
+     * @param <T>  the type erasure of the entity.
+     * @return the cached table, or null if the entity isn't cached.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable <T> Region<T> region(@NotNull Class<T> type) {
+        if (!enabled) return null;
+        var r = (Region<T>) regions.get(type);
+        return r == null || r.ttlNanos <= 0 ? null : r;
+    }
+
+    /**
+     * Reads every cached table now, so the first requests
+     * are served from memory. A table that cannot be read
+     * is skipped, and will be read upon the first request.
+     */
+    public void warmup() {
+        for (var type : regions.keySet()) {
+            var r = region(type);
+            if (r == null) continue;
+            try {
+                r.snapshot(false);
+            } catch (RuntimeException e) {
+                r.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Discards the cached table of an entity.
+     * Does nothing if the entity isn't cached.
+     *
+     * @param type the entity class.
+     */
+    public void invalidate(@NotNull Class<?> type) {
+        var r = regions.get(type);
+        if (r != null) r.invalidate();
+    }
+
+    /**
+     * Discards every cached table.
+     */
+    public void invalidateAll() {
+        regions.values().forEach(Region::invalidate);
+    }
+
+    /**
+     * Takes a snapshot of the cache metrics.
+     *
+     * @return the metrics of each cached table.
+     */
+    public @NotNull @Unmodifiable List<Stats> stats() {
+        return regions.values().stream().map(Region::stats).toList();
+    }
+
+    /**
+     * Immutable snapshot of the metrics of a cached table.
+     *
+     * @param entity        the entity name.
+     * @param size          the cached rows, 0 if not loaded.
+     * @param hits          requests served from memory.
+     * @param misses        requests that had to read the table.
+     * @param invalidations times the table was discarded.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    public record Stats(@NotNull String entity,
+                        int size,
+                        long hits,
+                        long misses,
+                        long invalidations) {
+        /**
+         * The ratio of requests served from memory.
+         *
+         * @return the hit ratio, from 0 to 1.
+         */
+        public double hitRatio() {
+            var total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "%s: size=%d, hits=%d, misses=%d, hitRatio=%.2f, invalidations=%d"
+                    .formatted(entity, size, hits, misses, hitRatio(), invalidations);
+        }
+    }
+
+    /**
+     * The cached table of an entity.
+     *
+     * @param <T> the type erasure of the entity.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    static final class Region<T> {
+        /**
+         * The entity class.
+         */
+        private final Class<T> type;
+        /**
+         * The id extractor.
+         */
+        private final Function<T, Object> id;
+        /**
+         * The trash flag extractor.
+         */
+        private final Predicate<T> trash;
+        /**
+         * The copy constructor.
+         */
+        private final UnaryOperator<T> copy;
+        /**
+         * Requests served from memory.
+         */
+        private final LongAdder hits = new LongAdder();
+        /**
+         * Requests that had to read the table.
+         */
+        private final LongAdder misses = new LongAdder();
+        /**
+         * Times the table was discarded.
+         */
+        private final LongAdder invalidations = new LongAdder();
+        /**
+         * The time to live, in nanoseconds.
+         */
+        private volatile long ttlNanos = TimeUnit.MINUTES.toNanos(10);
+        /**
+         * The loaded table, null if not loaded or invalidated.
+         */
+        private volatile Snapshot<T> snapshot;
+        /**
+         * Incremented on each invalidation, so a table read
+         * before the invalidation isn't published.
+         */
+        private volatile int version;
+
+        /**
+         * Default constructor.
+         *
+         * @param type  the entity class.
+         * @param id    the id extractor.
+         * @param trash the trash flag extractor.
+         * @param copy  the copy constructor.
+         */
+        private Region(@NotNull Class<T> type,
+                       @NotNull Function<T, Object> id,
+                       @NotNull Predicate<T> trash,
+                       @NotNull UnaryOperator<T> copy) {
+            this.type = type;
+            this.id = id;
+            this.trash = trash;
+            this.copy = copy;
+        }
+
+        /**
+         * Copies of all the rows.
+         *
+         * @return the rows.
+         */
+        @NotNull Stream<T> all() {
+            return snapshot(true).rows.stream().map(copy);
+        }
+
+        /**
+         * Copies of the rows not in trash.
+         *
+         * @return the active rows.
+         */
+        @NotNull Stream<T> active() {
+            return snapshot(true).rows.stream().filter(trash.negate()).map(copy);
+        }
+
+        /**
+         * Copy of the row with a given id.
+         *
+         * @param key the id.
+         * @return the row, or null if there's none.
+         */
+        @Nullable T byId(@NotNull Object key) {
+            var r = snapshot(true).byId.get(key);
+            return r == null ? null : copy.apply(r);
+        }
+
+        /**
+         * Gets the loaded table, reading it if necessary.
+         *
+         * @param request true if it's a request (counts as hit or miss).
+         * @return the table.
+         */
+        private @NotNull Snapshot<T> snapshot(boolean request) {
+            var s = snapshot;
+            if (s != null && System.nanoTime() - s.loadedAt < ttlNanos) {
+                if (request) hits.increment();
+                return s;
+            }
+            synchronized (this) {
+                s = snapshot;
+                if (s != null && System.nanoTime() - s.loadedAt < ttlNanos) {
+                    if (request) hits.increment();
+                    return s;
+                }
+                if (request) misses.increment();
+                var v = version;
+                s = load();
+                if (v == version) snapshot = s;
+                return s;
+            }
+        }
+
+        /**
+         * Reads the whole table.
+         *
+         * @return the loaded table.
+         */
+        private @NotNull Snapshot<T> load() {
+            var em = DAOSource.manager();
+            try {
+                var qry = em.getCriteriaBuilder().createQuery(type);
+                qry.select(qry.from(type));
+                var rows = em.createQuery(qry)
+                        .setHint(QueryHints.READ_ONLY, HintValues.TRUE)
+                        .getResultList();
+                var byId = new HashMap<Object, T>(rows.size() * 2);
+                for (var r : rows) byId.put(id.apply(r), r);
+                return new Snapshot<>(List.copyOf(rows), byId, System.nanoTime());
+            } finally {
+                if (em.isOpen()) em.close();
+            }
+        }
+
+        /**
+         * Discards the loaded table.
+         */
+        private void invalidate() {
+            synchronized (this) {
+                version++;
+                if (snapshot != null) invalidations.increment();
+                snapshot = null;
+            }
+        }
+
+        /**
+         * Takes a snapshot of the metrics.
+         *
+         * @return the metrics.
+         */
+        private @NotNull Stats stats() {
+            var s = snapshot;
+            return new Stats(type.getSimpleName(),
+                    s == null ? 0 : s.rows.size(),
+                    hits.sum(),
+                    misses.sum(),
+                    invalidations.sum());
+        }
+    }
+
+    /**
+     * A loaded table.
+     *
+     * @param rows     all the rows.
+     * @param byId     the rows by id.
+     * @param loadedAt when it was read ({@link System#nanoTime()}).
+     * @param <T>      the type erasure of the entity.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    private record Snapshot<T>(@NotNull List<T> rows,
+                               @NotNull Map<Object, T> byId,
+                               long loadedAt) {
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import jakarta.persistence.PersistenceException;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Mapping of an entity into the columns of a PostgreSQL
+ * {@code COPY ... FROM STDIN} statement. It's the bulk insert
+ * fast path: rows are sent as a single CSV stream, without
+ * per-row statements nor persistence context bookkeeping.
+ * <br/>
+ * Entities with a sequence generated id may declare the
+ * sequence, so the ids are fetched in one round trip and
+ * set into the entities before copying.
+ *
+ * @param <T> the type erasure of the entity.
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class DAOCopy<T> {
+    /**
+     * Rows encoded before sending a chunk to the server.
+     */
+    private static final int CHUNK_ROWS = 1_000;
+    /**
+     * The qualified table name.
+     */
+    private final String table;
+    /**
+     * The column names, in copy order.
+     */
+    private final List<String> columns = new ArrayList<>();
+    /**
+     * The column value extractors, in copy order.
+     */
+    private final List<Function<T, ?>> values = new ArrayList<>();
+    /**
+     * The id sequence, if any.
+     */
+    private String sequence;
+    /**
+     * The id setter, if any.
+     */
+    private ObjLongConsumer<T> idSetter;
+
+    /**
+     * Private constructor. Use {@link #into(String)}.
+     *
+     * @param table the qualified table name.
+     */
+    private DAOCopy(@NotNull String table) {
+        this.table = table;
+    }
+
+    /**
+     * Static factory.
+     *
+     * @param table the qualified table name (ie: public.xrate).
+     * @param <T>   the type erasure of the entity.
+     * @return a new mapping without columns.
+     */
+    @Contract("_->new")
+    static <T> @NotNull DAOCopy<T> into(@NotNull String table) {
+        return new DAOCopy<>(table);
+    }
+
+    /**
+     * Fluent method to add a column to the mapping.
+     *
+     * @param column the column name.
+     * @param value  the value extractor.
+     * @return this instance.
+     */
+    @Contract("_,_->this")
+    @NotNull DAOCopy<T> column(@NotNull String column, @NotNull Function<T, ?> value) {
+        columns.add(column);
+        values.add(value);
+        return this;
+    }
+
+    /**
+     * Fluent setter for the id sequence.
+     *
+     * @param column   the id column name.
+     * @param sequence the qualified sequence name.
+     * @param idSetter the id setter.
+     * @return this instance.
+     */
+    @Contract("_,_,_->this")
+    @NotNull DAOCopy<T> withSequence(@NotNull String column,
+                                     @NotNull String sequence,
+                                     @NotNull ObjLongConsumer<T> idSetter) {
+        columns.add(0, column);
+        values.add(0, null);
+        this.sequence = sequence;
+        this.idSetter = idSetter;
+        return this;
+    }
+
+    /**
+     * Copies all the items into the table, using the given
+     * connection (which should be part of a transaction).
+     *
+     * @param con      the JDBC connection.
+     * @param items    the items to copy.
+     * @param progress receives the count of rows sent so far.
+     * @throws PersistenceException if the COPY fails.
+     */
+    void copy(@NotNull Connection con,
+              @NotNull List<T> items,
+              @NotNull IntConsumer progress) {
+        try {
+            var ids = sequence == null ? null : nextIds(con, sequence, items.size());
+            var api = con.unwrap(PGConnection.class).getCopyAPI();
+            var sql = "COPY " + table + " (" + String.join(", ", columns)
+                    + ") FROM STDIN WITH (FORMAT csv)";
+            CopyIn in = api.copyIn(sql);
+            try {
+                var sb = new StringBuilder(CHUNK_ROWS * 64);
+                for (int i = 0; i < items.size(); i++) {
+                    var item = items.get(i);
+                    if (ids != null) idSetter.accept(item, ids[i]);
+                    for (int c = 0; c < values.size(); c++) {
+                        if (c > 0) sb.append(',');
+                        var fn = values.get(c);
+                        append(sb, fn == null ? ids[i] : fn.apply(item));
+                    }
+                    sb.append('\n');
+                    if ((i + 1) % CHUNK_ROWS == 0) {
+                        send(in, sb);
+                        progress.accept(i + 1);
+                    }
+                }
+                send(in, sb);
+                in.endCopy();
+                //The last full chunk has been reported already.
+                if (items.size() % CHUNK_ROWS != 0) progress.accept(items.size());
+            } finally {
+                if (in.isActive()) in.cancelCopy();
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Cannot COPY into " + table + ".", e);
+        }
+    }
+
+    /**
+     * Fetches many values of a sequence in one round trip.
+     *
+     * @param con      the JDBC connection.
+     * @param sequence the qualified sequence name.
+     * @param count    how many ids.
+     * @return the ids.
+     * @throws SQLException if something fails.
+     */
+    static long @NotNull [] nextIds(@NotNull Connection con,
+                                    @NotNull String sequence,
+                                    int count) throws SQLException {
+        var r = new long[count];
+        try (var st = con.prepareStatement(
+                "SELECT nextval('" + sequence + "') FROM generate_series(1, ?)")) {
+            st.setInt(1, count);
+            try (var rs = st.executeQuery()) {
+                for (int i = 0; i < count && rs.next(); i++) r[i] = rs.getLong(1);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Sends the encoded rows to the server and clears the buffer.
+     *
+     * @param in the copy operation.
+     * @param sb the encoded rows.
+     * @throws SQLException if something fails.
+     */
+    private static void send(@NotNull CopyIn in, @NotNull StringBuilder sb) throws SQLException {
+        if (sb.isEmpty()) return;
+        var bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        in.writeToCopy(bytes, 0, bytes.length);
+        sb.setLength(0);
+    }
+
+    /**
+     * Appends a value in CSV format. Null is written as
+     * an empty unquoted value, which COPY reads as NULL.
+     *
+     * @param sb    the buffer.
+     * @param value the value.
+     */
+    static void append(@NotNull StringBuilder sb, @Nullable Object value) {
+        if (value == null) return;
+        if (value instanceof BigDecimal d) {
+            sb.append(d.toPlainString());
+        } else if (value instanceof Enum<?> e) {
+            sb.append(e.name());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else {
+            var s = value.toString();
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                var ch = s.charAt(i);
+                if (ch == '"') sb.append('"');
+                sb.append(ch);
+            }
+            sb.append('"');
+        }
+    }
+}
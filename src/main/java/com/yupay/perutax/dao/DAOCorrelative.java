@@ -19,11 +19,16 @@
 package com.yupay.perutax.dao;
 
 import com.yupay.perutax.entities.Correlative;
+import com.yupay.perutax.entities.SubdiaryRole;
 import com.yupay.perutax.entities.TaxPeriod;
-import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Unmodifiable;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.UUID;
+
 /**
  * DAO implementation for Correlative entities.
  *
@@ -56,35 +61,107 @@ public final class DAOCorrelative extends DAOBase<Correlative, DAOCorrelative> {
     }
 
     /**
-     * Fetches a correlative from database for
-     * given book and period. If not found, a
-     * new one will be created.
+     * Reserves a range of values of a correlative, for the given book,
+     * period and subdiary role, creating the correlative if it doesn't
+     * exist yet. The counter is incremented with a single atomic
+     * {@code UPDATE ... RETURNING}, in its own short transaction, so
+     * the row lock is held only while updating; concurrent postings
+     * never get the same value nor wait for each other's posting.
+     * <br/>
+     * As the reservation is committed right away, a posting that fails
+     * afterwards leaves a gap in the correlative.
      *
      * @param book   the book code.
      * @param period the tax period.
-     * @param em     the active entity manager.
-     * @return fetched correlative, or a new one if not found.
+     * @param role   the subdiary role, picks the counter (A, M or C).
+     * @param count  how many values to reserve (at least 1).
+     * @return the first reserved value; the range is
+     * {@code [first, first + count)}.
+     */
+    public long allocate(@NotNull String book,
+                         @NotNull TaxPeriod period,
+                         @NotNull SubdiaryRole role,
+                         int count) {
+        if (count < 1)
+            throw new IllegalArgumentException("Count must be positive, but was %d."
+                    .formatted(count));
+        var em = DAOSource.manager();
+        var tx = em.getTransaction();
+        try {
+            tx.begin();
+            var con = em.unwrap(Connection.class);
+            var last = increment(con, book, period.getId(), role, count);
+            if (last < 0) {
+                //Serializes the creation only, there's no unique (book, period) constraint.
+                try (var st = con.prepareStatement("SELECT pg_advisory_xact_lock(hashtext(? || ?))")) {
+                    st.setString(1, book);
+                    st.setString(2, period.getId());
+                    st.execute();
+                }
+                last = increment(con, book, period.getId(), role, count);
+                if (last < 0) {
+                    try (var st = con.prepareStatement(
+                            "INSERT INTO public.correlative (id, book, period, last_a, last_m, last_c) " +
+                                    "VALUES (?, ?, ?, 0, 0, 0)")) {
+                        st.setString(1, UUID.randomUUID().toString());
+                        st.setString(2, book);
+                        st.setString(3, period.getId());
+                        st.executeUpdate();
+                    }
+                    last = increment(con, book, period.getId(), role, count);
+                }
+            }
+            tx.commit();
+            //The update bypassed JPA, so the shared cache is stale.
+            em.getEntityManagerFactory().getCache().evict(Correlative.class);
+            afterWrite();
+            return last - count + 1;
+        } catch (SQLException e) {
+            if (tx.isActive()) tx.rollback();
+            throw new PersistenceException("Cannot allocate correlative for book " + book + ".", e);
+        } catch (RuntimeException e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        } finally {
+            if (em.isOpen()) em.close();
+        }
+    }
+
+    /**
+     * Atomically increments the counter of a correlative.
+     * If there are many rows for the same book and period, only
+     * the one with the greatest counter value is incremented.
+     *
+     * @param con    the JDBC connection.
+     * @param book   the book code.
+     * @param period the tax period id.
+     * @param role   the subdiary role.
+     * @param count  the increment.
+     * @return the new counter value, or -1 if there's no correlative.
+     * @throws SQLException if something fails.
      */
-    @NotNull Correlative findOrSupply(@NotNull String book,
-                                      @NotNull TaxPeriod period,
-                                      @NotNull EntityManager em) {
-        var qry = em.createQuery(
-                "SELECT C FROM Correlative C" +
-                        " WHERE C.period = :period " +
-                        "AND C.book = :book",
-                Correlative.class);
-        qry.setParameter("period", period);
-        qry.setParameter("book", book);
-        return qry.getResultStream()
-                .findFirst()
-                .orElseGet(() -> {
-                    var x = new Correlative();
-                    x.setBook(book);
-                    x.setPeriod(period);
-                    x.setLastA(0);
-                    x.setLastM(0);
-                    x.setLastC(0);
-                    return x;
-                });
+    private static long increment(@NotNull Connection con,
+                                  @NotNull String book,
+                                  @NotNull String period,
+                                  @NotNull SubdiaryRole role,
+                                  int count) throws SQLException {
+        var column = switch (role) {
+            case A -> "last_a";
+            case M -> "last_m";
+            case C -> "last_c";
+        };
+        try (var st = con.prepareStatement(
+                "UPDATE public.correlative SET " + column + " = " + column + " + ? " +
+                        "WHERE id = (SELECT id FROM public.correlative " +
+                        "WHERE book = ? AND period = ? " +
+                        "ORDER BY " + column + " DESC, id LIMIT 1) " +
+                        "RETURNING " + column)) {
+            st.setLong(1, count);
+            st.setString(2, book);
+            st.setString(3, period);
+            try (var rs = st.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1L;
+            }
+        }
     }
 }
@@ -22,6 +22,7 @@ import com.yupay.perutax.entities.CostCenter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Unmodifiable;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -55,6 +56,12 @@ public final class DAOCostCenter extends DAOBase<CostCenter, DAOCostCenter> {
         return item.getId();
     }
 
+    @Override
+    protected void afterWrite(@NotNull Collection<CostCenter> items) {
+        super.afterWrite(items);
+        SearchIndex.costCenters().refresh(items.stream().map(this::id).toList());
+    }
+
     /**
      * Searches for any active cost center containing
      * the words s in the title, or starting its ID with s.
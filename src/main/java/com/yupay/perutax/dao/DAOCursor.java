@@ -0,0 +1,170 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.TypedQuery;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.config.ResultSetType;
+import org.eclipse.persistence.queries.ScrollableCursor;
+import org.eclipse.persistence.sessions.UnitOfWork;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A forward only JDBC cursor exposed as a stream source.
+ * The entity manager, its transaction and the server side
+ * cursor are kept open until the stream is closed or fully
+ * consumed, whatever happens first. Rows are fetched from
+ * the server in chunks of the given fetch size, so memory
+ * usage doesn't depend on the result size.
+ * <br/>
+ * PostgreSQL only honours the fetch size inside a transaction,
+ * that's why a (read only, always rolled back) transaction is
+ * started before the query.
+ * <br/>
+ * The entities are copies owned by the cursor entity manager, not
+ * the shared cache originals, so callers may edit and merge them.
+ *
+ * @param <T> the type erasure of the entity.
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+final class DAOCursor<T> implements Spliterator<T> {
+    /**
+     * The entity manager owning the cursor.
+     */
+    private final EntityManager em;
+    /**
+     * The transaction holding the JDBC connection.
+     */
+    private final EntityTransaction tx;
+    /**
+     * The EclipseLink cursor.
+     */
+    private final ScrollableCursor cursor;
+    /**
+     * True once resources are released.
+     */
+    private boolean closed;
+
+    /**
+     * Private constructor. Use {@link #stream(Function, int)}.
+     *
+     * @param em     the entity manager.
+     * @param tx     the active transaction.
+     * @param cursor the opened cursor.
+     */
+    private DAOCursor(@NotNull EntityManager em,
+                      @NotNull EntityTransaction tx,
+                      @NotNull ScrollableCursor cursor) {
+        this.em = em;
+        this.tx = tx;
+        this.cursor = cursor;
+    }
+
+    /**
+     * Opens a new cursor for a given query and wraps it into a stream.
+     * The returned stream MUST be closed (ie: try-with-resources or
+     * {@code Flux.fromStream}) unless it's fully consumed.
+     *
+     * @param query     function creating the query with the given manager.
+     * @param fetchSize the JDBC fetch size.
+     * @param <T>       the type erasure of the entity.
+     * @return the stream of results.
+     */
+    static <T> @NotNull Stream<T> stream(@NotNull Function<EntityManager, TypedQuery<T>> query,
+                                         int fetchSize) {
+        var em = DAOSource.manager();
+        var tx = em.getTransaction();
+        try {
+            tx.begin();
+            em.unwrap(UnitOfWork.class).beginEarlyTransaction();
+            Object r = query.apply(em)
+                    .setHint(QueryHints.SCROLLABLE_CURSOR, HintValues.TRUE)
+                    .setHint(QueryHints.RESULT_SET_TYPE, ResultSetType.ForwardOnly)
+                    .setHint(QueryHints.JDBC_FETCH_SIZE, fetchSize)
+                    .getSingleResult();
+            var c = new DAOCursor<T>(em, tx, (ScrollableCursor) r);
+            return StreamSupport.stream(c, false).onClose(c::close);
+        } catch (RuntimeException e) {
+            if (tx.isActive()) tx.rollback();
+            if (em.isOpen()) em.close();
+            throw e;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(@NotNull Consumer<? super T> action) {
+        T next;
+        synchronized (this) {
+            if (closed) return false;
+            try {
+                if (!cursor.hasNext()) {
+                    close();
+                    return false;
+                }
+                next = (T) cursor.next();
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+        action.accept(next);
+        return true;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * Releases the cursor, the transaction and the entity manager.
+     * It's safe to invoke many times, and from any thread.
+     */
+    synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            cursor.close();
+        } finally {
+            if (tx.isActive()) tx.rollback();
+            if (em.isOpen()) em.close();
+        }
+    }
+}
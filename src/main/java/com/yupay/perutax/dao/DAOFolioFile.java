@@ -0,0 +1,337 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import com.yupay.perutax.blobs.BlobStore;
+import com.yupay.perutax.blobs.FolioDocument;
+import com.yupay.perutax.entities.FolioFile;
+import jakarta.persistence.PersistenceException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * DAO implementation for Folio Files.
+ * <br/>
+ * The documents (pdf, xml, cdr) are kept in the columns of the
+ * {@code folio_file} table, so every client sharing the database
+ * can read them; but they aren't mapped by the entity, so loading
+ * a sale never loads their bytes. Each client caches the documents
+ * it opens in its local {@link BlobStore}, by digest, and fills it
+ * from the table on a miss.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class DAOFolioFile extends DAOBase<FolioFile, DAOFolioFile> {
+    /**
+     * Rows with documents stored before the blob store
+     * existed, whose digests aren't set yet.
+     */
+    private static final String LEGACY = "SELECT id, pdf, xml, cdr FROM public.folio_file " +
+            "WHERE (pdf IS NOT NULL AND pdf_sha IS NULL) " +
+            "OR (xml IS NOT NULL AND xml_sha IS NULL) " +
+            "OR (cdr IS NOT NULL AND cdr_sha IS NULL)";
+    /**
+     * Sets the digests, the content columns are kept.
+     */
+    private static final String MOVED = "UPDATE public.folio_file SET " +
+            "pdf_sha = COALESCE(?, pdf_sha), xml_sha = COALESCE(?, xml_sha), cdr_sha = COALESCE(?, cdr_sha) " +
+            "WHERE id = ?";
+    /**
+     * Reads the content of a document, {@code %s} is its column.
+     */
+    private static final String CONTENT = "SELECT %s FROM public.folio_file WHERE id = ?";
+    /**
+     * Writes the content and digest of a document,
+     * {@code %s} is its column.
+     */
+    private static final String STORE = "UPDATE public.folio_file SET %1$s = ?, %1$s_sha = ? WHERE id = ?";
+    /**
+     * Legacy rows fetched per round trip, they hold whole documents.
+     */
+    private static final int FETCH_SIZE = 16;
+
+    /**
+     * Package-private constructor.
+     * Use a factory.
+     *
+     * @see DAO#folioFile()
+     */
+    DAOFolioFile() {
+    }
+
+    @Override
+    protected @NotNull Class<FolioFile> tClass() {
+        return FolioFile.class;
+    }
+
+    @Override
+    public @NotNull DAOFolioFile specialize() {
+        return this;
+    }
+
+    @Override
+    protected @NotNull @Unmodifiable Object id(@NotNull FolioFile item) {
+        return item.getId();
+    }
+
+    /**
+     * Stores a document of a folio file, which must be saved
+     * already. The content is streamed into its table column, and
+     * cached in the local blob store; the digest is set on both the
+     * row and the entity.
+     *
+     * @param store    the local blob store.
+     * @param file     the folio file.
+     * @param document the document kind.
+     * @param source   the content.
+     * @throws IOException          if the blob store or the source fails.
+     * @throws PersistenceException if a statement fails, or the folio
+     *                              file isn't saved.
+     */
+    public void store(@NotNull BlobStore store,
+                      @NotNull FolioFile file,
+                      @NotNull FolioDocument document,
+                      @NotNull Path source) throws IOException {
+        var digest = store.put(source, document.isCompress());
+        var em = DAOSource.manager();
+        var tx = em.getTransaction();
+        try {
+            tx.begin();
+            var con = em.unwrap(Connection.class);
+            try (var st = con.prepareStatement(STORE.formatted(document.getColumn()));
+                 var in = Files.newInputStream(source)) {
+                if (document.isText())
+                    st.setCharacterStream(1, new InputStreamReader(in, StandardCharsets.UTF_8));
+                else st.setBinaryStream(1, in, Files.size(source));
+                st.setString(2, digest);
+                st.setString(3, file.getId());
+                if (st.executeUpdate() == 0)
+                    throw new PersistenceException("The folio file " + file.getId() + " isn't saved.");
+            } catch (SQLException e) {
+                throw new PersistenceException("Cannot store the " + document + " of the folio file.", e);
+            }
+            tx.commit();
+            em.getEntityManagerFactory().getCache().evict(FolioFile.class, file.getId());
+            document.digest(file, digest);
+            afterWrite(List.of(file));
+        } catch (RuntimeException e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        } finally {
+            if (em.isOpen()) em.close();
+        }
+    }
+
+    /**
+     * Opens a document of a folio file. It's read from the local
+     * blob store; if it isn't there yet (ie: another client stored
+     * it), it's copied from its table column into the store first.
+     *
+     * @param store    the local blob store.
+     * @param file     the folio file.
+     * @param document the document kind.
+     * @return the stream, to be closed by the caller.
+     * @throws NoSuchFileException  if there's no such document.
+     * @throws IOException          if the blob store fails.
+     * @throws PersistenceException if a statement fails.
+     */
+    public @NotNull InputStream open(@NotNull BlobStore store,
+                                     @NotNull FolioFile file,
+                                     @NotNull FolioDocument document) throws IOException {
+        var digest = document.digest(file);
+        if (digest == null || !store.contains(digest)) digest = fetch(store, file, document);
+        return store.open(digest);
+    }
+
+    /**
+     * Copies a document of a folio file into a temporary file with
+     * the proper extension, ie: to open it with the desktop viewer.
+     *
+     * @param store    the local blob store.
+     * @param file     the folio file.
+     * @param document the document kind.
+     * @return the temporary file.
+     * @throws NoSuchFileException  if there's no such document.
+     * @throws IOException          if something fails.
+     * @throws PersistenceException if a statement fails.
+     * @see #open(BlobStore, FolioFile, FolioDocument)
+     */
+    public @NotNull Path view(@NotNull BlobStore store,
+                              @NotNull FolioFile file,
+                              @NotNull FolioDocument document) throws IOException {
+        var tmp = Files.createTempFile("perutax-" + document.name().toLowerCase() + "-",
+                document.getExtension());
+        tmp.toFile().deleteOnExit();
+        try (var in = open(store, file, document)) {
+            Files.copy(in, tmp, REPLACE_EXISTING);
+        }
+        return tmp;
+    }
+
+    /**
+     * Copies a document from its table column into the blob store.
+     *
+     * @param store    the local blob store.
+     * @param file     the folio file.
+     * @param document the document kind.
+     * @return the digest of the content.
+     * @throws NoSuchFileException if there's no such document.
+     * @throws IOException         if the blob store fails.
+     */
+    private @NotNull String fetch(@NotNull BlobStore store,
+                                  @NotNull FolioFile file,
+                                  @NotNull FolioDocument document) throws IOException {
+        String digest = null;
+        var em = DAOSource.manager();
+        var tx = em.getTransaction();
+        try {
+            tx.begin();
+            var con = em.unwrap(Connection.class);
+            try (var st = con.prepareStatement(CONTENT.formatted(document.getColumn()))) {
+                st.setString(1, file.getId());
+                try (var rs = st.executeQuery()) {
+                    if (rs.next()) digest = put(store, document, document.isText()
+                            ? text(rs.getString(1))
+                            : rs.getBinaryStream(1));
+                }
+            } catch (SQLException e) {
+                throw new PersistenceException("Cannot read the " + document + " of the folio file.", e);
+            }
+            tx.commit();
+        } catch (RuntimeException e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        } finally {
+            if (em.isOpen()) em.close();
+        }
+        if (digest == null)
+            throw new NoSuchFileException(file.getId(), null, "No " + document + " document.");
+        return digest;
+    }
+
+    /**
+     * Sets the digests of the documents stored in the table
+     * columns before the blob store existed, caching them in the
+     * local blob store. The rows are read through a cursor, one
+     * document at a time.
+     * <br/>
+     * The columns are kept: they are the copy shared by every
+     * client, and other clients fill their own blob store from
+     * them on first {@link #open(BlobStore, FolioFile, FolioDocument)}.
+     * Rows with digests are skipped, so this may run again safely.
+     *
+     * @param store the blob store.
+     * @return the count of folio files with new digests.
+     * @throws PersistenceException if a statement fails.
+     * @throws UncheckedIOException if the blob store fails.
+     */
+    public int moveBlobs(@NotNull BlobStore store) {
+        var em = DAOSource.manager();
+        var tx = em.getTransaction();
+        try {
+            tx.begin();
+            var count = moveBlobs(em.unwrap(Connection.class), store);
+            tx.commit();
+            em.getEntityManagerFactory().getCache().evict(FolioFile.class);
+            afterWrite();
+            return count;
+        } catch (RuntimeException e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        } finally {
+            if (em.isOpen()) em.close();
+        }
+    }
+
+    /**
+     * Sets the digests of the older documents, within the active
+     * transaction of the connection (required for the cursor).
+     *
+     * @param con   the JDBC connection.
+     * @param store the blob store.
+     * @return the count of folio files with new digests.
+     */
+    private static int moveBlobs(@NotNull Connection con, @NotNull BlobStore store) {
+        var count = 0;
+        try (var query = con.prepareStatement(LEGACY);
+             var update = con.prepareStatement(MOVED)) {
+            query.setFetchSize(FETCH_SIZE);
+            try (var rs = query.executeQuery()) {
+                while (rs.next()) {
+                    update.setString(1, put(store, FolioDocument.PDF, rs.getBinaryStream(2)));
+                    update.setString(2, put(store, FolioDocument.XML, text(rs.getString(3))));
+                    update.setString(3, put(store, FolioDocument.CDR, text(rs.getString(4))));
+                    update.setString(4, rs.getString(1));
+                    update.addBatch();
+                    if (++count % FETCH_SIZE == 0) update.executeBatch();
+                }
+            }
+            update.executeBatch();
+            return count;
+        } catch (SQLException e) {
+            throw new PersistenceException("Cannot move folio files into the blob store.", e);
+        }
+    }
+
+    /**
+     * Writes a document into the blob store.
+     *
+     * @param store    the blob store.
+     * @param document the document kind.
+     * @param in       the content, may be null.
+     * @return the digest, or null if there's no content.
+     */
+    private static @Nullable String put(@NotNull BlobStore store,
+                                        @NotNull FolioDocument document,
+                                        @Nullable InputStream in) {
+        if (in == null) return null;
+        try (in) {
+            return store.put(in, document.isCompress());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encodes a text column.
+     *
+     * @param text the text, may be null.
+     * @return the UTF-8 content, or null.
+     */
+    private static @Nullable InputStream text(@Nullable String text) {
+        return text == null ? null : new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
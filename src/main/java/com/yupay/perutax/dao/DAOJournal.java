@@ -19,11 +19,21 @@
 package com.yupay.perutax.dao;
 
 import com.yupay.perutax.entities.Journal;
+import com.yupay.perutax.entities.JournalDt;
+import com.yupay.perutax.entities.SubdiaryRole;
 import com.yupay.perutax.entities.functionals.TaxAccountAdjuster;
+import jakarta.persistence.PersistenceException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Unmodifiable;
 
+import java.io.Serial;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static com.yupay.perutax.dao.BookConstants.JOURNAL;
 
@@ -34,6 +44,11 @@ import static com.yupay.perutax.dao.BookConstants.JOURNAL;
  * @version 1.0
  */
 public final class DAOJournal extends DAOBase<Journal, DAOJournal> {
+    /**
+     * The journal detail id sequence.
+     */
+    private static final String DETAIL_SEQUENCE = "public.sq_journal_dt_id";
+
     /**
      * Package private constructor.
      * Use static factory.
@@ -60,45 +75,35 @@ public final class DAOJournal extends DAOBase<Journal, DAOJournal> {
 
     @Override
     public @NotNull Journal insertOne(@NotNull Journal item) {
+        //Reserve the correlative before, in its own short transaction.
+        var role = item.getSubdiary().getRole();
+        var number = DAO.correlative()
+                .specialize()
+                .allocate(JOURNAL, item.getPeriod(), role, 1);
+        item.setCorrelative("%s%09d".formatted(role.name(), number));
+
         var em = DAOSource.manager();
         var tx = em.getTransaction();
         try {
             //Begin transaction.
             tx.begin();
 
-            //Fetch or create correlative and upsert.
-            var corr = DAO.correlative()
-                    .specialize()
-                    .findOrSupply(JOURNAL, item.getPeriod(), em);
-            switch (item.getSubdiary().getRole()) {
-                case A -> {
-                    corr.stepA();
-                    item.setCorrelative("A%09d".formatted(corr.getLastA()));
-                }
-                case M -> {
-                    corr.stepM();
-                    item.setCorrelative("M%09d".formatted(corr.getLastM()));
-                }
-                case C -> {
-                    corr.stepC();
-                    item.setCorrelative("C%09d".formatted(corr.getLastC()));
-                }
-            }
-            em.merge(corr);
-
             //Update tax account balances.
-            item.getDetail().forEach(new TaxAccountAdjuster(em, item.getCurrency(), item.getXrate()));
+            new TaxAccountAdjuster().add(item).apply(em);
 
-            //Sync redundant information
-            item.getDetail().forEach(ln -> ln.setAccountName(ln.getAccount().getName()));
-
-            item.setCreatedAt(LocalDateTime.now());
+            prepare(item, LocalDateTime.now());
 
             //Insert journal entry and details.
             em.persist(item);
+            em.flush();
+
+            //Update period balances.
+            DAOAccountBalance.post(em, List.of(item));
 
             //Commit transaction.
             tx.commit();
+            DAOAccountBalance.evict(em);
+            afterWrite();
             return item;
         } catch (RuntimeException e) {
             if (tx.isActive()) tx.rollback();
@@ -107,4 +112,206 @@ public final class DAOJournal extends DAOBase<Journal, DAOJournal> {
             if (em.isOpen()) em.close();
         }
     }
+
+    /**
+     * Posts many journal entries at once. The batch is all-or-nothing:
+     * <ol>
+     *     <li>Every entry is validated and its balance deltas computed;
+     *     if any entry fails, nothing is written and a
+     *     {@link PostBatchException} reports every failure.</li>
+     *     <li>Correlatives are reserved once per period and subdiary role,
+     *     and assigned following the list order.</li>
+     *     <li>Headers and details are inserted in a single transaction,
+     *     using JDBC batch writing; detail ids are fetched in one round
+     *     trip, and the persistence context is flushed and cleared every
+     *     {@link DAOSource#getBatchSize()} lines.</li>
+     *     <li>The balance deltas of the whole batch are applied at last,
+     *     in account id order, so the accounts are locked as briefly as
+     *     possible; then the period balances are updated.</li>
+     * </ol>
+     * Since correlatives are reserved in their own transaction, a batch
+     * failing at insert time leaves a gap in the numbering.
+     *
+     * @param items the journal entries to post.
+     * @return the same items, posted.
+     * @throws PostBatchException   if any entry is not valid.
+     * @throws PersistenceException if the inserts fail.
+     */
+    public @NotNull List<Journal> postBatch(@NotNull List<Journal> items) {
+        if (items.isEmpty()) return items;
+
+        //Validate and aggregate balance deltas of the whole batch.
+        var adjuster = new TaxAccountAdjuster();
+        var failures = new ArrayList<PostFailure>();
+        var lines = 0;
+        for (int i = 0; i < items.size(); i++) {
+            var item = items.get(i);
+            try {
+                check(item);
+                adjuster.addAll(new TaxAccountAdjuster().add(item));
+                lines += item.getDetail().size();
+            } catch (RuntimeException e) {
+                failures.add(new PostFailure(i, item, e));
+            }
+        }
+        if (!failures.isEmpty()) throw new PostBatchException(failures);
+
+        //Reserve correlatives, one step per period and role.
+        var groups = items.stream().collect(Collectors.groupingBy(
+                j -> new PeriodRole(j.getPeriod().getId(), j.getSubdiary().getRole()),
+                LinkedHashMap::new,
+                Collectors.toList()));
+        for (var group : groups.values()) {
+            var first = group.get(0);
+            var role = first.getSubdiary().getRole();
+            var number = DAO.correlative()
+                    .specialize()
+                    .allocate(JOURNAL, first.getPeriod(), role, group.size());
+            for (var item : group) item.setCorrelative("%s%09d".formatted(role.name(), number++));
+        }
+
+        var batch = Math.max(1, DAOSource.get().getBatchSize());
+        var em = DAOSource.manager();
+        var tx = em.getTransaction();
+        try {
+            //Begin transaction.
+            tx.begin();
+
+            //Fetch every detail id at once, instead of a round trip per line.
+            var ids = DAOCopy.nextIds(em.unwrap(Connection.class), DETAIL_SEQUENCE, lines);
+            var next = 0;
+            var now = LocalDateTime.now();
+            var pending = 0;
+            for (var item : items) {
+                for (var ln : item.getDetail()) {
+                    ln.setTransaction(item);
+                    ln.setId(ids[next++]);
+                }
+                prepare(item, now);
+                em.persist(item);
+                pending += item.getDetail().size();
+                if (pending >= batch) {
+                    em.flush();
+                    em.clear();
+                    pending = 0;
+                }
+            }
+            em.flush();
+
+            //Update tax account and period balances.
+            adjuster.apply(em);
+            DAOAccountBalance.post(em, items);
+
+            //Commit transaction.
+            tx.commit();
+            DAOAccountBalance.evict(em);
+            afterWrite();
+            return items;
+        } catch (SQLException e) {
+            if (tx.isActive()) tx.rollback();
+            throw new PersistenceException("Cannot reserve journal detail ids.", e);
+        } catch (RuntimeException e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        } finally {
+            if (em.isOpen()) em.close();
+        }
+    }
+
+    /**
+     * Syncs the redundant information of a journal entry
+     * before inserting it.
+     *
+     * @param item the journal entry.
+     * @param now  the creation timestamp.
+     */
+    private static void prepare(@NotNull Journal item, @NotNull LocalDateTime now) {
+        item.getDetail().forEach(ln -> ln.setAccountName(ln.getAccount().getName()));
+        item.setCreatedAt(now);
+    }
+
+    /**
+     * Checks that a journal entry has everything needed to be posted.
+     *
+     * @param item the journal entry.
+     * @throws IllegalArgumentException if something is missing.
+     */
+    private static void check(@NotNull Journal item) {
+        if (item.getPeriod() == null)
+            throw new IllegalArgumentException("El asiento no tiene periodo.");
+        if (item.getSubdiary() == null || item.getSubdiary().getRole() == null)
+            throw new IllegalArgumentException("El asiento no tiene subdiario.");
+        if (item.getCurrency() == null || item.getXrate() == null)
+            throw new IllegalArgumentException("El asiento no tiene moneda o tipo de cambio.");
+        if (item.getDetail().isEmpty())
+            throw new IllegalArgumentException("El asiento no tiene detalle.");
+        for (JournalDt ln : item.getDetail()) {
+            if (ln.getAccount() == null)
+                throw new IllegalArgumentException("La línea %d no tiene cuenta.".formatted(ln.getLine()));
+        }
+    }
+
+    /**
+     * Grouping key of the correlatives reservation.
+     *
+     * @param period the period id.
+     * @param role   the subdiary role.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    private record PeriodRole(@NotNull String period, @NotNull SubdiaryRole role) {
+    }
+
+    /**
+     * A journal entry that couldn't be posted.
+     *
+     * @param index   the zero based position in the batch.
+     * @param journal the journal entry.
+     * @param cause   the error.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    public record PostFailure(int index, @NotNull Journal journal, @NotNull Throwable cause) {
+        @Override
+        public String toString() {
+            return "Asiento %d: %s".formatted(index + 1, cause.getMessage());
+        }
+    }
+
+    /**
+     * Exception to report the journal entries of a batch
+     * that couldn't be posted. Nothing is written when thrown.
+     *
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    public static final class PostBatchException extends RuntimeException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        /**
+         * The failures.
+         */
+        private final transient List<PostFailure> failures;
+
+        /**
+         * Default constructor.
+         *
+         * @param failures the failures.
+         */
+        public PostBatchException(@NotNull List<PostFailure> failures) {
+            super("%d asiento(s) no se pudieron registrar:%n%s".formatted(failures.size(),
+                    failures.stream().limit(20).map(PostFailure::toString)
+                            .collect(Collectors.joining(System.lineSeparator()))));
+            this.failures = failures;
+        }
+
+        /**
+         * Accessor - getter.
+         *
+         * @return the failures.
+         */
+        public @NotNull List<PostFailure> getFailures() {
+            return failures;
+        }
+    }
 }
@@ -0,0 +1,307 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.System.Logger.Level;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The schema migrations, applied in declaration order when the
+ * persistence is initialized. Each migration is applied once per
+ * database, and recorded in {@code public.schema_migration}.
+ * <br/>
+ * A migration may have a data step (ie: to fill a new table),
+ * run after its script within the same transaction.
+ * <br/>
+ * An optional migration (ie: one needing rights a normal database
+ * role may lack) runs within a savepoint: if it fails, it's rolled
+ * back alone, logged, and tried again on the next start; the other
+ * migrations are still applied. Code relying on it must check that
+ * it's in place (see {@link DAOSource#hasTrigrams()}).
+ * <br/>
+ * The migrations must be idempotent, because databases created
+ * from the model (model/perutax.dbm) already contain their changes
+ * without the record. Never reorder nor edit a released migration:
+ * append a new one instead.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+enum DAOMigration {
+    /**
+     * Per-period account balance snapshots, filled from the
+     * journal entries posted before the table existed.
+     */
+    ACCOUNT_BALANCE(1, DAOMigration::rebuildBalances, """
+            CREATE TABLE IF NOT EXISTS public.account_balance (
+                period char(6) NOT NULL,
+                account char(8) NOT NULL,
+                opening_sc decimal(14,2) NOT NULL DEFAULT 0.00,
+                debit_sc decimal(14,2) NOT NULL DEFAULT 0.00,
+                credit_sc decimal(14,2) NOT NULL DEFAULT 0.00,
+                closing_sc decimal(14,2) NOT NULL DEFAULT 0.00,
+                opening_fc decimal(14,2) NOT NULL DEFAULT 0.00,
+                debit_fc decimal(14,2) NOT NULL DEFAULT 0.00,
+                credit_fc decimal(14,2) NOT NULL DEFAULT 0.00,
+                closing_fc decimal(14,2) NOT NULL DEFAULT 0.00,
+                CONSTRAINT account_balance_pk PRIMARY KEY (period, account),
+                CONSTRAINT account_balance_period_fk FOREIGN KEY (period)
+                    REFERENCES public.tax_period (id) MATCH SIMPLE
+                    ON DELETE RESTRICT ON UPDATE RESTRICT,
+                CONSTRAINT account_balance_account_fk FOREIGN KEY (account)
+                    REFERENCES public.tax_account (id) MATCH SIMPLE
+                    ON DELETE RESTRICT ON UPDATE RESTRICT
+            );
+            CREATE INDEX IF NOT EXISTS account_balance_account_idx
+                ON public.account_balance (account, period);
+            """),
+    /**
+     * Folio documents digests, the keys of the local blob stores.
+     */
+    FOLIO_BLOBS(2, """
+            ALTER TABLE public.folio_file
+                ADD COLUMN IF NOT EXISTS pdf_sha char(64),
+                ADD COLUMN IF NOT EXISTS xml_sha char(64),
+                ADD COLUMN IF NOT EXISTS cdr_sha char(64),
+                ALTER COLUMN pdf DROP NOT NULL;
+            """),
+    /**
+     * Trigram indexes for the person and tax account searches. It's
+     * optional: installing pg_trgm takes the database owner (or a
+     * superuser), so without it the searches aren't ranked.
+     */
+    SEARCH_TRIGRAMS(3, true, """
+            CREATE EXTENSION IF NOT EXISTS pg_trgm WITH SCHEMA public;
+            CREATE INDEX IF NOT EXISTS person_full_name_trgm_idx
+                ON public.person USING gin (full_name gin_trgm_ops);
+            CREATE INDEX IF NOT EXISTS tax_account_name_trgm_idx
+                ON public.tax_account USING gin (name gin_trgm_ops);
+            """),
+    /**
+     * Pattern indexes for the prefix searches by DOI number
+     * and account id.
+     */
+    SEARCH_PATTERNS(4, """
+            CREATE INDEX IF NOT EXISTS person_doi_num_pattern_idx
+                ON public.person (doi_num varchar_pattern_ops);
+            CREATE INDEX IF NOT EXISTS tax_account_id_pattern_idx
+                ON public.tax_account (id bpchar_pattern_ops);
+            """);
+
+    /**
+     * Key of the transaction level advisory lock, so two
+     * clients starting at once don't apply the same migration.
+     */
+    private static final long LOCK_KEY = 0x70657275_74617801L;
+    /**
+     * The logger of skipped optional migrations.
+     */
+    private static final System.Logger LOG = System.getLogger(DAOMigration.class.getName());
+    /**
+     * The version number, unique and ascending.
+     */
+    private final int version;
+    /**
+     * The SQL script.
+     */
+    private final String sql;
+    /**
+     * Data step run after the script, if any.
+     */
+    private final Consumer<EntityManager> after;
+    /**
+     * True if a failure skips this migration instead
+     * of failing the others.
+     */
+    private final boolean optional;
+
+    /**
+     * Default constructor.
+     *
+     * @param version the version number.
+     * @param sql     the SQL script.
+     */
+    DAOMigration(int version, @NotNull String sql) {
+        this(version, null, sql);
+    }
+
+    /**
+     * Constructor of a maybe optional migration.
+     *
+     * @param version  the version number.
+     * @param optional true if a failure skips this migration
+     *                 instead of failing the others.
+     * @param sql      the SQL script.
+     */
+    DAOMigration(int version, boolean optional, @NotNull String sql) {
+        this.version = version;
+        this.optional = optional;
+        this.after = null;
+        this.sql = sql;
+    }
+
+    /**
+     * Constructor with a data step.
+     *
+     * @param version the version number.
+     * @param after   the data step run after the script, within
+     *                the same transaction (may be null).
+     * @param sql     the SQL script.
+     */
+    DAOMigration(int version, @Nullable Consumer<EntityManager> after, @NotNull String sql) {
+        this.version = version;
+        this.optional = false;
+        this.after = after;
+        this.sql = sql;
+    }
+
+    /**
+     * Applies the pending migrations, in a single transaction.
+     *
+     * @param emf the entity manager factory.
+     * @return the count of applied migrations.
+     * @throws PersistenceException if a migration which isn't optional
+     *                              fails (none is applied).
+     */
+    static int migrate(@NotNull EntityManagerFactory emf) {
+        var em = emf.createEntityManager();
+        var tx = em.getTransaction();
+        try {
+            tx.begin();
+            var count = migrate(em);
+            tx.commit();
+            return count;
+        } catch (RuntimeException e) {
+            if (tx.isActive()) tx.rollback();
+            throw e;
+        } finally {
+            if (em.isOpen()) em.close();
+        }
+    }
+
+    /**
+     * Applies the pending migrations, within the active
+     * transaction of the entity manager.
+     *
+     * @param em the entity manager, with an active transaction.
+     * @return the count of applied migrations.
+     */
+    private static int migrate(@NotNull EntityManager em) {
+        var current = 0;
+        var con = em.unwrap(Connection.class);
+        try (var st = con.createStatement()) {
+            st.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS public.schema_migration (
+                        version integer NOT NULL PRIMARY KEY,
+                        name varchar NOT NULL,
+                        applied_at timestamptz NOT NULL DEFAULT now()
+                    )""");
+            Set<Integer> applied = new HashSet<>();
+            try (var rs = st.executeQuery("SELECT version FROM public.schema_migration")) {
+                while (rs.next()) applied.add(rs.getInt(1));
+            }
+            var count = 0;
+            try (var ins = con.prepareStatement(
+                    "INSERT INTO public.schema_migration (version, name) VALUES (?, ?)")) {
+                for (var m : values()) {
+                    if (applied.contains(m.version)) continue;
+                    current = m.version;
+                    if (m.optional) {
+                        if (!tryExecute(con, m)) continue;
+                    } else st.execute(m.sql);
+                    if (m.after != null) m.after.accept(em);
+                    ins.setInt(1, m.version);
+                    ins.setString(2, m.name());
+                    ins.executeUpdate();
+                    count++;
+                }
+            }
+            return count;
+        } catch (SQLException e) {
+            throw new PersistenceException("Cannot apply the schema migration " + current + ".", e);
+        }
+    }
+
+    /**
+     * Runs the script of an optional migration within a savepoint,
+     * rolling back to it (and logging why) if the script fails.
+     *
+     * @param con the JDBC connection, with an active transaction.
+     * @param m   the optional migration.
+     * @return true if applied, false if skipped.
+     * @throws SQLException if the savepoint fails.
+     */
+    private static boolean tryExecute(@NotNull Connection con, @NotNull DAOMigration m) throws SQLException {
+        var savepoint = con.setSavepoint();
+        try (var st = con.createStatement()) {
+            st.execute(m.sql);
+            con.releaseSavepoint(savepoint);
+            return true;
+        } catch (SQLException e) {
+            con.rollback(savepoint);
+            LOG.log(Level.WARNING, "Skipped the optional schema migration " + m.version + " (" + m.name()
+                    + "), it will be tried again on the next start: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Checks if an extension is installed in the database.
+     *
+     * @param emf  the entity manager factory.
+     * @param name the extension name.
+     * @return true if installed.
+     */
+    static boolean installed(@NotNull EntityManagerFactory emf, @NotNull String name) {
+        var em = emf.createEntityManager();
+        try {
+            var count = (Number) em
+                    .createNativeQuery("SELECT COUNT(*) FROM pg_catalog.pg_extension WHERE extname = ?1")
+                    .setParameter(1, name)
+                    .getSingleResult();
+            return count.intValue() > 0;
+        } finally {
+            if (em.isOpen()) em.close();
+        }
+    }
+
+    /**
+     * Rebuilds the account balances of every tax period, in period
+     * order (as {@link DAOAccountBalance#rebuildAll()} does).
+     *
+     * @param em the entity manager, with an active transaction.
+     */
+    private static void rebuildBalances(@NotNull EntityManager em) {
+        var ids = em.createQuery("SELECT T.id FROM TaxPeriod T ORDER BY T.id", String.class)
+                .getResultList();
+        for (var id : ids) DAOAccountBalance.rebuild(em, id);
+        DAOAccountBalance.evict(em);
+    }
+}
@@ -19,11 +19,12 @@
 package com.yupay.perutax.dao;
 
 import com.yupay.perutax.entities.Person;
-import jakarta.persistence.criteria.Predicate;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Unmodifiable;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -57,37 +58,52 @@ public final class DAOPerson extends DAOBase<Person, DAOPerson> {
         return item.getId();
     }
 
+    @Override
+    protected void afterWrite(@NotNull Collection<Person> items) {
+        super.afterWrite(items);
+        SearchIndex.persons().refresh(items.stream().map(this::id).toList());
+    }
+
     /**
      * Mehtod to find a person whose name contains s, or id number starts with s. It also
      * will ensure that the persons match at least one role of request roles.
+     * <br/>
+     * The name is matched ignoring case through the trigram index
+     * (see {@link DAOMigration#SEARCH_TRIGRAMS}). Number matches come
+     * first, then the names ranked by word similarity (or sorted, if
+     * the trigrams aren't installed); up to {@link SearchIndex#LIMIT}
+     * results are fetched. It's the {@link SearchIndex#persons()}
+     * fallback while the index is being read.
      *
      * @param s     the text to find.
      * @param roles the roles to match.
      * @return a list of results.
      */
+    @SuppressWarnings("unchecked")
     public List<Person> search(@NotNull String s, @NotNull PersonRole @NotNull ... roles) {
+        var text = s.strip();
+        //Roles are column names of the enum, never user input.
+        var whereRoles = Stream.of(roles)
+                .map(r -> "P." + r.column)
+                .distinct()
+                .collect(Collectors.joining(" OR ", " AND (", ")"));
+        var ranked = DAOSource.get().hasTrigrams();
         var em = DAOSource.manager();
         try {
-            var cb = em.getCriteriaBuilder();
-            var qry = cb.createQuery(Person.class);
-            var root = qry.from(Person.class);
-            var whereRoles = Stream.of(roles)
-                    .map(p -> p.column)
-                    .map(x -> cb.isTrue(root.get(x)))
-                    .toList();
-            //If roles is empty, get only 2 predicates.
-            Predicate[] all = new Predicate[whereRoles.isEmpty() ? 2 : 3];
-            //Trash flag should be false.
-            all[0] = cb.isFalse(root.get("trash"));
-            //Doi number or name matching.
-            all[1] = cb.or(
-                    cb.like(root.get("doiNum"), s + "%"),
-                    cb.like(root.get("fullName"), "%" + s + "%"));
-            //If roles filtering were applied, add to WHERE criteria.
-            if (!whereRoles.isEmpty()) all[2] = cb.or(whereRoles.toArray(Predicate[]::new));
-            //Create query and return
-            qry.select(root).where(cb.and(all));
-            return em.createQuery(qry).getResultList();
+            var qry = em.createNativeQuery(
+                            "SELECT P.* FROM public.person P " +
+                                    "WHERE P.trash = FALSE " +
+                                    "AND (P.doi_num LIKE ?1 OR P.full_name ILIKE ?2)" +
+                                    (roles.length == 0 ? "" : whereRoles) +
+                                    " ORDER BY P.doi_num LIKE ?1 DESC, " +
+                                    (ranked ? "word_similarity(?4, P.full_name) DESC, " : "") +
+                                    "P.full_name LIMIT ?3",
+                            Person.class)
+                    .setParameter(1, likeEscape(text) + "%")
+                    .setParameter(2, "%" + likeEscape(text) + "%")
+                    .setParameter(3, SearchIndex.LIMIT);
+            if (ranked) qry.setParameter(4, text);
+            return qry.getResultList();
         } finally {
             if (em.isOpen()) em.close();
         }
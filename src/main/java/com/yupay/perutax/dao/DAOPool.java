@@ -0,0 +1,334 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import javax.sql.DataSource;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The JDBC connection pool backing the entity manager factory.
+ * It's configured from the same .properties file that holds
+ * the JPA connection settings, using the keys prefixed with
+ * {@code perutax.pool.} (see model-&gt;developer.properties).
+ * <br/>
+ * Connections are validated on borrow when they have been idle
+ * for a while, idle connections above the minimum are evicted
+ * after {@code perutax.pool.idle-timeout}, and borrowers wait
+ * at most {@code perutax.pool.connection-timeout} before failing.
+ * <br/>
+ * The connections are handed out through a {@link GatedDataSource}
+ * with one permit per pooled connection, held from the opening of
+ * a connection until it's closed. So borrowers queue in order, even
+ * from virtual threads, instead of racing for the pool.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class DAOPool implements AutoCloseable {
+    /**
+     * Prefix of every pool setting.
+     */
+    public static final String PREFIX = "perutax.pool.";
+    /**
+     * The JPA connection URL key.
+     */
+    static final String JDBC_URL = "jakarta.persistence.jdbc.url";
+    /**
+     * The JPA driver class key.
+     */
+    static final String JDBC_DRIVER = "jakarta.persistence.jdbc.driver";
+    /**
+     * The JPA connection user key.
+     */
+    static final String JDBC_USER = "jakarta.persistence.jdbc.user";
+    /**
+     * The JPA connection password key.
+     */
+    static final String JDBC_PASSWORD = "jakarta.persistence.jdbc.password";
+    /**
+     * The underlying pooled data source.
+     */
+    private final HikariDataSource source;
+    /**
+     * The permits over the pooled data source.
+     */
+    private final GatedDataSource gate;
+    /**
+     * Metrics collected from the pool.
+     */
+    private final Tracker tracker = new Tracker();
+
+    /**
+     * Private constructor. Use {@link #fromProperties(Properties)}.
+     *
+     * @param config the pool configuration.
+     */
+    private DAOPool(@NotNull HikariConfig config) {
+        config.setMetricsTrackerFactory((name, stats) -> tracker.bind(stats));
+        source = new HikariDataSource(config);
+        gate = new GatedDataSource(source, config.getMaximumPoolSize(), config.getConnectionTimeout());
+    }
+
+    /**
+     * Checks if the pooled mode is enabled in the given settings.
+     * The pool is enabled unless {@code perutax.pool.enabled=false}.
+     *
+     * @param props the settings.
+     * @return true if pooled mode is enabled.
+     */
+    static boolean isEnabled(@NotNull Properties props) {
+        return Boolean.parseBoolean(props.getProperty(PREFIX + "enabled", "true"));
+    }
+
+    /**
+     * Creates a new pool using the JPA connection settings
+     * and the pool settings found in the given properties.
+     *
+     * @param props the settings.
+     * @return a new started pool.
+     */
+    @Contract("_->new")
+    static @NotNull DAOPool fromProperties(@NotNull Properties props) {
+        var cfg = new HikariConfig();
+        cfg.setPoolName("perutax");
+        cfg.setJdbcUrl(props.getProperty(JDBC_URL));
+        var driver = props.getProperty(JDBC_DRIVER);
+        if (driver != null && !driver.isBlank()) cfg.setDriverClassName(driver);
+        cfg.setUsername(props.getProperty(JDBC_USER));
+        cfg.setPassword(props.getProperty(JDBC_PASSWORD));
+        //Lets the driver rewrite insert batches into multi-row inserts.
+        cfg.addDataSourceProperty("reWriteBatchedInserts", "true");
+        cfg.setMaximumPoolSize(intOf(props, "max-size", 10));
+        cfg.setMinimumIdle(intOf(props, "min-idle", 2));
+        cfg.setIdleTimeout(longOf(props, "idle-timeout", 600_000L));
+        cfg.setMaxLifetime(longOf(props, "max-lifetime", 1_800_000L));
+        cfg.setConnectionTimeout(longOf(props, "connection-timeout", 30_000L));
+        cfg.setValidationTimeout(longOf(props, "validation-timeout", 5_000L));
+        var test = props.getProperty(PREFIX + "test-query");
+        if (test != null && !test.isBlank()) cfg.setConnectionTestQuery(test);
+        return new DAOPool(cfg);
+    }
+
+    /**
+     * Reads an integer pool setting.
+     *
+     * @param props the settings.
+     * @param key   the key, without prefix.
+     * @param def   the default value.
+     * @return the setting value.
+     */
+    private static int intOf(@NotNull Properties props, @NotNull String key, int def) {
+        var v = props.getProperty(PREFIX + key);
+        return v == null || v.isBlank() ? def : Integer.parseInt(v.strip());
+    }
+
+    /**
+     * Reads a long pool setting (milliseconds).
+     *
+     * @param props the settings.
+     * @param key   the key, without prefix.
+     * @param def   the default value.
+     * @return the setting value.
+     */
+    private static long longOf(@NotNull Properties props, @NotNull String key, long def) {
+        var v = props.getProperty(PREFIX + key);
+        return v == null || v.isBlank() ? def : Long.parseLong(v.strip());
+    }
+
+    /**
+     * The pooled data source, meant to be handed to JPA
+     * as non JTA data source. Each open connection holds
+     * one of the permits.
+     *
+     * @return the data source.
+     */
+    @NotNull
+    public DataSource dataSource() {
+        return gate;
+    }
+
+    /**
+     * The maximum pool size, read from {@code perutax.pool.max-size}.
+     *
+     * @return the maximum count of connections.
+     */
+    public int maxSize() {
+        return source.getMaximumPoolSize();
+    }
+
+    /**
+     * Takes a snapshot of the pool metrics.
+     *
+     * @return the current metrics.
+     */
+    @NotNull
+    public Stats stats() {
+        return tracker.snapshot();
+    }
+
+    @Override
+    public void close() {
+        if (!source.isClosed()) source.close();
+    }
+
+    /**
+     * Immutable snapshot of the pool metrics.
+     *
+     * @param active        connections in use.
+     * @param idle          connections waiting in the pool.
+     * @param total         total connections (active + idle).
+     * @param pending       threads waiting for a connection.
+     * @param max           maximum pool size.
+     * @param acquired      connections borrowed since startup.
+     * @param waitNanos     total time spent waiting for a connection.
+     * @param maxWaitNanos  longest wait for a connection.
+     * @param timeouts      borrow attempts that timed out.
+     * @param created       physical connections opened.
+     * @param usageMillis   total time connections were held by borrowers.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    public record Stats(int active,
+                        int idle,
+                        int total,
+                        int pending,
+                        int max,
+                        long acquired,
+                        long waitNanos,
+                        long maxWaitNanos,
+                        long timeouts,
+                        long created,
+                        long usageMillis) {
+        /**
+         * Average time spent waiting for a connection.
+         *
+         * @return the average wait, in milliseconds.
+         */
+        public double avgWaitMillis() {
+            return acquired == 0 ? 0.0 : (double) waitNanos / acquired / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return "active=%d, idle=%d, total=%d/%d, pending=%d, acquired=%d, avgWait=%.3fms, maxWait=%.3fms, timeouts=%d, created=%d"
+                    .formatted(active, idle, total, max, pending, acquired, avgWaitMillis(),
+                            maxWaitNanos / 1_000_000.0, timeouts, created);
+        }
+    }
+
+    /**
+     * Metrics tracker fed by the pool itself.
+     *
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    private static final class Tracker implements IMetricsTracker {
+        /**
+         * Borrowed connections count.
+         */
+        private final LongAdder acquired = new LongAdder();
+        /**
+         * Total wait nanoseconds.
+         */
+        private final LongAdder waitNanos = new LongAdder();
+        /**
+         * Timeouts count.
+         */
+        private final LongAdder timeouts = new LongAdder();
+        /**
+         * Physical connections created.
+         */
+        private final LongAdder created = new LongAdder();
+        /**
+         * Total usage milliseconds.
+         */
+        private final LongAdder usage = new LongAdder();
+        /**
+         * The longest wait, in nanoseconds.
+         */
+        private volatile long maxWait;
+        /**
+         * The pool gauges, bound on pool start.
+         */
+        private volatile PoolStats gauges;
+
+        /**
+         * Binds the pool gauges to this tracker.
+         *
+         * @param stats the gauges.
+         * @return this.
+         */
+        @Contract("_->this")
+        private @NotNull Tracker bind(@NotNull PoolStats stats) {
+            gauges = stats;
+            return this;
+        }
+
+        @Override
+        public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+            created.increment();
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquired.increment();
+            waitNanos.add(elapsedAcquiredNanos);
+            if (elapsedAcquiredNanos > maxWait) maxWait = elapsedAcquiredNanos;
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usage.add(elapsedBorrowedMillis);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+
+        /**
+         * Takes a snapshot of the metrics.
+         *
+         * @return the snapshot.
+         */
+        private @NotNull Stats snapshot() {
+            var g = gauges;
+            return new Stats(
+                    g == null ? 0 : g.getActiveConnections(),
+                    g == null ? 0 : g.getIdleConnections(),
+                    g == null ? 0 : g.getTotalConnections(),
+                    g == null ? 0 : g.getPendingThreads(),
+                    g == null ? 0 : g.getMaxConnections(),
+                    acquired.sum(),
+                    waitNanos.sum(),
+                    maxWait,
+                    timeouts.sum(),
+                    created.sum(),
+                    usage.sum());
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.dao;
+
+import com.yupay.perutax.concurrent.IOScheduler;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.PersistenceException;
+import org.eclipse.persistence.sessions.UnitOfWork;
+import org.jetbrains.annotations.NotNull;
+import reactor.core.publisher.Flux;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Streams the rows of a native SQL query through a forward only
+ * JDBC cursor, mapping each row to a plain value (not an entity),
+ * so there's no persistence context bookkeeping nor shared cache
+ * pollution. It's the read path for reports and file exports,
+ * where only a few columns of many rows are needed.
+ * <br/>
+ * As {@link DAOCursor}, the rows are fetched in chunks of the
+ * configured fetch size within a read only transaction, which
+ * is always rolled back. The flux is cold and blocking: nothing
+ * happens until subscription, so subscribe on an IO lane (see
+ * {@link IOScheduler#lane(String)}). Resources are released on completion, error or
+ * cancellation.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class DAORows {
+    /**
+     * Private constructor, utility class.
+     */
+    private DAORows() {
+    }
+
+    /**
+     * Creates a flux of the rows of a native query.
+     *
+     * @param sql    the native SQL query.
+     * @param binder sets the query parameters.
+     * @param mapper maps the current row of the result set.
+     * @param <T>    type erasure of mapped rows.
+     * @return the cold flux of rows.
+     */
+    public static <T> @NotNull Flux<T> flux(@NotNull String sql,
+                                            @NotNull Binder binder,
+                                            @NotNull Mapper<T> mapper) {
+        return Flux.using(() -> Cursor.open(sql, binder),
+                c -> Flux.<T>generate(sink -> {
+                    try {
+                        if (c.rs.next()) sink.next(mapper.map(c.rs));
+                        else sink.complete();
+                    } catch (SQLException e) {
+                        sink.error(new PersistenceException("Cannot read query results.", e));
+                    }
+                }),
+                Cursor::close);
+    }
+
+    /**
+     * Sets the parameters of a prepared statement.
+     *
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    @FunctionalInterface
+    public interface Binder {
+        /**
+         * Sets the parameters.
+         *
+         * @param st the statement.
+         * @throws SQLException if something fails.
+         */
+        void bind(@NotNull PreparedStatement st) throws SQLException;
+    }
+
+    /**
+     * Maps the current row of a result set.
+     *
+     * @param <T> type erasure of mapped rows.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    @FunctionalInterface
+    public interface Mapper<T> {
+        /**
+         * Maps the current row. It must not move the cursor.
+         *
+         * @param rs the result set.
+         * @return the mapped row.
+         * @throws SQLException if something fails.
+         */
+        @NotNull T map(@NotNull ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * The resources held while streaming.
+     *
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    private static final class Cursor {
+        /**
+         * The entity manager owning the connection.
+         */
+        private final EntityManager em;
+        /**
+         * The transaction holding the connection.
+         */
+        private final EntityTransaction tx;
+        /**
+         * The statement.
+         */
+        private PreparedStatement st;
+        /**
+         * The results.
+         */
+        private ResultSet rs;
+
+        /**
+         * Private constructor. Use {@link #open(String, Binder)}.
+         *
+         * @param em the entity manager.
+         */
+        private Cursor(@NotNull EntityManager em) {
+            this.em = em;
+            this.tx = em.getTransaction();
+        }
+
+        /**
+         * Opens the cursor.
+         *
+         * @param sql    the native query.
+         * @param binder sets the query parameters.
+         * @return the opened cursor.
+         * @throws PersistenceException if the query fails.
+         */
+        private static @NotNull Cursor open(@NotNull String sql, @NotNull Binder binder) {
+            var c = new Cursor(DAOSource.manager());
+            try {
+                c.tx.begin();
+                c.em.unwrap(UnitOfWork.class).beginEarlyTransaction();
+                var con = c.em.unwrap(Connection.class);
+                c.st = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                c.st.setFetchSize(DAOSource.get().getFetchSize());
+                binder.bind(c.st);
+                c.rs = c.st.executeQuery();
+                return c;
+            } catch (SQLException e) {
+                c.close();
+                throw new PersistenceException("Cannot open query cursor.", e);
+            } catch (RuntimeException e) {
+                c.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Releases the results, the statement, the transaction
+         * and the entity manager.
+         */
+        private void close() {
+            try {
+                if (rs != null) rs.close();
+                if (st != null) st.close();
+            } catch (SQLException ignored) {
+                //The transaction rollback releases them anyway.
+            } finally {
+                if (tx.isActive()) tx.rollback();
+                if (em.isOpen()) em.close();
+            }
+        }
+    }
+}
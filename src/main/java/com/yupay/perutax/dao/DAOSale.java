@@ -0,0 +1,95 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.dao;
+
+import com.yupay.perutax.entities.Journal;
+import com.yupay.perutax.entities.Sale;
+import com.yupay.perutax.entities.TaxPeriod;
+import org.eclipse.persistence.annotations.BatchFetchType;
+import org.eclipse.persistence.config.QueryHints;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.List;
+
+/**
+ * DAO implementation for Sale entities.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class DAOSale extends DAOBase<Sale, DAOSale> {
+    /**
+     * Package-private constructor.
+     * Use a static factory.
+     *
+     * @see DAO#sale()
+     */
+    DAOSale() {
+    }
+
+    @Override
+    protected @NotNull Class<Sale> tClass() {
+        return Sale.class;
+    }
+
+    @Override
+    public @NotNull DAOSale specialize() {
+        return this;
+    }
+
+    @Override
+    protected @NotNull @Unmodifiable Object id(@NotNull Sale item) {
+        return item.getId();
+    }
+
+    /**
+     * Finds the sales of a tax period along with their detail
+     * lines, totals and customers ({@link Sale#GRAPH_DETAIL}),
+     * sorted by correlative. The detail lines (with products and
+     * units) and the totals are outer joined into the sales query,
+     * while the customers and journals are batch read by id. The
+     * journal lines aren't read here: {@link Journal#setDetails}
+     * keeps them unread until they are asked for, and then each
+     * journal reads its own lines with one more query.
+     *
+     * @param period the tax period.
+     * @return the sales of the period.
+     */
+    public @NotNull List<Sale> findByPeriod(@NotNull TaxPeriod period) {
+        var em = DAOSource.manager();
+        try {
+            return em.createQuery("SELECT DISTINCT S" +
+                                    " FROM Sale S" +
+                                    " WHERE S.period = :period" +
+                                    " ORDER BY S.correlative",
+                            Sale.class)
+                    .setParameter("period", period)
+                    .setHint("jakarta.persistence.loadgraph", em.getEntityGraph(Sale.GRAPH_DETAIL))
+                    .setHint(QueryHints.LEFT_FETCH, "S.detail.mUnit")
+                    .setHint(QueryHints.LEFT_FETCH, "S.detail.product")
+                    .setHint(QueryHints.LEFT_FETCH, "S.totals")
+                    .setHint(QueryHints.BATCH_TYPE, BatchFetchType.IN)
+                    .getResultList();
+        } finally {
+            if (em.isOpen()) em.close();
+        }
+    }
+}
@@ -18,9 +18,11 @@
 
 package com.yupay.perutax.dao;
 
+import com.yupay.perutax.concurrent.IOScheduler;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
+import org.eclipse.persistence.config.PersistenceUnitProperties;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -47,6 +49,22 @@ public final class DAOSource extends Thread {
      * The entity manager factory, initialized upon request.
      */
     private EntityManagerFactory emf;
+    /**
+     * The JDBC connection pool, if pooled mode is enabled.
+     */
+    private DAOPool pool;
+    /**
+     * The JDBC fetch size for streaming queries.
+     */
+    private int fetchSize = 500;
+    /**
+     * The JDBC batch size for bulk inserts.
+     */
+    private int batchSize = 100;
+    /**
+     * True if the pg_trgm extension is installed.
+     */
+    private boolean trigrams;
 
     /**
      * The private initializer - singleton pattern.
@@ -83,6 +101,15 @@ public final class DAOSource extends Thread {
      * Initializes the persistence (entity manager and its factory)
      * from an external .properties file. See in model-&gt;developer.properties
      * for a sample file and where to put it.
+     * <br/>
+     * Unless {@code perutax.pool.enabled=false}, the JDBC connections
+     * are taken from a {@link DAOPool} built from the same file, so
+     * short lived entity managers don't open a new session each time.
+     * <br/>
+     * Unless {@code perutax.migrations.enabled=false}, the pending
+     * schema migrations are applied before returning. If they fail
+     * (or the factory cannot be created), the factory and the pool are
+     * closed before rethrowing.
      *
      * @param settings the settings path.
      */
@@ -92,9 +119,39 @@ public final class DAOSource extends Thread {
         try (var reader = Files
                 .newBufferedReader(settings, StandardCharsets.UTF_8)) {
             props.load(reader);
+            var migrate = Boolean.parseBoolean(props
+                    .getProperty("perutax.migrations.enabled", "true").strip());
+            var fs = props.getProperty("perutax.jdbc.fetch-size");
+            if (fs != null && !fs.isBlank()) fetchSize = Integer.parseInt(fs.strip());
+            //Batch writing is on by default, for bulk inserts.
+            props.putIfAbsent(PersistenceUnitProperties.BATCH_WRITING, "JDBC");
+            props.putIfAbsent(PersistenceUnitProperties.BATCH_WRITING_SIZE, String.valueOf(batchSize));
+            batchSize = Integer.parseInt(props.getProperty(PersistenceUnitProperties.BATCH_WRITING_SIZE).strip());
+            DAOCache.get().configure(props);
+
+            try {
+                //Replace the JDBC settings with the pooled data source.
+                if (DAOPool.isEnabled(props)) {
+                    pool = DAOPool.fromProperties(props);
+                    props.remove(DAOPool.JDBC_URL);
+                    props.remove(DAOPool.JDBC_DRIVER);
+                    props.remove(DAOPool.JDBC_USER);
+                    props.remove(DAOPool.JDBC_PASSWORD);
+                    props.put(PersistenceUnitProperties.NON_JTA_DATASOURCE, pool.dataSource());
+                }
 
-            //Create entity manager and preserve factory for shutting down.
-            emf = Persistence.createEntityManagerFactory("PUperutax", props);
+                //Create entity manager and preserve factory for shutting down.
+                emf = Persistence.createEntityManagerFactory("PUperutax", props);
+                if (migrate) DAOMigration.migrate(emf);
+                trigrams = DAOMigration.installed(emf, "pg_trgm");
+            } catch (RuntimeException e) {
+                //Don't leave the pool connections open behind a failed start.
+                if (emf != null && emf.isOpen()) emf.close();
+                emf = null;
+                if (pool != null) pool.close();
+                pool = null;
+                throw e;
+            }
         } catch (IOException e) {
             throw new UncheckedIOException("Cannot read persistence .properties file.", e);
         }
@@ -111,6 +168,59 @@ public final class DAOSource extends Thread {
         return emf.createEntityManager();
     }
 
+    /**
+     * The default JDBC fetch size for streaming queries,
+     * read from {@code perutax.jdbc.fetch-size} (500 if not set).
+     *
+     * @return the fetch size.
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * The JDBC batch size for bulk inserts, read from
+     * {@code eclipselink.jdbc.batch-writing.size} (100 if not set).
+     * Bulk inserts also flush and clear the persistence
+     * context each time this count is reached.
+     *
+     * @return the batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * The maximum count of concurrent JDBC connections: the
+     * pool size, or the {@link IOScheduler#DEFAULT_THREADS}
+     * if pooled mode is not enabled.
+     *
+     * @return the maximum count of connections.
+     */
+    public int maxConnections() {
+        return pool == null ? IOScheduler.DEFAULT_THREADS : pool.maxSize();
+    }
+
+    /**
+     * Checks if the trigram functions and indexes may be used by
+     * the searches (see {@link DAOMigration#SEARCH_TRIGRAMS}).
+     *
+     * @return true if the pg_trgm extension is installed.
+     */
+    boolean hasTrigrams() {
+        return trigrams;
+    }
+
+    /**
+     * Takes a snapshot of the connection pool metrics.
+     *
+     * @return the pool metrics, or null if pooled mode is not enabled.
+     */
+    @Nullable
+    public DAOPool.Stats poolStats() {
+        return pool == null ? null : pool.stats();
+    }
+
     /**
      * Checks for entity manager factory status.
      * If it's initialized and open, will close.
@@ -118,10 +228,16 @@ public final class DAOSource extends Thread {
      * databse connection, so first you should stop persistence.
      * If user closes the app, there won't be any issue because
      * this is added as shutdown hook upon initialization.
+     * Cached data is also discarded.
      */
     public void stopPersistence() {
         if (emf != null && emf.isOpen()) emf.close();
         emf = null;
+        if (pool != null) pool.close();
+        pool = null;
+        trigrams = false;
+        XRateCache.get().invalidate();
+        DAOCache.get().invalidateAll();
     }
 
     @Override
@@ -22,6 +22,7 @@ import com.yupay.perutax.entities.TaxAccount;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Unmodifiable;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -55,27 +56,61 @@ public final class DAOTaxAccount extends DAOBase<TaxAccount, DAOTaxAccount> {
         return item.getId();
     }
 
+    @Override
+    protected void afterWrite(@NotNull Collection<TaxAccount> items) {
+        super.afterWrite(items);
+        SearchIndex.accounts().refresh(items.stream().map(this::id).toList());
+    }
+
+    @Override
+    protected @NotNull DAOCopy<TaxAccount> copyMapping() {
+        return DAOCopy.<TaxAccount>into("public.tax_account")
+                .column("id", TaxAccount::getId)
+                .column("name", TaxAccount::getName)
+                .column("nature", TaxAccount::getNature)
+                .column("currency", TaxAccount::getCurrency)
+                .column("balance", TaxAccount::getBalance)
+                .column("group_cost", TaxAccount::getGroupCost)
+                .column("usable", TaxAccount::isUsable)
+                .column("trash", TaxAccount::isTrash)
+                .column("sale_class", TaxAccount::getSaleClass);
+    }
+
     /**
      * Searches all tax accounts with a given text. The search
      * will query for accounts with ID starting with text OR
-     * name containing text. Only usable active accounts will
-     * be fetched from database.
+     * name containing text (ignoring case). Only usable active
+     * accounts will be fetched from database.
+     * <br/>
+     * The name is matched through the trigram index (see
+     * {@link DAOMigration#SEARCH_TRIGRAMS}). ID matches come first,
+     * then the names ranked by word similarity (or by id, if the
+     * trigrams aren't installed); up to {@link SearchIndex#LIMIT}
+     * results are fetched. It's the {@link SearchIndex#accounts()}
+     * fallback while the index is being read.
      *
      * @param text the text to search.
      * @return the result list.
      */
+    @SuppressWarnings("unchecked")
     public @NotNull @Unmodifiable List<TaxAccount>
     search(@NotNull String text) {
+        var s = text.strip();
+        var ranked = DAOSource.get().hasTrigrams();
         var em = DAOSource.manager();
         try {
-            var qry = em.createQuery(
-                    "SELECT A FROM TaxAccount A " +
-                            "WHERE (A.id LIKE :myID " +
-                            "OR A.name LIKE :myName) " +
-                            "AND A.usable = TRUE AND A.trash = FALSE",
-                    TaxAccount.class);
-            qry.setParameter("myID", text + "%");
-            qry.setParameter("myName", "%" + text + "%");
+            var qry = em.createNativeQuery(
+                            "SELECT A.* FROM public.tax_account A " +
+                                    "WHERE (A.id LIKE ?1 OR A.name ILIKE ?2) " +
+                                    "AND A.usable = TRUE AND A.trash = FALSE " +
+                                    "ORDER BY A.id LIKE ?1 DESC, " +
+                                    (ranked ? "word_similarity(?4, A.name) DESC, " : "") +
+                                    "A.id LIMIT ?3",
+                            TaxAccount.class)
+                    .setParameter(1, likeEscape(s) + "%")
+                    .setParameter(2, "%" + likeEscape(s) + "%")
+                    .setParameter(3, SearchIndex.LIMIT);
+            if (ranked) qry.setParameter(4, s);
             return qry.getResultList();
         } finally {
             if (em.isOpen()) em.close();
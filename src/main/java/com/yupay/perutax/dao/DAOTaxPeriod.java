@@ -60,7 +60,8 @@ public final class DAOTaxPeriod extends DAOBase<TaxPeriod, DAOTaxPeriod> {
     /**
      * Closes a TaxPeriod using the server-side timestamp.
      * It also performs the operation on all correlatives
-     * for this period.
+     * for this period, and rebuilds the period account
+     * balances from its journal entries.
      *
      * @param period the tax period to close.
      * @return the stored tax period with updated timestamp.
@@ -80,7 +81,9 @@ public final class DAOTaxPeriod extends DAOBase<TaxPeriod, DAOTaxPeriod> {
                     " WHERE T.id = :id");
             upd.setParameter("id", period.getId());
             upd.executeUpdate();
+            DAOAccountBalance.rebuild(em, period.getId());
             tx.commit();
+            DAOAccountBalance.evict(em);
             return em.getReference(TaxPeriod.class, period.getId());
         } catch (RuntimeException e) {
             tx.rollback();
@@ -116,17 +119,12 @@ public final class DAOTaxPeriod extends DAOBase<TaxPeriod, DAOTaxPeriod> {
     /**
      * Selects only those tax periods which has not been closed.
      *
-     * @return result stream.
+     * @return result stream, from a server side cursor
+     * (close it if not fully consumed).
      */
     public @NotNull Stream<TaxPeriod> findOpen() {
-        var em = DAOSource.manager();
-        try {
-            return em.createQuery("SELECT T " +
-                            "FROM TaxPeriod T " +
-                            "WHERE T.closed IS NULL", TaxPeriod.class)
-                    .getResultStream();
-        } finally {
-            if (em.isOpen()) em.close();
-        }
+        return stream(em -> em.createQuery("SELECT T " +
+                "FROM TaxPeriod T " +
+                "WHERE T.closed IS NULL", TaxPeriod.class));
     }
 }
@@ -61,11 +61,18 @@ public final class DAOTypeFolio extends DAOBase<TypeFolio, DAOTypeFolio> {
      * Loads all active types of folio with given
      * contexts set to true.
      *
+     * Served by the {@link DAOCache}, if types of folio are cached.
+     *
      * @param contexts the given contexts.
      * @return result list. NEVER NULL.
      */
     public @NotNull @Unmodifiable List<TypeFolio> findByContext(
             @NotNull FolioContext @NotNull ... contexts) {
+        var cached = DAOCache.get().region(TypeFolio.class);
+        if (cached != null) return cached.active()
+                .filter(x -> contexts.length == 0
+                        || Stream.of(contexts).anyMatch(c -> c != null && c.test(x)))
+                .toList();
         var em = DAOSource.manager();
         try {
             var cb = em.getCriteriaBuilder();
@@ -58,6 +58,15 @@ public final class DAOXRate extends DAOBase<XRate, DAOXRate> {
         return item.getId();
     }
 
+    @Override
+    protected @NotNull DAOCopy<XRate> copyMapping() {
+        return DAOCopy.<XRate>into("public.xrate")
+                .withSequence("id", "public.sq_xrate_id", XRate::setId)
+                .column("tax_date", XRate::getTaxDate)
+                .column("prch", XRate::getPrch)
+                .column("sale", XRate::getSale);
+    }
+
     /**
      * Fetches all eXchange rates within a given tax period.
      * An eXchange rate is within a tax period, if the
@@ -65,39 +74,44 @@ public final class DAOXRate extends DAOBase<XRate, DAOXRate> {
      * and {@code period.dateUntil}, inclusive range.
      *
      * @param period the tax period to find.
-     * @return all eXchange rates within period.
+     * @return all eXchange rates within period, streamed from
+     * a server side cursor (close it if not fully consumed).
      */
-    public Stream<XRate> findInPeriod(@NotNull TaxPeriod period) {
-        var em = DAOSource.manager();
-        try {
-            var ql = em.createQuery(
-                    "SELECT X FROM XRate X " +
-                            "WHERE X.taxDate >= :dFrom AND X.taxDate <= :dUntl",
-                    XRate.class);
-            ql.setParameter("dFrom", period.getDateFrom());
-            ql.setParameter("dUntl", period.getDateUntil());
-            return ql.getResultStream();
-        } finally {
-            if (em.isOpen()) em.close();
-        }
+    public @NotNull Stream<XRate> findInPeriod(@NotNull TaxPeriod period) {
+        return stream(em -> em.createQuery(
+                        "SELECT X FROM XRate X " +
+                                "WHERE X.taxDate >= :dFrom AND X.taxDate <= :dUntl",
+                        XRate.class)
+                .setParameter("dFrom", period.getDateFrom())
+                .setParameter("dUntl", period.getDateUntil()));
+    }
+
+    @Override
+    protected void afterWrite() {
+        super.afterWrite();
+        XRateCache.get().invalidate();
     }
 
     /**
      * Fetches the exchange rate for a given date.
+     * It's served by the {@link XRateCache}.
      *
      * @param date the required rate date.
      * @return optional containing the result, empty if not found.
      */
     public @NotNull Optional<XRate> findForDate(@NotNull LocalDate date) {
-        var em = DAOSource.manager();
-        try {
-            var ql = em.createQuery("SELECT X FROM XRate X " +
-                            "WHERE X.taxDate = :aDate",
-                    XRate.class);
-            ql.setParameter("aDate", date);
-            return ql.getResultStream().findAny();
-        } finally {
-            if (em.isOpen()) em.close();
-        }
+        return XRateCache.get().forDate(date);
+    }
+
+    /**
+     * Fetches the last exchange rate available on or before
+     * a given date (ie: for days without publication).
+     * It's served by the {@link XRateCache}.
+     *
+     * @param date the required rate date.
+     * @return optional containing the result, empty if not found.
+     */
+    public @NotNull Optional<XRate> findOnOrBefore(@NotNull LocalDate date) {
+        return XRateCache.get().onOrBefore(date);
     }
 }
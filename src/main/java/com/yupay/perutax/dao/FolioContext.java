@@ -18,6 +18,7 @@
 
 package com.yupay.perutax.dao;
 
+import com.yupay.perutax.entities.TypeFolio;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
@@ -89,4 +90,22 @@ public enum FolioContext {
             else return cb.isTrue(root.get(p.column));
         };
     }
+
+    /**
+     * Checks if a type of folio is in this context,
+     * the same as the {@link #toCriteria(CriteriaBuilder, Root)}
+     * predicate, but in memory.
+     *
+     * @param folio the type of folio.
+     * @return true if in this context.
+     */
+    public boolean test(@NotNull TypeFolio folio) {
+        return switch (this) {
+            case PLAME -> folio.getPlameId() != null;
+            case PURCHASE -> folio.isCtxtPurchase();
+            case SALE -> folio.isCtxtSale();
+            case FOREIGN -> folio.isCtxtForeign();
+            case TAX_CREDIT -> folio.isCtxtTaxCredit();
+        };
+    }
 }
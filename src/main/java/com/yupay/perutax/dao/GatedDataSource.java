@@ -0,0 +1,204 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * A data source handing out at most as many connections at once
+ * as it has permits. A permit is taken when a connection is opened
+ * and given back when that connection is closed, so a reader that
+ * keeps its cursor open across many tasks (ie: DAORows, DAOCursor)
+ * holds it all along.
+ * <br/>
+ * The permits are fair, so waiting borrowers are served in order,
+ * and waiting for them doesn't pin a virtual thread.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+final class GatedDataSource implements DataSource {
+    /**
+     * The actual data source.
+     */
+    private final DataSource source;
+    /**
+     * The connection permits.
+     */
+    private final Semaphore permits;
+    /**
+     * Milliseconds to wait for a permit before failing.
+     */
+    private final long timeout;
+
+    /**
+     * Default constructor.
+     *
+     * @param source  the actual data source.
+     * @param permits the maximum count of open connections.
+     * @param timeout milliseconds to wait for a permit before failing.
+     */
+    GatedDataSource(@NotNull DataSource source, int permits, long timeout) {
+        this.source = source;
+        this.permits = new Semaphore(permits, true);
+        this.timeout = timeout;
+    }
+
+    /**
+     * The count of connections that may be opened right now.
+     *
+     * @return the available permits.
+     */
+    int available() {
+        return permits.availablePermits();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return open(source::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return open(() -> source.getConnection(username, password));
+    }
+
+    /**
+     * Opens a connection after taking a permit.
+     *
+     * @param opener the actual opening.
+     * @return the connection, which gives the permit back on close.
+     * @throws SQLException if there's no permit in time, or the opening fails.
+     */
+    private @NotNull Connection open(@NotNull Opener opener) throws SQLException {
+        try {
+            if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS))
+                throw new SQLTransientConnectionException(
+                        "No connection available after " + timeout + "ms.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection.", e);
+        }
+        try {
+            return permitted(opener.open());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Wraps a connection so closing it gives the permit back
+     * (once, even if it's closed again).
+     *
+     * @param con the actual connection.
+     * @return the wrapper.
+     */
+    private @NotNull Connection permitted(@NotNull Connection con) {
+        var released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                GatedDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "GatedConnection(" + con + ")";
+                    case "close" -> {
+                        try {
+                            con.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) permits.release();
+                        }
+                        yield null;
+                    }
+                    default -> {
+                        try {
+                            yield method.invoke(con, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return source.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        source.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        source.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return source.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return source.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : source.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || source.isWrapperFor(iface);
+    }
+
+    /**
+     * The actual opening of a connection.
+     *
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    @FunctionalInterface
+    private interface Opener {
+        /**
+         * Opens a connection.
+         *
+         * @return the connection.
+         * @throws SQLException if something fails.
+         */
+        Connection open() throws SQLException;
+    }
+}
@@ -18,6 +18,9 @@
 
 package com.yupay.perutax.dao;
 
+import com.yupay.perutax.entities.Person;
+import org.jetbrains.annotations.NotNull;
+
 /**
  * The person role is a representation of a state
  * on the entity {@link com.yupay.perutax.entities.Person}
@@ -66,4 +69,21 @@ public enum PersonRole {
     PersonRole(String column) {
         this.column = column;
     }
+
+    /**
+     * Checks if a person has this role.
+     *
+     * @param person the person.
+     * @return true if the role flag is set.
+     */
+    public boolean test(@NotNull Person person) {
+        return switch (this) {
+            case CUSTOMER -> person.isRoleCustomer();
+            case SUPPLIER -> person.isRoleSupplier();
+            case EMPLOYEE -> person.isRoleEmployee();
+            case SHAREHOLDER -> person.isRoleShareholder();
+            case FREELANCER -> person.isRoleFreelancer();
+            case ASSOCIATED -> person.isRoleAssociated();
+        };
+    }
 }
@@ -0,0 +1,609 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import com.yupay.perutax.concurrent.IOScheduler;
+import com.yupay.perutax.entities.CostCenter;
+import com.yupay.perutax.entities.Person;
+import com.yupay.perutax.entities.TaxAccount;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * In-memory search index of the entities picked by the user while
+ * typing (tax accounts, cost centers and persons), so each keystroke
+ * is served from memory instead of a LIKE query. There's a single
+ * index per entity, app wide.
+ * <br/>
+ * Each entry has a key (ie: id, DOI number) matched by prefix through
+ * a sorted map, and a text (ie: name) matched by substring through an
+ * inverted index of trigrams. Both are case and accent folded (see
+ * {@link #fold(String)}). The index is read whole upon the first
+ * search, and kept up to date by the DAO writes (see
+ * {@link DAOBase#afterWrite(Collection)}), which re-read only the
+ * written entities. Callers always get copies of the indexed
+ * entities, so they're free to edit them.
+ * <br/>
+ * The accounts and persons indexes have a database search too
+ * (ie: {@link DAOPerson#search(String, PersonRole...)}): while
+ * they're not read yet, the searches are sent to the database and
+ * the index is read in background, instead of making the first
+ * search wait for the whole table.
+ *
+ * @param <T> the type erasure of the entity.
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class SearchIndex<T> {
+    /**
+     * Default count of results.
+     */
+    public static final int LIMIT = 200;
+    /**
+     * Above this count of written entities, the index is
+     * discarded (and read again) instead of updated.
+     */
+    private static final int REFRESH_LIMIT = 1_000;
+    /**
+     * Above this count of candidates of a trigram, the text
+     * matches are checked in text order instead of sorted.
+     */
+    private static final int SORT_LIMIT = 2_000;
+    /**
+     * Index of usable tax accounts.
+     */
+    private static final SearchIndex<TaxAccount> ACCOUNTS = new SearchIndex<>(
+            () -> DAO.taxAccount().findAll(),
+            id -> DAO.taxAccount().fetch(id),
+            TaxAccount::getId,
+            TaxAccount::getId,
+            TaxAccount::getName,
+            a -> a.isUsable() && !a.isTrash(),
+            TaxAccount::new,
+            s -> DAO.taxAccount().specialize().search(s));
+    /**
+     * Index of cost centers.
+     */
+    private static final SearchIndex<CostCenter> COST_CENTERS = new SearchIndex<>(
+            () -> DAO.costcenter().findAll(),
+            id -> DAO.costcenter().fetch(id),
+            CostCenter::getId,
+            CostCenter::getId,
+            CostCenter::getTitle,
+            c -> !c.isTrash(),
+            CostCenter::new);
+    /**
+     * Index of persons, by DOI number and full name.
+     */
+    private static final SearchIndex<Person> PERSONS = new SearchIndex<>(
+            () -> DAO.person().findAll(),
+            id -> DAO.person().fetch(id),
+            Person::getId,
+            Person::getDoiNum,
+            Person::getFullName,
+            p -> !p.isTrash(),
+            Person::new,
+            s -> DAO.person().specialize().search(s));
+    /**
+     * Reads every entity.
+     */
+    private final Supplier<Stream<T>> loader;
+    /**
+     * Reads one entity by id (null if not found).
+     */
+    private final Function<Object, T> fetcher;
+    /**
+     * The id extractor.
+     */
+    private final Function<T, Object> id;
+    /**
+     * The prefix matched field.
+     */
+    private final Function<T, String> key;
+    /**
+     * The substring matched field.
+     */
+    private final Function<T, String> text;
+    /**
+     * Only entities passing this predicate are indexed.
+     */
+    private final Predicate<T> include;
+    /**
+     * The copy constructor.
+     */
+    private final UnaryOperator<T> copy;
+    /**
+     * Searches the database while not read (may be null).
+     */
+    private final Function<String, List<T>> remote;
+    /**
+     * True while read in background.
+     */
+    private final AtomicBoolean loading = new AtomicBoolean();
+    /**
+     * Entries by ordinal, null if removed.
+     */
+    private final List<Entry<T>> entries = new ArrayList<>();
+    /**
+     * Entry ordinals by entity id.
+     */
+    private final Map<Object, Integer> ordinals = new HashMap<>();
+    /**
+     * Entry ordinals by folded key (suffixed by ordinal, since
+     * keys may repeat).
+     */
+    private final NavigableMap<String, Integer> keys = new TreeMap<>();
+    /**
+     * Entry ordinals by folded text (suffixed by ordinal).
+     */
+    private final NavigableMap<String, Integer> texts = new TreeMap<>();
+    /**
+     * Entry ordinals (ascending) by trigram of folded text.
+     */
+    private final Map<Long, Postings> grams = new HashMap<>();
+    /**
+     * Count of removed entries.
+     */
+    private int removed;
+    /**
+     * True once read.
+     */
+    private volatile boolean loaded;
+
+    /**
+     * Package-private constructor. Use the static getters.
+     *
+     * @param loader  reads every entity.
+     * @param fetcher reads one entity by id.
+     * @param id      the id extractor.
+     * @param key     the prefix matched field.
+     * @param text    the substring matched field.
+     * @param include only entities passing it are indexed.
+     * @param copy    the copy constructor.
+     */
+    SearchIndex(@NotNull Supplier<Stream<T>> loader,
+                @NotNull Function<Object, T> fetcher,
+                @NotNull Function<T, Object> id,
+                @NotNull Function<T, String> key,
+                @NotNull Function<T, String> text,
+                @NotNull Predicate<T> include,
+                @NotNull UnaryOperator<T> copy) {
+        this(loader, fetcher, id, key, text, include, copy, null);
+    }
+
+    /**
+     * Package-private constructor. Use the static getters.
+     *
+     * @param loader  reads every entity.
+     * @param fetcher reads one entity by id.
+     * @param id      the id extractor.
+     * @param key     the prefix matched field.
+     * @param text    the substring matched field.
+     * @param include only entities passing it are indexed.
+     * @param copy    the copy constructor.
+     * @param remote  searches the database while not read, may be null.
+     */
+    SearchIndex(@NotNull Supplier<Stream<T>> loader,
+                @NotNull Function<Object, T> fetcher,
+                @NotNull Function<T, Object> id,
+                @NotNull Function<T, String> key,
+                @NotNull Function<T, String> text,
+                @NotNull Predicate<T> include,
+                @NotNull UnaryOperator<T> copy,
+                @Nullable Function<String, List<T>> remote) {
+        this.loader = loader;
+        this.fetcher = fetcher;
+        this.id = id;
+        this.key = key;
+        this.text = text;
+        this.include = include;
+        this.copy = copy;
+        this.remote = remote;
+    }
+
+    /**
+     * Static getter.
+     *
+     * @return the index of usable tax accounts.
+     */
+    public static @NotNull SearchIndex<TaxAccount> accounts() {
+        return ACCOUNTS;
+    }
+
+    /**
+     * Static getter.
+     *
+     * @return the index of cost centers.
+     */
+    public static @NotNull SearchIndex<CostCenter> costCenters() {
+        return COST_CENTERS;
+    }
+
+    /**
+     * Static getter.
+     *
+     * @return the index of persons.
+     */
+    public static @NotNull SearchIndex<Person> persons() {
+        return PERSONS;
+    }
+
+    /**
+     * Reads every index now, so the first searches are served
+     * from memory. An index that cannot be read is skipped, and
+     * will be read upon the first search.
+     */
+    public static void preloadAll() {
+        for (var index : List.of(ACCOUNTS, COST_CENTERS, PERSONS)) {
+            try {
+                index.preload();
+            } catch (RuntimeException e) {
+                index.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Folds a text for searching: lower case, and without
+     * diacritical marks (ie: "Peña Ñahui" is "pena nahui").
+     *
+     * @param s the text, may be null.
+     * @return the folded text, empty if null.
+     */
+    public static @NotNull String fold(@Nullable String s) {
+        if (s == null) return "";
+        var ascii = true;
+        for (int i = 0; i < s.length() && ascii; i++) ascii = s.charAt(i) < 0x80;
+        var t = ascii ? s : Normalizer.normalize(s, Normalizer.Form.NFD);
+        var sb = new StringBuilder(t.length());
+        for (int i = 0; i < t.length(); i++) {
+            var c = t.charAt(i);
+            if (!ascii && Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Checks if a key starts with, or a text contains, an
+     * already folded search text. Meant for client side filters.
+     *
+     * @param key    the key, may be null.
+     * @param text   the text, may be null.
+     * @param folded the folded search text.
+     * @return true if matches.
+     */
+    public static boolean matches(@Nullable String key,
+                                  @Nullable String text,
+                                  @NotNull String folded) {
+        return fold(key).startsWith(folded) || fold(text).contains(folded);
+    }
+
+    /**
+     * Searches the entities by text.
+     *
+     * @param s the search text.
+     * @return up to {@link #LIMIT} results.
+     * @see #search(String, Predicate, int)
+     */
+    public @NotNull List<T> search(@NotNull String s) {
+        return search(s, t -> true, LIMIT);
+    }
+
+    /**
+     * Searches the entities whose key starts with, or whose text
+     * contains, the given text (case and accent insensitive). The
+     * key matches come first, sorted by key; then the text matches,
+     * those starting with the search text first, sorted by text.
+     * If the index isn't read yet and there's a database search,
+     * the results come from the database (in its own order) while
+     * the index is read in background.
+     *
+     * @param s      the search text.
+     * @param filter additional filter of results.
+     * @param limit  the max count of results.
+     * @return copies of the matching entities (a mutable list).
+     * Empty if blank text.
+     */
+    public @NotNull List<T> search(@NotNull String s,
+                                   @NotNull Predicate<T> filter,
+                                   int limit) {
+        var f = fold(s.strip());
+        if (f.isEmpty()) return List.of();
+        var r = new ArrayList<T>();
+        if (remote != null && !loaded) {
+            loadLater();
+            for (var t : remote.apply(s.strip())) {
+                if (r.size() >= limit) break;
+                if (filter.test(t)) r.add(t);
+            }
+            return r;
+        }
+        synchronized (this) {
+            ensureLoaded();
+            var seen = new BitSet(entries.size());
+            var to = f + Character.MAX_VALUE;
+            for (var o : keys.subMap(f, to).values()) {
+                if (r.size() >= limit) return r;
+                accept(o, filter, seen, r);
+            }
+            for (var o : texts.subMap(f, to).values()) {
+                if (r.size() >= limit) return r;
+                accept(o, filter, seen, r);
+            }
+            for (var o : containing(f)) {
+                if (r.size() >= limit) return r;
+                if (entries.get(o).text.contains(f)) accept(o, filter, seen, r);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Reads the index now, if not already read.
+     */
+    public synchronized void preload() {
+        ensureLoaded();
+    }
+
+    /**
+     * Discards the index, it will be read again upon the next search.
+     */
+    public synchronized void invalidate() {
+        loaded = false;
+        entries.clear();
+        ordinals.clear();
+        keys.clear();
+        texts.clear();
+        grams.clear();
+        removed = 0;
+    }
+
+    /**
+     * Updates the index after some entities have been written,
+     * reading them again (they may have been removed or trashed).
+     * Does nothing if the index hasn't been read yet.
+     *
+     * @param ids the ids of written entities.
+     */
+    public void refresh(@NotNull Collection<?> ids) {
+        synchronized (this) {
+            if (!loaded) return;
+            if (ids.size() > REFRESH_LIMIT) {
+                invalidate();
+                return;
+            }
+        }
+        var fresh = new HashMap<Object, T>();
+        for (var i : ids) if (i != null) fresh.put(i, fetcher.apply(i));
+        synchronized (this) {
+            if (!loaded) return;
+            for (var e : fresh.entrySet()) {
+                remove(e.getKey());
+                if (e.getValue() != null && include.test(e.getValue())) add(e.getValue());
+            }
+            if (removed > entries.size() / 2) rebuild();
+        }
+    }
+
+    /**
+     * Reads the index in background, unless already reading it.
+     * If it cannot be read, the next search tries again.
+     */
+    private void loadLater() {
+        if (!loading.compareAndSet(false, true)) return;
+        IOScheduler.lane("SearchIndex").schedule(() -> {
+            try {
+                preload();
+            } catch (RuntimeException e) {
+                invalidate();
+            } finally {
+                loading.set(false);
+            }
+        });
+    }
+
+    /**
+     * Reads every entity, if not already read. Must hold the lock.
+     */
+    private void ensureLoaded() {
+        if (loaded) return;
+        try (var s = loader.get()) {
+            s.filter(include).forEach(this::add);
+        }
+        loaded = true;
+    }
+
+    /**
+     * Adds a result if it passes the filter and
+     * hasn't been added yet. Must hold the lock.
+     *
+     * @param ordinal the entry ordinal.
+     * @param filter  the results filter.
+     * @param seen    the ordinals already visited.
+     * @param r       the results.
+     */
+    private void accept(int ordinal,
+                        @NotNull Predicate<T> filter,
+                        @NotNull BitSet seen,
+                        @NotNull List<T> r) {
+        if (seen.get(ordinal)) return;
+        seen.set(ordinal);
+        var e = entries.get(ordinal);
+        if (e != null && filter.test(e.item)) r.add(copy.apply(e.item));
+    }
+
+    /**
+     * Finds the candidate entries whose text may contain the folded
+     * search text, sorted by text; they must be checked. The postings
+     * of the trigrams of the text are intersected, from the rarest;
+     * if there are still too many candidates (or the text is shorter
+     * than a trigram) every entry is a candidate, so the matches are
+     * checked in text order until enough are found. Must hold the lock.
+     *
+     * @param f the folded search text.
+     * @return the candidate ordinals.
+     */
+    private @NotNull Iterable<Integer> containing(@NotNull String f) {
+        if (f.length() < 3) return texts.values();
+        var postings = new ArrayList<Postings>();
+        for (int i = 0; i + 3 <= f.length(); i++) {
+            var p = grams.get(gram(f, i));
+            if (p == null) return List.of();
+            postings.add(p);
+        }
+        postings.sort(Comparator.comparingInt(p -> p.size));
+        var candidates = postings.get(0);
+        for (int i = 1; i < postings.size(); i++) candidates = candidates.retain(postings.get(i));
+        if (candidates.size > SORT_LIMIT) return texts.values();
+        var r = new ArrayList<Integer>(candidates.size);
+        for (int i = 0; i < candidates.size; i++)
+            if (entries.get(candidates.values[i]) != null) r.add(candidates.values[i]);
+        r.sort(Comparator.comparing(o -> entries.get(o).text));
+        return r;
+    }
+
+    /**
+     * Indexes an entity. Must hold the lock.
+     *
+     * @param item the entity.
+     */
+    private void add(@NotNull T item) {
+        var o = entries.size();
+        var e = new Entry<>(item, fold(key.apply(item)), fold(text.apply(item)));
+        entries.add(e);
+        ordinals.put(id.apply(item), o);
+        keys.put(e.key + '\0' + o, o);
+        texts.put(e.text + '\0' + o, o);
+        for (int i = 0; i + 3 <= e.text.length(); i++) {
+            var p = grams.computeIfAbsent(gram(e.text, i), g -> new Postings());
+            //A trigram repeated in the same text is posted once.
+            if (p.size == 0 || p.values[p.size - 1] != o) p.add(o);
+        }
+    }
+
+    /**
+     * Removes an entity from the index. The postings aren't
+     * updated, removed entries are skipped by the searches.
+     * Must hold the lock.
+     *
+     * @param id the entity id.
+     */
+    private void remove(@NotNull Object id) {
+        var o = ordinals.remove(id);
+        if (o == null) return;
+        var e = entries.set(o, null);
+        keys.remove(e.key + '\0' + o);
+        texts.remove(e.text + '\0' + o);
+        removed++;
+    }
+
+    /**
+     * Indexes the live entries again, dropping the removed
+     * ones from the postings. Must hold the lock.
+     */
+    private void rebuild() {
+        var live = entries.stream().filter(Objects::nonNull).map(Entry::item).toList();
+        entries.clear();
+        ordinals.clear();
+        keys.clear();
+        texts.clear();
+        grams.clear();
+        removed = 0;
+        live.forEach(this::add);
+    }
+
+    /**
+     * Packs a trigram.
+     *
+     * @param s the text.
+     * @param i the trigram position.
+     * @return the packed trigram.
+     */
+    private static long gram(@NotNull String s, int i) {
+        return (long) s.charAt(i) << 32 | (long) s.charAt(i + 1) << 16 | s.charAt(i + 2);
+    }
+
+    /**
+     * An indexed entity.
+     *
+     * @param item the entity.
+     * @param key  the folded key.
+     * @param text the folded text.
+     * @param <T>  the type erasure of the entity.
+     */
+    private record Entry<T>(@NotNull T item, @NotNull String key, @NotNull String text) {
+    }
+
+    /**
+     * Growable list of entry ordinals, ascending.
+     */
+    private static final class Postings {
+        /**
+         * The ordinals.
+         */
+        private int[] values = new int[4];
+        /**
+         * The count of ordinals.
+         */
+        private int size;
+
+        /**
+         * Appends an ordinal.
+         *
+         * @param o the ordinal.
+         */
+        void add(int o) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = o;
+        }
+
+        /**
+         * Intersects with other postings (both ascending).
+         *
+         * @param other the other postings.
+         * @return new postings, with the ordinals of both.
+         */
+        @NotNull Postings retain(@NotNull Postings other) {
+            var r = new Postings();
+            int i = 0, j = 0;
+            while (i < size && j < other.size) {
+                var a = values[i];
+                var b = other.values[j];
+                if (a < b) i++;
+                else if (a > b) j++;
+                else {
+                    r.add(a);
+                    i++;
+                    j++;
+                }
+            }
+            return r;
+        }
+    }
+}
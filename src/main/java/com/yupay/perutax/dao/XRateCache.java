@@ -0,0 +1,257 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import com.yupay.perutax.entities.XRate;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * In memory copy of the exchange rates series, indexed by date.
+ * It's singleton, app wide. The series is read once, upon the first
+ * lookup, into primitive arrays indexed by days since the first date,
+ * so lookups don't hit the database and take constant time.
+ * <br/>
+ * The cache is invalidated by every write through {@link DAOXRate}
+ * and when the persistence is stopped; the next lookup reads the
+ * series again.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class XRateCache {
+    /**
+     * The single instance.
+     */
+    private static final XRateCache INSTANCE = new XRateCache();
+    /**
+     * The loaded series, null if not loaded or invalidated.
+     */
+    private volatile Table table;
+    /**
+     * Incremented on each invalidation, so a series read
+     * before the invalidation isn't published.
+     */
+    private volatile int version;
+
+    /**
+     * The private initializer - singleton pattern.
+     */
+    private XRateCache() {
+    }
+
+    /**
+     * Static getter of the single instance.
+     *
+     * @return the single cache object.
+     */
+    @NotNull
+    public static XRateCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Looks up the exchange rate of a given date.
+     *
+     * @param date the rate date.
+     * @return a new (detached) exchange rate, empty if there's none.
+     */
+    public @NotNull Optional<XRate> forDate(@NotNull LocalDate date) {
+        return Optional.ofNullable(table().at(date.toEpochDay()));
+    }
+
+    /**
+     * Looks up the last exchange rate available on or before a given
+     * date, which is the rate to use on days without publication.
+     *
+     * @param date the required date.
+     * @return a new (detached) exchange rate, empty if there's none.
+     */
+    public @NotNull Optional<XRate> onOrBefore(@NotNull LocalDate date) {
+        return Optional.ofNullable(table().floor(date.toEpochDay()));
+    }
+
+    /**
+     * Reads the series now, if not already loaded.
+     */
+    public void preload() {
+        table();
+    }
+
+    /**
+     * Discards the loaded series.
+     */
+    public void invalidate() {
+        synchronized (this) {
+            version++;
+            table = null;
+        }
+    }
+
+    /**
+     * Gets the loaded series, reading it if necessary.
+     *
+     * @return the series.
+     */
+    private @NotNull Table table() {
+        var t = table;
+        if (t != null) return t;
+        synchronized (this) {
+            if (table != null) return table;
+            var v = version;
+            var em = DAOSource.manager();
+            try {
+                t = new Table(em.createQuery("SELECT X FROM XRate X ORDER BY X.taxDate", XRate.class)
+                        .setHint(QueryHints.READ_ONLY, HintValues.TRUE)
+                        .getResultList());
+            } finally {
+                if (em.isOpen()) em.close();
+            }
+            if (v == version) table = t;
+            return t;
+        }
+    }
+
+    /**
+     * Immutable, date indexed, exchange rates series.
+     * Purchase and sale values are packed into a single long, as
+     * unscaled ints (high and low halves) sharing the same scale.
+     *
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    static final class Table {
+        /**
+         * Epoch day of the first rate.
+         */
+        private final long first;
+        /**
+         * Scale of the packed values.
+         */
+        private final int scale;
+        /**
+         * Packed values by day offset.
+         */
+        private final long[] packed;
+        /**
+         * Ids by day offset.
+         */
+        private final long[] ids;
+        /**
+         * Offset of the last day with rate, on or before
+         * each day offset; -1 if there's none.
+         */
+        private final int[] floor;
+
+        /**
+         * Builds the series.
+         *
+         * @param rates the exchange rates, with unique dates.
+         */
+        Table(@NotNull List<XRate> rates) {
+            var min = Long.MAX_VALUE;
+            var max = Long.MIN_VALUE;
+            var s = 0;
+            for (var x : rates) {
+                var d = x.getTaxDate().toEpochDay();
+                min = Math.min(min, d);
+                max = Math.max(max, d);
+                s = Math.max(s, Math.max(x.getPrch().scale(), x.getSale().scale()));
+            }
+            first = min;
+            scale = s;
+            var size = rates.isEmpty() ? 0 : Math.toIntExact(max - min + 1);
+            packed = new long[size];
+            ids = new long[size];
+            floor = new int[size];
+            var present = new boolean[size];
+            for (var x : rates) {
+                var i = (int) (x.getTaxDate().toEpochDay() - first);
+                packed[i] = (long) unscaled(x.getPrch()) << 32
+                        | (unscaled(x.getSale()) & 0xFFFF_FFFFL);
+                ids[i] = x.getId();
+                present[i] = true;
+            }
+            Arrays.fill(floor, -1);
+            for (int i = 0, last = -1; i < size; i++) {
+                if (present[i]) last = i;
+                floor[i] = last;
+            }
+        }
+
+        /**
+         * The unscaled int value, at the series scale.
+         *
+         * @param value the value.
+         * @return the unscaled value.
+         * @throws ArithmeticException if the value doesn't fit.
+         */
+        private int unscaled(@NotNull BigDecimal value) {
+            return value.setScale(scale).unscaledValue().intValueExact();
+        }
+
+        /**
+         * The rate of a given day.
+         *
+         * @param epochDay the day.
+         * @return the rate, or null if there's none.
+         */
+        @Nullable XRate at(long epochDay) {
+            var i = epochDay - first;
+            if (i < 0 || i >= floor.length || floor[(int) i] != i) return null;
+            return rate((int) i);
+        }
+
+        /**
+         * The last rate on or before a given day.
+         *
+         * @param epochDay the day.
+         * @return the rate, or null if there's none.
+         */
+        @Nullable XRate floor(long epochDay) {
+            var i = epochDay - first;
+            if (i < 0 || floor.length == 0) return null;
+            var f = floor[(int) Math.min(i, floor.length - 1)];
+            return f < 0 ? null : rate(f);
+        }
+
+        /**
+         * Unpacks the rate at a day offset.
+         *
+         * @param i the day offset.
+         * @return a new exchange rate.
+         */
+        private @NotNull XRate rate(int i) {
+            var r = new XRate();
+            r.setId(ids[i]);
+            r.setTaxDate(LocalDate.ofEpochDay(first + i));
+            r.setPrch(BigDecimal.valueOf(packed[i] >> 32, scale));
+            r.setSale(BigDecimal.valueOf((int) packed[i], scale));
+            return r;
+        }
+    }
+}
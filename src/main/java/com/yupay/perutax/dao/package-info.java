@@ -19,6 +19,11 @@
 /**
  * Package with DATA ACCESS OBJECT and
  * their implementations.
+ * <br/>
+ * Every database access is blocking, including the reactive
+ * reads (ie: {@link com.yupay.perutax.dao.DAORows}); from the UI,
+ * run them on an IO lane (see
+ * {@link com.yupay.perutax.concurrent.IOScheduler#lane(String)}).
  *
  * @author InfoYupay SACS
  * @version 1.0
@@ -0,0 +1,432 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.entities;
+
+import jakarta.persistence.*;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * This entity represents the balance of a tax account within
+ * a tax period: the opening balance, the debit and credit
+ * movements, and the closing balance, both in system currency
+ * and in foreign currency. Balances are debit-positive, that's
+ * closing = opening + debit - credit, regardless of the account
+ * nature.
+ * <br/>
+ * Rows are maintained by the database access layer when journal
+ * entries are posted, and rebuilt when the period is closed;
+ * they should never be edited by hand.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+@Entity
+@IdClass(AccountBalance.Key.class)
+@Table(name = "account_balance", schema = "public")
+public class AccountBalance {
+    /**
+     * The tax period ID (YYYYMM).
+     */
+    private final StringProperty period =
+            new SimpleStringProperty(this, "period");
+    /**
+     * The tax account ID.
+     */
+    private final StringProperty account =
+            new SimpleStringProperty(this, "account");
+    /**
+     * Opening balance (system currency).
+     */
+    private final ObjectProperty<BigDecimal> openingSc =
+            new SimpleObjectProperty<>(this, "openingSc", new BigDecimal("0.00"));
+    /**
+     * Debit movements of the period (system currency).
+     */
+    private final ObjectProperty<BigDecimal> debitSc =
+            new SimpleObjectProperty<>(this, "debitSc", new BigDecimal("0.00"));
+    /**
+     * Credit movements of the period (system currency).
+     */
+    private final ObjectProperty<BigDecimal> creditSc =
+            new SimpleObjectProperty<>(this, "creditSc", new BigDecimal("0.00"));
+    /**
+     * Closing balance (system currency).
+     */
+    private final ObjectProperty<BigDecimal> closingSc =
+            new SimpleObjectProperty<>(this, "closingSc", new BigDecimal("0.00"));
+    /**
+     * Opening balance (foreign currency).
+     */
+    private final ObjectProperty<BigDecimal> openingFc =
+            new SimpleObjectProperty<>(this, "openingFc", new BigDecimal("0.00"));
+    /**
+     * Debit movements of the period (foreign currency).
+     */
+    private final ObjectProperty<BigDecimal> debitFc =
+            new SimpleObjectProperty<>(this, "debitFc", new BigDecimal("0.00"));
+    /**
+     * Credit movements of the period (foreign currency).
+     */
+    private final ObjectProperty<BigDecimal> creditFc =
+            new SimpleObjectProperty<>(this, "creditFc", new BigDecimal("0.00"));
+    /**
+     * Closing balance (foreign currency).
+     */
+    private final ObjectProperty<BigDecimal> closingFc =
+            new SimpleObjectProperty<>(this, "closingFc", new BigDecimal("0.00"));
+    /**
+     * The tax account (read only).
+     */
+    private final ObjectProperty<TaxAccount> taxAccount =
+            new SimpleObjectProperty<>(this, "taxAccount");
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #period}
+     */
+    @Id
+    @Column(name = "period", nullable = false, length = 6)
+    public String getPeriod() {
+        return period.get();
+    }
+
+    /**
+     * Accessor - setter.
+     *
+     * @param period value to set on {@link #period}
+     */
+    public void setPeriod(String period) {
+        this.period.set(period);
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #account}
+     */
+    @Id
+    @Column(name = "account", nullable = false, length = 8)
+    public String getAccount() {
+        return account.get();
+    }
+
+    /**
+     * Accessor - setter.
+     *
+     * @param account value to set on {@link #account}
+     */
+    public void setAccount(String account) {
+        this.account.set(account);
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #openingSc}
+     */
+    @Basic
+    @Column(name = "opening_sc", nullable = false, precision = 14, scale = 2)
+    public BigDecimal getOpeningSc() {
+        return openingSc.get();
+    }
+
+    /**
+     * Accessor - setter.
+     *
+     * @param openingSc value to set on {@link #openingSc}
+     */
+    public void setOpeningSc(BigDecimal openingSc) {
+        this.openingSc.set(openingSc);
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #debitSc}
+     */
+    @Basic
+    @Column(name = "debit_sc", nullable = false, precision = 14, scale = 2)
+    public BigDecimal getDebitSc() {
+        return debitSc.get();
+    }
+
+    /**
+     * Accessor - setter.
+     *
+     * @param debitSc value to set on {@link #debitSc}
+     */
+    public void setDebitSc(BigDecimal debitSc) {
+        this.debitSc.set(debitSc);
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #creditSc}
+     */
+    @Basic
+    @Column(name = "credit_sc", nullable = false, precision = 14, scale = 2)
+    public BigDecimal getCreditSc() {
+        return creditSc.get();
+    }
+
+    /**
+     * Accessor - setter.
+     *
+     * @param creditSc value to set on {@link #creditSc}
+     */
+    public void setCreditSc(BigDecimal creditSc) {
+        this.creditSc.set(creditSc);
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #closingSc}
+     */
+    @Basic
+    @Column(name = "closing_sc", nullable = false, precision = 14, scale = 2)
+    public BigDecimal getClosingSc() {
+        return closingSc.get();
+    }
+
+    /**
+     * Accessor - setter.
+     *
+     * @param closingSc value to set on {@link #closingSc}
+     */
+    public void setClosingSc(BigDecimal closingSc) {
+        this.closingSc.set(closingSc);
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #openingFc}
+     */
+    @Basic
+    @Column(name = "opening_fc", nullable = false, precision = 14, scale = 2)
+    public BigDecimal getOpeningFc() {
+        return openingFc.get();
+    }
+
+    /**
+     * Accessor - setter.
+     *
+     * @param openingFc value to set on {@link #openingFc}
+     */
+    public void setOpeningFc(BigDecimal openingFc) {
+        this.openingFc.set(openingFc);
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #debitFc}
+     */
+    @Basic
+    @Column(name = "debit_fc", nullable = false, precision = 14, scale = 2)
+    public BigDecimal getDebitFc() {
+        return debitFc.get();
+    }
+
+    /**
+     * Accessor - setter.
+     *
+     * @param debitFc value to set on {@link #debitFc}
+     */
+    public void setDebitFc(BigDecimal debitFc) {
+        this.debitFc.set(debitFc);
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #creditFc}
+     */
+    @Basic
+    @Column(name = "credit_fc", nullable = false, precision = 14, scale = 2)
+    public BigDecimal getCreditFc() {
+        return creditFc.get();
+    }
+
+    /**
+     * Accessor - setter.
+     *
+     * @param creditFc value to set on {@link #creditFc}
+     */
+    public void setCreditFc(BigDecimal creditFc) {
+        this.creditFc.set(creditFc);
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #closingFc}
+     */
+    @Basic
+    @Column(name = "closing_fc", nullable = false, precision = 14, scale = 2)
+    public BigDecimal getClosingFc() {
+        return closingFc.get();
+    }
+
+    /**
+     * Accessor - setter.
+     *
+     * @param closingFc value to set on {@link #closingFc}
+     */
+    public void setClosingFc(BigDecimal closingFc) {
+        this.closingFc.set(closingFc);
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #taxAccount}
+     */
+    @ManyToOne
+    @JoinColumn(name = "account", referencedColumnName = "id",
+            insertable = false, updatable = false)
+    public TaxAccount getTaxAccount() {
+        return taxAccount.get();
+    }
+
+    /**
+     * Accessor - setter.
+     *
+     * @param taxAccount value to set on {@link #taxAccount}
+     */
+    public void setTaxAccount(TaxAccount taxAccount) {
+        this.taxAccount.set(taxAccount);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        return o instanceof AccountBalance that
+                && Objects.equals(getPeriod(), that.getPeriod())
+                && Objects.equals(getAccount(), that.getAccount());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getPeriod(), getAccount());
+    }
+
+    @Override
+    public String toString() {
+        return getPeriod() + "-" + getAccount();
+    }
+
+    /**
+     * The composite primary key of account balances.
+     *
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    public static class Key implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        /**
+         * The tax period ID.
+         */
+        private String period;
+        /**
+         * The tax account ID.
+         */
+        private String account;
+
+        /**
+         * Default constructor.
+         */
+        public Key() {
+        }
+
+        /**
+         * Full constructor.
+         *
+         * @param period  the tax period ID.
+         * @param account the tax account ID.
+         */
+        public Key(@NotNull String period, @NotNull String account) {
+            this.period = period;
+            this.account = account;
+        }
+
+        /**
+         * Accessor - getter.
+         *
+         * @return value of {@link #period}
+         */
+        public String getPeriod() {
+            return period;
+        }
+
+        /**
+         * Accessor - setter.
+         *
+         * @param period value to set on {@link #period}
+         */
+        public void setPeriod(String period) {
+            this.period = period;
+        }
+
+        /**
+         * Accessor - getter.
+         *
+         * @return value of {@link #account}
+         */
+        public String getAccount() {
+            return account;
+        }
+
+        /**
+         * Accessor - setter.
+         *
+         * @param account value to set on {@link #account}
+         */
+        public void setAccount(String account) {
+            this.account = account;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            return o instanceof Key key
+                    && Objects.equals(period, key.period)
+                    && Objects.equals(account, key.account);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(period, account);
+        }
+    }
+}
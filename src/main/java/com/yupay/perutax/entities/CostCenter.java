@@ -23,6 +23,7 @@ import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
+import org.jetbrains.annotations.NotNull;
 
 import java.util.Objects;
 
@@ -51,6 +52,25 @@ public class CostCenter {
     private final BooleanProperty trash =
             new SimpleBooleanProperty(this, "trash");
 
+    /**
+     * Default empty constructor.
+     */
+    public CostCenter() {
+
+    }
+
+    /**
+     * Constructor that copies all inner fields values from another
+     * instance values.
+     *
+     * @param another source instance.
+     */
+    public CostCenter(@NotNull CostCenter another) {
+        setId(another.getId());
+        setTitle(another.getTitle());
+        setTrash(another.isTrash());
+    }
+
     /**
      * Accessor - getter.
      *
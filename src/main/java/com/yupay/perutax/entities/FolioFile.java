@@ -19,8 +19,6 @@
 package com.yupay.perutax.entities;
 
 import jakarta.persistence.*;
-import javafx.beans.property.ObjectProperty;
-import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import org.eclipse.persistence.annotations.UuidGenerator;
@@ -28,7 +26,11 @@ import org.eclipse.persistence.annotations.UuidGenerator;
 import java.util.Objects;
 
 /**
- * This table stores a folio documentation.
+ * This table stores a folio documentation. The documents
+ * themselves are in unmapped columns of the same table (see
+ * DAOFolioFile), this entity only holds their SHA-256 digests,
+ * which key the local blob store (see BlobStore). So loading
+ * a sale never loads the document bytes.
  *
  * @author InfoYupay SACS
  * @version 1.0
@@ -42,20 +44,20 @@ public class FolioFile {
     private final StringProperty id =
             new SimpleStringProperty(this, "id");
     /**
-     * PDF representation of folio.
+     * Digest of the PDF representation of folio.
      */
-    private final ObjectProperty<byte[]> pdf =
-            new SimpleObjectProperty<>(this, "pdf");
+    private final StringProperty pdfSha =
+            new SimpleStringProperty(this, "pdfSha");
     /**
-     * XML file (for electronic - UBL compliant folios).
+     * Digest of the XML file (for electronic - UBL compliant folios).
      */
-    private final StringProperty xml =
-            new SimpleStringProperty(this, "xml");
+    private final StringProperty xmlSha =
+            new SimpleStringProperty(this, "xmlSha");
     /**
-     * XML reception certificate (for electronic - SUNAT/PSE/OSE compliants).
+     * Digest of the XML reception certificate (for electronic - SUNAT/PSE/OSE compliants).
      */
-    private final StringProperty cdr =
-            new SimpleStringProperty(this, "cdr");
+    private final StringProperty cdrSha =
+            new SimpleStringProperty(this, "cdrSha");
 
     /**
      * FX Accessor - getter.
@@ -91,88 +93,88 @@ public class FolioFile {
     /**
      * FX Accessor - getter.
      *
-     * @return value of {@link #pdf}.get();
+     * @return value of {@link #pdfSha}.get();
      */
     @Basic
-    @Column(nullable = false, name = "pdf")
-    public final byte[] getPdf() {
-        return pdf.get();
+    @Column(length = 64, name = "pdf_sha")
+    public final String getPdfSha() {
+        return pdfSha.get();
     }
 
     /**
      * FX Accessor - setter.
      *
-     * @param pdf value to assign into {@link #pdf}.
+     * @param pdfSha value to assign into {@link #pdfSha}.
      */
-    public final void setPdf(byte[] pdf) {
-        this.pdf.set(pdf);
+    public final void setPdfSha(String pdfSha) {
+        this.pdfSha.set(pdfSha);
     }
 
     /**
      * FX Accessor - property.
      *
-     * @return property {@link #pdf}.
+     * @return property {@link #pdfSha}.
      */
-    public final ObjectProperty<byte[]> pdfProperty() {
-        return pdf;
+    public final StringProperty pdfShaProperty() {
+        return pdfSha;
     }
 
     /**
      * FX Accessor - getter.
      *
-     * @return value of {@link #xml}.get();
+     * @return value of {@link #xmlSha}.get();
      */
     @Basic
-    @Column(name = "xml")
-    public final String getXml() {
-        return xml.get();
+    @Column(length = 64, name = "xml_sha")
+    public final String getXmlSha() {
+        return xmlSha.get();
     }
 
     /**
      * FX Accessor - setter.
      *
-     * @param xml value to assign into {@link #xml}.
+     * @param xmlSha value to assign into {@link #xmlSha}.
      */
-    public final void setXml(String xml) {
-        this.xml.set(xml);
+    public final void setXmlSha(String xmlSha) {
+        this.xmlSha.set(xmlSha);
     }
 
     /**
      * FX Accessor - property.
      *
-     * @return property {@link #xml}.
+     * @return property {@link #xmlSha}.
      */
-    public final StringProperty xmlProperty() {
-        return xml;
+    public final StringProperty xmlShaProperty() {
+        return xmlSha;
     }
 
     /**
      * FX Accessor - getter.
      *
-     * @return value of {@link #cdr}.get();
+     * @return value of {@link #cdrSha}.get();
      */
     @Basic
-    @Column(name = "cdr")
-    public final String getCdr() {
-        return cdr.get();
+    @Column(length = 64, name = "cdr_sha")
+    public final String getCdrSha() {
+        return cdrSha.get();
     }
 
     /**
      * FX Accessor - setter.
      *
-     * @param cdr value to assign into {@link #cdr}.
+     * @param cdrSha value to assign into {@link #cdrSha}.
      */
-    public final void setCdr(String cdr) {
-        this.cdr.set(cdr);
+    public final void setCdrSha(String cdrSha) {
+        this.cdrSha.set(cdrSha);
     }
 
     /**
      * FX Accessor - property.
      *
-     * @return property {@link #cdr}.
+     * @return property {@link #cdrSha}.
      */
-    public final StringProperty cdrProperty() {
-        return cdr;
+    public final StringProperty cdrShaProperty() {
+        return cdrSha;
     }
 
     @Override
@@ -23,6 +23,7 @@ import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import org.eclipse.persistence.annotations.UuidGenerator;
+import org.eclipse.persistence.indirection.IndirectCollection;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -126,6 +127,11 @@ public class Journal {
     private final ListProperty<JournalDt> detail =
             new SimpleListProperty<>(this, "detail",
                     FXCollections.observableArrayList());
+    /**
+     * The detail lines as read by JPA and not yet copied into
+     * {@link #detail}, or null if they were already copied.
+     */
+    private Collection<JournalDt> unread;
 
     /**
      * Accessor - getter.
@@ -457,7 +463,7 @@ public class Journal {
      */
     @Transient
     public ObservableList<JournalDt> getDetail() {
-        return detail.get();
+        return detailProperty().get();
     }
 
     /**
@@ -466,6 +472,7 @@ public class Journal {
      * @param detail value to set on {@link #detail}
      */
     public void setDetail(ObservableList<JournalDt> detail) {
+        unread = null;
         this.detail.set(detail);
     }
 
@@ -478,16 +485,26 @@ public class Journal {
             cascade = CascadeType.ALL,
             orphanRemoval = true)
     public Collection<JournalDt> getDetails() {
-        return getDetail();
+        return unread == null ? detail.get() : unread;
     }
 
     /**
-     * Virtual setter to set the detail (for JPA purposes).
+     * Virtual setter to set the detail (for JPA purposes). If the
+     * lines weren't read from the database yet, they are kept as
+     * they are and copied into {@link #detail} on first access, so
+     * reading a journal (ie: along with its sales) doesn't query its
+     * lines unless someone asks for them.
      *
      * @param details the new details elements.
      */
     public void setDetails(Collection<JournalDt> details) {
-        detail.setAll(details);
+        if (details instanceof IndirectCollection<?, ?> lazy
+                && !lazy.isInstantiated()) {
+            unread = details;
+        } else {
+            unread = null;
+            detail.setAll(details);
+        }
     }
 
     /**
@@ -640,6 +657,11 @@ public class Journal {
      * @return the property {@link  #detail}
      */
     public ListProperty<JournalDt> detailProperty() {
+        if (unread != null) {
+            var details = unread;
+            unread = null;
+            detail.setAll(details);
+        }
         return detail;
     }
 
@@ -648,10 +670,11 @@ public class Journal {
      */
     public void createLine() {
         var x = new JournalDt();
-        detail.add(x);
+        var lines = detailProperty();
+        lines.add(x);
         x.setTransaction(this);
         var i = 0;
-        for (var dt : detail) dt.setLine(++i);
+        for (var dt : lines) dt.setLine(++i);
     }
 
     @Override
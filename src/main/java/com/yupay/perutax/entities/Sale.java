@@ -22,6 +22,8 @@ import jakarta.persistence.*;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
 import org.eclipse.persistence.annotations.UuidGenerator;
 
 import java.math.BigDecimal;
@@ -32,13 +34,32 @@ import java.util.Objects;
 
 /**
  * This entity represents a sale entry.
+ * <br/>
+ * The single valued associations of the sale are batch fetched:
+ * when a list of sales is read, each association is loaded for
+ * all the sales at once (one query per association, not per sale).
+ * The {@link #GRAPH_DETAIL} entity graph describes the sale with
+ * its detail lines and totals, see {@code DAOSale#findByPeriod}.
  *
  * @author InfoYupay SACS
  * @version 1.0
  */
 @Entity
 @Table(schema = "public", name = "sale")
+@NamedEntityGraph(name = Sale.GRAPH_DETAIL,
+        attributeNodes = {
+                @NamedAttributeNode(value = "detail", subgraph = "lines"),
+                @NamedAttributeNode("totals"),
+                @NamedAttributeNode("person")},
+        subgraphs = @NamedSubgraph(name = "lines", attributeNodes = {
+                @NamedAttributeNode("product"),
+                @NamedAttributeNode("mUnit")}))
 public class Sale {
+    /**
+     * Entity graph of the sale with its detail lines
+     * (and their products), totals and customer.
+     */
+    public static final String GRAPH_DETAIL = "Sale.detail";
     /**
      * The ID of the sale.
      */
@@ -181,6 +202,7 @@ public class Sale {
      *
      * @return value of {@link #spotInfo}.get();
      */
+    @BatchFetch(BatchFetchType.IN)
     @JoinColumn(name = "spot")
     @OneToOne(cascade = CascadeType.ALL)
     public final SPOTInfo getSpotInfo() {
@@ -210,6 +232,7 @@ public class Sale {
      *
      * @return value of {@link #file}.get();
      */
+    @BatchFetch(BatchFetchType.IN)
     @JoinColumn(name = "folio_file")
     @OneToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     public final FolioFile getFile() {
@@ -622,6 +645,7 @@ public class Sale {
      *
      * @return value of {@link #modified}
      */
+    @BatchFetch(BatchFetchType.IN)
     @OneToOne
     @JoinColumn(name = "modified", referencedColumnName = "id")
     public Sale getModified() {
@@ -642,6 +666,7 @@ public class Sale {
      *
      * @return value of {@link #person}
      */
+    @BatchFetch(BatchFetchType.IN)
     @OneToOne(cascade = CascadeType.ALL)
     @JoinColumn(name = "person", referencedColumnName = "id", nullable = false)
     public PersonReference getPerson() {
@@ -662,6 +687,7 @@ public class Sale {
      *
      * @return value of {@link #journal}
      */
+    @BatchFetch(BatchFetchType.IN)
     @OneToOne(cascade = CascadeType.ALL)
     @JoinColumn(name = "journal", referencedColumnName = "id", nullable = false)
     public Journal getJournal() {
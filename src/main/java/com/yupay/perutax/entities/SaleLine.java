@@ -20,6 +20,8 @@ package com.yupay.perutax.entities;
 
 import jakarta.persistence.*;
 import javafx.beans.property.*;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
 
 import java.math.BigDecimal;
 import java.util.Objects;
@@ -509,6 +511,7 @@ public class SaleLine {
      *
      * @return value of {@link #product}
      */
+    @BatchFetch(BatchFetchType.IN)
     @ManyToOne
     @JoinColumn(name = "product", referencedColumnName = "id")
     public Product getProduct() {
@@ -529,6 +532,7 @@ public class SaleLine {
      *
      * @return value of {@link #mUnit}
      */
+    @BatchFetch(BatchFetchType.IN)
     @ManyToOne
     @JoinColumn(name = "m_unit", referencedColumnName = "id", nullable = false)
     public MeasureUnit getmUnit() {
@@ -0,0 +1,192 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.entities.functionals;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+
+/**
+ * Hand written scanner over a single text line, used by the line
+ * parsers instead of regular expressions. The scanner works on the
+ * stripped line (leading and trailing white spaces are skipped), and
+ * reads it from left to right. It's meant to be created once per line,
+ * so the parsers holding no state are thread-safe.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+final class LineScanner {
+    /**
+     * The scanned line.
+     */
+    private final String line;
+    /**
+     * The exclusive end of the stripped line.
+     */
+    private final int end;
+    /**
+     * The current position.
+     */
+    private int pos;
+    /**
+     * Count of fields read so far.
+     */
+    private int fields;
+
+    /**
+     * Default constructor.
+     *
+     * @param line the line to scan.
+     */
+    LineScanner(@NotNull String line) {
+        this.line = line;
+        var b = 0;
+        var e = line.length();
+        while (b < e && Character.isWhitespace(line.charAt(b))) b++;
+        while (e > b && Character.isWhitespace(line.charAt(e - 1))) e--;
+        this.pos = b;
+        this.end = e;
+    }
+
+    /**
+     * Checks if the stripped line is empty.
+     *
+     * @param line the line, may be null.
+     * @return true if null, empty or blank.
+     */
+    @Contract("null->true")
+    static boolean isBlank(String line) {
+        return line == null || line.isBlank();
+    }
+
+    /**
+     * Checks if an ASCII digit is at the given position.
+     *
+     * @param s the text.
+     * @param i the position.
+     * @return true if 0 to 9.
+     */
+    static boolean isDigit(@NotNull CharSequence s, int i) {
+        var c = s.charAt(i);
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Checks if the whole line has been read.
+     *
+     * @return true if there's nothing left.
+     */
+    boolean atEnd() {
+        return pos >= end;
+    }
+
+    /**
+     * Reads the next field, up to (not including) the next separator,
+     * or up to the end of the line. The separator is consumed.
+     *
+     * @param sepA a separator.
+     * @param sepB another separator (may be the same).
+     * @return the field text, may be empty.
+     * @throws IllegalArgumentException if there are no more fields.
+     */
+    @NotNull String field(char sepA, char sepB) {
+        if (pos > end)
+            throw new IllegalArgumentException("Missing field %d in line: %s"
+                    .formatted(fields + 1, line));
+        var b = pos;
+        var i = b;
+        while (i < end) {
+            var c = line.charAt(i);
+            if (c == sepA || c == sepB) break;
+            i++;
+        }
+        pos = i + 1;
+        fields++;
+        return line.substring(b, i);
+    }
+
+    /**
+     * Reads exactly n ASCII digits as a non-negative integer.
+     *
+     * @param n digits count (up to 9).
+     * @return the number, or -1 if there aren't n digits.
+     */
+    int digits(int n) {
+        if (end - pos < n) return -1;
+        var r = 0;
+        for (int i = 0; i < n; i++) {
+            if (!isDigit(line, pos + i)) return -1;
+            r = r * 10 + (line.charAt(pos + i) - '0');
+        }
+        pos += n;
+        return r;
+    }
+
+    /**
+     * Consumes the given char if it's the next one.
+     *
+     * @param c the expected char.
+     * @return true if consumed.
+     */
+    boolean skip(char c) {
+        if (pos < end && line.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Consumes one of the given chars if it's the next one.
+     *
+     * @param a an expected char.
+     * @param b another expected char.
+     * @param c another expected char.
+     * @return true if consumed.
+     */
+    boolean skipAny(char a, char b, char c) {
+        return skip(a) || skip(b) || skip(c);
+    }
+
+    /**
+     * Reads a decimal number in the form {@code digits.digits}
+     * (both parts required, no sign).
+     *
+     * @return the number, or null if there's no such number.
+     */
+    BigDecimal decimal() {
+        var b = pos;
+        var unscaled = 0L;
+        var i = b;
+        while (i < end && isDigit(line, i)) unscaled = unscaled * 10 + (line.charAt(i++) - '0');
+        var intDigits = i - b;
+        if (intDigits == 0 || i >= end || line.charAt(i) != '.') return null;
+        var f = ++i;
+        while (i < end && isDigit(line, i)) unscaled = unscaled * 10 + (line.charAt(i++) - '0');
+        var scale = i - f;
+        if (scale == 0) return null;
+        pos = i;
+        //Beyond 18 digits the long accumulator may overflow.
+        return intDigits + scale > 18
+                ? new BigDecimal(line.substring(b, i))
+                : BigDecimal.valueOf(unscaled, scale);
+    }
+}
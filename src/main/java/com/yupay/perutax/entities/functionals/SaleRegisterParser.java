@@ -0,0 +1,273 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.entities.functionals;
+
+import com.yupay.perutax.entities.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import static com.yupay.perutax.entities.SaleTotalClass.*;
+
+/**
+ * The sale register parser is a function to read a line of a
+ * sales register text file (as generated by SUNAT: a PLE 140100
+ * file or a SIRE proposal), separated by pipes (|). Each line is
+ * mapped into a detached {@link Sale}, with its customer as a
+ * {@link PersonReference}, its totals as {@link SaleTotal} (only
+ * those not zero) and, for credit and debit notes, the modified
+ * folio as a sale holding only the folio fields.
+ * <br/>
+ * The folio serie and number are checked against the rules of the
+ * folio type ({@link TypeFolio#getRegexSerie()} and
+ * {@link TypeFolio#getRegexNumber()}), compiled once. Header lines
+ * (not starting with a number) are skipped. The parser holds no
+ * mutable state, so a single instance may be shared among threads.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public class SaleRegisterParser implements Function<String, Sale> {
+    /**
+     * The file layout.
+     */
+    private final Layout layout;
+    /**
+     * The folio rules, by folio type id.
+     */
+    private final Map<String, Rules> rules = new HashMap<>();
+
+    /**
+     * Default constructor.
+     *
+     * @param layout the file layout.
+     * @param folios the known folio types.
+     */
+    public SaleRegisterParser(@NotNull Layout layout, @NotNull Collection<TypeFolio> folios) {
+        this.layout = layout;
+        for (var f : folios) rules.put(f.getId(), new Rules(f,
+                compile(f.getRegexSerie()),
+                compile(f.getRegexNumber())));
+    }
+
+    @Override
+    public Sale apply(String s) {
+        if (LineScanner.isBlank(s)) return null;
+        var sc = new LineScanner(s);
+        var fields = new String[layout.fields()];
+        for (int i = 0; i < fields.length; i++) fields[i] = sc.atEnd() ? "" : sc.field('|', '|').strip();
+        if (fields[0].isEmpty() || !LineScanner.isDigit(fields[0], 0)) return null;
+        var d = layout.dateDoc;
+        var r = new Sale();
+        r.setFolioType(folio(fields[d + 2], fields[d + 3], fields[d + 4]));
+        r.setFolioSerie(fields[d + 3]);
+        r.setFolioNum(fields[d + 4]);
+        r.setDateDoc(date(fields[d]));
+        r.setDateDue(date(fields[d + 1]));
+        var person = new PersonReference();
+        person.setDoiType(fields[d + 6]);
+        person.setDoiNum(fields[d + 7]);
+        person.setFullName(fields[d + 8]);
+        r.setPerson(person);
+        total(r, EXPORT, fields[d + 9]);
+        total(r, TAXABLE, fields[d + 10]);
+        total(r, DISCOUNT, fields[d + 11]);
+        total(r, TAX, fields[d + 12]);
+        total(r, DISCOUNT_TAX, fields[d + 13]);
+        total(r, EXEMPT, fields[d + 14]);
+        total(r, TAX_FREE, fields[d + 15]);
+        total(r, ICBP, fields[d + 19]);
+        total(r, OTHERS, fields[d + 20]);
+        r.setPayableSc(amount(fields[d + 21]));
+        if (!fields[d + 22].isEmpty()) r.setCurrency(Currenci.valueOf(fields[d + 22]));
+        if (!fields[d + 23].isEmpty()) r.setXrate(new BigDecimal(fields[d + 23]));
+        if (!fields[d + 25].isEmpty()) {
+            var m = new Sale();
+            m.setDateDoc(date(fields[d + 24]));
+            m.setFolioType(folio(fields[d + 25], fields[d + 26], fields[d + 27]));
+            m.setFolioSerie(fields[d + 26]);
+            m.setFolioNum(fields[d + 27]);
+            r.setModified(m);
+        }
+        //Without state, voided folios are those without amounts.
+        r.setVoided(layout.state >= 0
+                ? "2".equals(fields[layout.state])
+                : r.getPayableSc().signum() == 0 && r.getTotals().isEmpty());
+        return r;
+    }
+
+    /**
+     * Finds the folio type and checks the serie and number.
+     *
+     * @param type   the folio type id.
+     * @param serie  the folio serie.
+     * @param number the folio number.
+     * @return the folio type.
+     * @throws IllegalArgumentException if the type is unknown, or
+     *                                  the serie or number are invalid.
+     */
+    private @NotNull TypeFolio folio(@NotNull String type, @NotNull String serie, @NotNull String number) {
+        var rule = rules.get(type);
+        if (rule == null)
+            throw new IllegalArgumentException("Unknown folio type: " + type);
+        if (rule.serie != null && !rule.serie.matcher(serie).matches())
+            throw new IllegalArgumentException("Invalid serie %s for folio type %s".formatted(serie, type));
+        if (rule.number != null && !rule.number.matcher(number).matches())
+            throw new IllegalArgumentException("Invalid number %s for folio type %s".formatted(number, type));
+        return rule.folio;
+    }
+
+    /**
+     * Adds a total to the sale, if not zero.
+     *
+     * @param sale  the sale.
+     * @param type  the total class.
+     * @param field the amount field.
+     */
+    private static void total(@NotNull Sale sale, @NotNull SaleTotalClass type, @NotNull String field) {
+        var amount = amount(field);
+        if (amount.signum() == 0) return;
+        var t = new SaleTotal();
+        t.setType(type);
+        t.setAmountSC(amount);
+        t.setOwner(sale);
+        sale.getTotals().add(t);
+    }
+
+    /**
+     * Parses an amount field, empty as zero.
+     *
+     * @param field the field.
+     * @return the amount.
+     */
+    private static @NotNull BigDecimal amount(@NotNull String field) {
+        return field.isEmpty() ? BigDecimal.ZERO : new BigDecimal(field);
+    }
+
+    /**
+     * Parses a date field in format DD/MM/AAAA, empty as null.
+     *
+     * @param field the field.
+     * @return the date.
+     * @throws IllegalArgumentException if it's not a date.
+     */
+    private static @Nullable LocalDate date(@NotNull String field) {
+        if (field.isEmpty()) return null;
+        var sc = new LineScanner(field);
+        var day = sc.digits(2);
+        var month = sc.skip('/') ? sc.digits(2) : -1;
+        var year = sc.skip('/') ? sc.digits(4) : -1;
+        if (day < 0 || month < 0 || year < 0 || !sc.atEnd())
+            throw new IllegalArgumentException("Invalid date: " + field);
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid date: " + field, e);
+        }
+    }
+
+    /**
+     * Compiles a folio rule.
+     *
+     * @param regex the regular expression, may be null.
+     * @return the compiled pattern, or null if blank.
+     */
+    private static @Nullable Pattern compile(@Nullable String regex) {
+        return regex == null || regex.isBlank() ? null : Pattern.compile(regex);
+    }
+
+    /**
+     * The folio rules of a folio type.
+     *
+     * @param folio  the folio type.
+     * @param serie  the serie pattern.
+     * @param number the number pattern.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    private record Rules(@NotNull TypeFolio folio,
+                         @Nullable Pattern serie,
+                         @Nullable Pattern number) {
+    }
+
+    /**
+     * The known layouts of sales register files. Both share
+     * the columns from the emission date on.
+     *
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    public enum Layout {
+        /**
+         * PLE 140100: period, CUO and correlative first;
+         * state at field 35.
+         */
+        PLE(3, 34, StandardCharsets.ISO_8859_1),
+        /**
+         * SIRE proposal (RVIE): RUC, name, period and CAR first;
+         * no state, voided folios have no amounts.
+         */
+        SIRE(4, -1, StandardCharsets.UTF_8);
+        /**
+         * Index of the emission date field.
+         */
+        private final int dateDoc;
+        /**
+         * Index of the state field, -1 if none.
+         */
+        private final int state;
+        /**
+         * The file charset.
+         */
+        public final Charset charset;
+
+        /**
+         * Default constructor.
+         *
+         * @param dateDoc index of the emission date field.
+         * @param state   index of the state field, -1 if none.
+         * @param charset the file charset.
+         */
+        Layout(int dateDoc, int state, Charset charset) {
+            this.dateDoc = dateDoc;
+            this.state = state;
+            this.charset = charset;
+        }
+
+        /**
+         * Count of fields read from each line.
+         *
+         * @return the count.
+         */
+        private int fields() {
+            return Math.max(dateDoc + 28, state + 1);
+        }
+    }
+}
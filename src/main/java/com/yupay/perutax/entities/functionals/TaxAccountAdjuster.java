@@ -20,11 +20,17 @@ package com.yupay.perutax.entities.functionals;
 
 import com.yupay.perutax.entities.AccountNature;
 import com.yupay.perutax.entities.Currenci;
+import com.yupay.perutax.entities.Journal;
 import com.yupay.perutax.entities.JournalDt;
 import jakarta.persistence.EntityManager;
+import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.UnmodifiableView;
 
 import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.function.Consumer;
 
 import static com.yupay.perutax.entities.AccountNature.CREDIT;
@@ -33,18 +39,74 @@ import static java.math.BigDecimal.ZERO;
 import static java.math.RoundingMode.HALF_UP;
 
 /**
- * Adjusts the tax account balance dependeing on a journal detail line.
+ * Adjusts the tax account balances depending on journal detail lines.
+ * The balance movement of each line is aggregated per account, so
+ * many lines on the same account end up as a single delta. Then, the
+ * deltas are applied with one atomic {@code UPDATE} per account, in
+ * account id order: the balance is never read into memory (no lost
+ * updates), and concurrent journals lock the accounts in the same
+ * order (no deadlocks).
  *
- * @param em       The entity manager object (to merge the account state).
- * @param currency the journal entry currency.
- * @param xrate    the journal entry exchange rate value.
  * @author InfoYupay SACS
  * @version 1.0
  */
-public record TaxAccountAdjuster(@NotNull EntityManager em,
-                                 @NotNull Currenci currency,
-                                 @NotNull BigDecimal xrate)
-        implements Consumer<JournalDt> {
+public final class TaxAccountAdjuster implements Consumer<JournalDt> {
+    /**
+     * The balance deltas, by account id.
+     */
+    private final SortedMap<String, BigDecimal> deltas = new TreeMap<>();
+    /**
+     * The journal entry currency.
+     */
+    private Currenci currency;
+    /**
+     * The journal entry exchange rate value.
+     */
+    private BigDecimal xrate;
+
+    /**
+     * Constructor for the lines of a single journal.
+     *
+     * @param currency the journal entry currency.
+     * @param xrate    the journal entry exchange rate value.
+     */
+    public TaxAccountAdjuster(@NotNull Currenci currency, @NotNull BigDecimal xrate) {
+        this.currency = currency;
+        this.xrate = xrate;
+    }
+
+    /**
+     * Constructor for many journals, see {@link #add(Journal)}.
+     */
+    public TaxAccountAdjuster() {
+    }
+
+    /**
+     * Adds all the lines of a journal, using its own
+     * currency and exchange rate.
+     *
+     * @param journal the journal entry.
+     * @return this instance.
+     */
+    @Contract("_->this")
+    public @NotNull TaxAccountAdjuster add(@NotNull Journal journal) {
+        currency = journal.getCurrency();
+        xrate = journal.getXrate();
+        journal.getDetail().forEach(this);
+        return this;
+    }
+
+    /**
+     * Adds the deltas aggregated by another adjuster.
+     *
+     * @param other the other adjuster.
+     * @return this instance.
+     */
+    @Contract("_->this")
+    public @NotNull TaxAccountAdjuster addAll(@NotNull TaxAccountAdjuster other) {
+        other.deltas.forEach((k, v) -> deltas.merge(k, v, BigDecimal::add));
+        return this;
+    }
 
     @Override
     public void accept(@NotNull JournalDt o) {
@@ -54,14 +116,42 @@ public record TaxAccountAdjuster(@NotNull EntityManager em,
         var mov = computeMovement(o);
         //Compute the movement ammount (always positive).
         var amn = computeAmmount(o);
-        //Update balance.
-        if (acc.getNature() == mov) {
-            acc.setBalance(acc.getBalance().add(amn));
-        } else {
-            acc.setBalance(acc.getBalance().subtract(amn));
+        //Aggregate balance delta.
+        deltas.merge(acc.getId(),
+                acc.getNature() == mov ? amn : amn.negate(),
+                BigDecimal::add);
+    }
+
+    /**
+     * The aggregated balance deltas.
+     *
+     * @return the deltas by account id, sorted by id.
+     */
+    public @NotNull @UnmodifiableView SortedMap<String, BigDecimal> deltas() {
+        return Collections.unmodifiableSortedMap(deltas);
+    }
+
+    /**
+     * Applies the aggregated deltas to the account balances, within
+     * the active transaction of the given entity manager. Accounts
+     * are updated in id order, and zero deltas are skipped.
+     *
+     * @param em the entity manager, with an active transaction.
+     * @throws IllegalStateException if an account doesn't exist.
+     */
+    public void apply(@NotNull EntityManager em) {
+        var qry = em.createQuery("UPDATE TaxAccount T " +
+                "SET T.balance = T.balance + :delta " +
+                "WHERE T.id = :id");
+        for (var e : deltas.entrySet()) {
+            if (e.getValue().signum() == 0) continue;
+            var x = qry.setParameter("delta", e.getValue())
+                    .setParameter("id", e.getKey())
+                    .executeUpdate();
+            if (x != 1)
+                throw new IllegalStateException("Tax account %s not found."
+                        .formatted(e.getKey()));
         }
-        //Merge new account state.
-        em.merge(acc);
     }
 
     /**
@@ -77,12 +167,12 @@ public record TaxAccountAdjuster(@NotNull EntityManager em,
             case PEN -> r = o.getDebitSc().add(o.getCreditSc());
             //If account is USD...
             case USD -> {
-                switch (currency()) {
+                switch (currency) {
                     //And movement is USD, foreign currency will do.
                     case USD -> r = o.getDebitFc().add(o.getCreditFc());
                     //And movement is PEN, need to divide SC/xrate
                     case PEN -> r = o.getDebitSc().add(o.getCreditSc())
-                            .divide(xrate(), 2, HALF_UP);
+                            .divide(xrate, 2, HALF_UP);
                 }
             }
         }
@@ -32,6 +32,9 @@ import java.util.function.Function;
  * <pre>
  *     {id}|{name}|{nature}|{currency}|{groupCost}|{usable}
  * </pre>
+ * Fields are split by a hand written scanner, and the parser holds
+ * no state, so a single instance may be shared among threads. A line
+ * with missing fields throws IllegalArgumentException.
  *
  * @author InfoYupay SACS
  * @version 1.0
@@ -39,16 +42,16 @@ import java.util.function.Function;
 public class TaxAccountParser implements Function<String, TaxAccount> {
     @Override
     public TaxAccount apply(String s) {
-        if (s == null || s.isBlank()) return null;
-        var str = s.strip();
-        var parts = str.split("[|;]", -1);
+        if (LineScanner.isBlank(s)) return null;
+        var sc = new LineScanner(s);
         var r = new TaxAccount();
-        r.setId(parts[0]);
-        r.setName(parts[1].toUpperCase());
-        r.setNature(AccountNature.valueOf(parts[2]));
-        r.setCurrency(Currenci.valueOf(parts[3]));
-        if (!parts[4].isBlank()) r.setGroupCost(CostGroup.valueOf(parts[4]));
-        r.setUsable(Boolean.parseBoolean(parts[5]));
+        r.setId(sc.field('|', ';'));
+        r.setName(sc.field('|', ';').toUpperCase());
+        r.setNature(AccountNature.valueOf(sc.field('|', ';')));
+        r.setCurrency(Currenci.valueOf(sc.field('|', ';')));
+        var group = sc.field('|', ';');
+        if (!group.isBlank()) r.setGroupCost(CostGroup.valueOf(group));
+        r.setUsable(Boolean.parseBoolean(sc.field('|', ';')));
         r.setTrash(false);
         return r;
     }
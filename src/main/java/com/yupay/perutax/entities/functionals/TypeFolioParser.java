@@ -32,6 +32,8 @@ import static java.lang.Boolean.parseBoolean;
  *     {id};{title};{regexSerie};{regexNumber}:{ctxtPurchase};{ctxtSale};{ctxtForeign};{ctxtTaxCredit}
  * </pre>
  * Only ; should be amitted as a separator provided the nature of regular expressions.
+ * Fields are split by a hand written scanner, and the parser holds no state,
+ * so a single instance may be shared among threads.
  *
  * @author InfoYupay SACS
  * @version 1.0
@@ -39,18 +41,17 @@ import static java.lang.Boolean.parseBoolean;
 public class TypeFolioParser implements Function<String, TypeFolio> {
     @Override
     public TypeFolio apply(String s) {
-        if (s == null || s.isBlank()) return null;
-        var str = s.strip();
-        var parts = str.split(";", -1);
+        if (LineScanner.isBlank(s)) return null;
+        var sc = new LineScanner(s);
         var r = new TypeFolio();
-        r.setId(parts[0]);
-        r.setTitle(parts[1].strip().toUpperCase());
-        r.setRegexSerie(parts[2].strip());
-        r.setRegexNumber(parts[3].strip());
-        r.setCtxtPurchase(parseBoolean(parts[4].strip()));
-        r.setCtxtSale(parseBoolean(parts[5].strip()));
-        r.setCtxtForeign(parseBoolean(parts[6].strip()));
-        r.setCtxtTaxCredit(parseBoolean(parts[7].strip()));
+        r.setId(sc.field(';', ';'));
+        r.setTitle(sc.field(';', ';').strip().toUpperCase());
+        r.setRegexSerie(sc.field(';', ';').strip());
+        r.setRegexNumber(sc.field(';', ';').strip());
+        r.setCtxtPurchase(parseBoolean(sc.field(';', ';').strip()));
+        r.setCtxtSale(parseBoolean(sc.field(';', ';').strip()));
+        r.setCtxtForeign(parseBoolean(sc.field(';', ';').strip()));
+        r.setCtxtTaxCredit(parseBoolean(sc.field(';', ';').strip()));
         r.setTrash(false);
         return r;
     }
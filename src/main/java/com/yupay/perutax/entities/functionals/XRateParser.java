@@ -21,9 +21,9 @@ package com.yupay.perutax.entities.functionals;
 import com.yupay.perutax.entities.XRate;
 import org.jetbrains.annotations.NotNull;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.Month;
+import java.time.Year;
 import java.util.function.Function;
 
 /**
@@ -37,41 +37,50 @@ import java.util.function.Function;
  *     2021-01-24,3.884,3.899
  *     2021-01-25,3.754,3.779
  * </pre>
+ * Lines are read by a hand written scanner (no regular expressions),
+ * and the parser holds no state, so a single instance may be shared
+ * among threads. A line not matching the format returns null.
  *
  * @author InfoYupay SACS
  * @version 1.0
  */
 public class XRateParser implements Function<String, XRate> {
-    /**
-     * Time formatter for LocalDate parsing on format uuuu-MM-dd.
-     * Lazily initialized.
-     */
-    private static DateTimeFormatter TIME_FORMATTER;
-
-    /**
-     * Checks if TIME_FORMATTER has been initialized, initializes
-     * if necessary before returning value.
-     *
-     * @return the TIME_FORMATTER.
-     */
-    private static @NotNull DateTimeFormatter formatter() {
-        if (TIME_FORMATTER == null)
-            TIME_FORMATTER = DateTimeFormatter.ofPattern("uuuu-MM-dd");
-        return TIME_FORMATTER;
-    }
-
     @Override
     public XRate apply(String s) {
-        if (s == null || s.isBlank()) return null;
-        var str = s.strip();
-        if (!str.matches("\\d{4}-\\d{2}-\\d{2}[,;|]\\d+\\.\\d+[,;|]\\d+\\.\\d+"))
-            return null;
+        if (LineScanner.isBlank(s)) return null;
+        var sc = new LineScanner(s);
+        var year = sc.digits(4);
+        if (year < 0 || !sc.skip('-')) return null;
+        var month = sc.digits(2);
+        if (month < 0 || !sc.skip('-')) return null;
+        var day = sc.digits(2);
+        if (day < 0 || !sc.skipAny(',', ';', '|')) return null;
+        var prch = sc.decimal();
+        if (prch == null || !sc.skipAny(',', ';', '|')) return null;
+        var sale = sc.decimal();
+        if (sale == null || !sc.atEnd()) return null;
 
-        var parts = str.split("[,;|]");
         var xrte = new XRate();
-        xrte.setTaxDate(LocalDate.parse(parts[0], formatter()));
-        xrte.setPrch(new BigDecimal(parts[1]));
-        xrte.setSale(new BigDecimal(parts[2]));
+        xrte.setTaxDate(dateOf(year, month, day));
+        xrte.setPrch(prch);
+        xrte.setSale(sale);
         return xrte;
     }
+
+    /**
+     * Creates the date resolving as the former uuuu-MM-dd formatter
+     * did (smart resolver): a day from 29 to 31 beyond the month
+     * length is moved back to the last day of the month.
+     *
+     * @param year  the year.
+     * @param month the month (1 to 12).
+     * @param day   the day of month (1 to 31).
+     * @return the date.
+     * @throws java.time.DateTimeException if a field is out of range.
+     */
+    private static @NotNull LocalDate dateOf(int year, int month, int day) {
+        if (day > 28 && day <= 31)
+            day = Math.min(day, Month.of(month).length(Year.isLeap(year)));
+        return LocalDate.of(year, month, day);
+    }
 }
@@ -0,0 +1,235 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.entities.validation;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Base class of the local validations of document of identity
+ * numbers (see TypeDOI). Validations work directly on the chars,
+ * without regular expressions nor allocations, and hold no state,
+ * so the shared instances returned by the static factories may be
+ * used from any thread.
+ * <br/>
+ * Besides single values, a whole list or a text column (one value
+ * per line) may be validated at once, getting the indexes of the
+ * values that failed.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public abstract class DOIValidation implements Predicate<String> {
+    /**
+     * Shared RUC validation.
+     */
+    private static final DOIValidation RUC = new RUCValidation();
+    /**
+     * Shared DNI validation: 8 digits.
+     */
+    private static final DOIValidation DNI = new Format(8, 8, Format.DIGITS);
+    /**
+     * Shared validation for foreigner card and passport:
+     * up to 12 letters or digits.
+     */
+    private static final DOIValidation ALPHANUMERIC = new Format(1, 12, Format.ALPHANUMERIC);
+    /**
+     * Shared validation for diplomatic id card: up to 15 digits.
+     */
+    private static final DOIValidation DIPLOMATIC = new Format(1, 15, Format.DIGITS);
+    /**
+     * Shared validation for non domiciled without RUC:
+     * up to 15 chars, not blank.
+     */
+    private static final DOIValidation NON_DOMICILED = new Format(1, 15, Format.ANY);
+
+    /**
+     * Checks if the chars in the given range are a valid number.
+     *
+     * @param s    the text.
+     * @param from the first index (inclusive).
+     * @param to   the last index (exclusive).
+     * @return true if valid.
+     */
+    public abstract boolean test(@NotNull CharSequence s, int from, int to);
+
+    @Override
+    public final boolean test(String s) {
+        return s != null && test(s, 0, s.length());
+    }
+
+    /**
+     * Validates many values at once.
+     *
+     * @param values the values, a null value is invalid.
+     * @return the indexes of the invalid values.
+     */
+    public @NotNull BitSet failures(@NotNull List<? extends CharSequence> values) {
+        var r = new BitSet(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            var s = values.get(i);
+            if (s == null || !test(s, 0, s.length())) r.set(i);
+        }
+        return r;
+    }
+
+    /**
+     * Validates a text column, holding one value per line
+     * (lines end with \n or \r\n). A trailing line break
+     * doesn't add an empty value at the end.
+     *
+     * @param column the text column.
+     * @return the indexes (line number - 1) of the invalid values.
+     */
+    public @NotNull BitSet failures(@NotNull CharSequence column) {
+        var r = new BitSet();
+        var len = column.length();
+        var line = 0;
+        var from = 0;
+        while (from < len) {
+            var to = from;
+            while (to < len && column.charAt(to) != '\n') to++;
+            var end = to > from && column.charAt(to - 1) == '\r' ? to - 1 : to;
+            if (!test(column, from, end)) r.set(line);
+            line++;
+            from = to + 1;
+        }
+        return r;
+    }
+
+    /**
+     * The RUC validation.
+     *
+     * @return shared instance.
+     */
+    public static @NotNull DOIValidation ruc() {
+        return RUC;
+    }
+
+    /**
+     * The DNI validation (8 digits).
+     *
+     * @return shared instance.
+     */
+    public static @NotNull DOIValidation dni() {
+        return DNI;
+    }
+
+    /**
+     * Looks up the validation for a TypeDOI id, as in SUNAT table 2:
+     * 0 (non domiciled without RUC), 1 (DNI), 4 (foreigner card),
+     * 6 (RUC), 7 (passport) and A (diplomatic id card).
+     *
+     * @param typeId the TypeDOI id.
+     * @return the validation, or null if there's none for the type.
+     */
+    public static @Nullable DOIValidation forType(@Nullable String typeId) {
+        if (typeId == null) return null;
+        return switch (typeId) {
+            case "0" -> NON_DOMICILED;
+            case "1" -> DNI;
+            case "4", "7" -> ALPHANUMERIC;
+            case "6" -> RUC;
+            case "A" -> DIPLOMATIC;
+            default -> null;
+        };
+    }
+
+    /**
+     * Checks if a char is an ASCII digit.
+     *
+     * @param c the char.
+     * @return true if 0 to 9.
+     */
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Validation of length and kind of chars.
+     *
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    private static final class Format extends DOIValidation {
+        /**
+         * Only ASCII digits.
+         */
+        static final int DIGITS = 0;
+        /**
+         * Only ASCII letters and digits.
+         */
+        static final int ALPHANUMERIC = 1;
+        /**
+         * Any char, but not all white spaces.
+         */
+        static final int ANY = 2;
+        /**
+         * Minimum length.
+         */
+        private final int min;
+        /**
+         * Maximum length.
+         */
+        private final int max;
+        /**
+         * Kind of chars allowed.
+         */
+        private final int kind;
+
+        /**
+         * Default constructor.
+         *
+         * @param min  minimum length.
+         * @param max  maximum length.
+         * @param kind kind of chars allowed.
+         */
+        private Format(int min, int max, int kind) {
+            this.min = min;
+            this.max = max;
+            this.kind = kind;
+        }
+
+        @Override
+        public boolean test(@NotNull CharSequence s, int from, int to) {
+            var len = to - from;
+            if (len < min || len > max) return false;
+            var blank = true;
+            for (int i = from; i < to; i++) {
+                var c = s.charAt(i);
+                switch (kind) {
+                    case DIGITS -> {
+                        if (!isDigit(c)) return false;
+                    }
+                    case ALPHANUMERIC -> {
+                        if (!isDigit(c)
+                                && (c < 'A' || c > 'Z')
+                                && (c < 'a' || c > 'z')) return false;
+                    }
+                    default -> blank &= Character.isWhitespace(c);
+                }
+            }
+            return kind != ANY || !blank;
+        }
+    }
+}
@@ -18,37 +18,43 @@
 
 package com.yupay.perutax.entities.validation;
 
-import java.util.function.Predicate;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * Function implementation to check RUC number validity.
  * It allows to verify if a RUC number is valid before sending
  * to the webservice, allowing for resource savings.
+ * <br/>
+ * A valid RUC has 11 digits, starts with 10, 15, 16, 17 or 20,
+ * and its last digit is the mod 11 check digit of the others.
  *
  * @author InfoYupay SACS
  * @version 1.0
  */
-public class RUCValidation implements Predicate<String> {
+public class RUCValidation extends DOIValidation {
     /**
      * Factors to use in each position (left to right).
      */
     private static final int[] FACTORS = {5, 4, 3, 2, 7, 6, 5, 4, 3, 2};
 
     @Override
-    public boolean test(String s) {
-        if (s == null) return false;
-        if (s.matches("((1[05-7])|20)\\d{9}")) {
-            var digits = s.chars().map(i -> i - 48).toArray();
-            var check = 0;
-            for (int i = 0, end = digits.length - 1; i < end; i++) {
-                check += FACTORS[i] * digits[i];
-            }
-            check %= 11;
-            check %= 10;
-            check = 11 - check;
-            return check % 10 == digits[10];
-        } else {
-            return false;
+    public boolean test(@NotNull CharSequence s, int from, int to) {
+        if (to - from != 11) return false;
+        var check = 0;
+        for (int i = 0; i < 11; i++) {
+            var c = s.charAt(from + i);
+            if (!isDigit(c)) return false;
+            if (i < 10) check += FACTORS[i] * (c - '0');
         }
+        var d0 = s.charAt(from);
+        var d1 = s.charAt(from + 1);
+        var prefix = d0 == '1'
+                ? d1 == '0' || (d1 >= '5' && d1 <= '7')
+                : d0 == '2' && d1 == '0';
+        if (!prefix) return false;
+        check %= 11;
+        check %= 10;
+        check = 11 - check;
+        return check % 10 == s.charAt(from + 10) - '0';
     }
 }
@@ -18,6 +18,7 @@
 
 package com.yupay.perutax.forms;
 
+import com.yupay.perutax.concurrent.IOScheduler;
 import com.yupay.perutax.dao.DAO;
 import com.yupay.perutax.entities.*;
 import com.yupay.perutax.entities.functionals.PeriodComparator;
@@ -599,7 +600,7 @@ public class JournalCard extends Dialog<Journal> {
                 .execute();
         var cnt = Disposables.swap();
         var dsp = Flux.fromStream(DAO.period().specialize()::findOpen)
-                .subscribeOn(Schedulers.single())
+                .subscribeOn(IOScheduler.lane("JournalCard:TaxPeriod"))
                 .doFirst(cboPeriod.getItems()::clear)
                 .publishOn(FxSchedulers.fxThread())
                 .doAfterTerminate(() -> cboPeriod.getItems().sort(new PeriodComparator().descending()))
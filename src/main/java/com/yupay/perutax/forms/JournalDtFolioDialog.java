@@ -18,6 +18,7 @@
 
 package com.yupay.perutax.forms;
 
+import com.yupay.perutax.concurrent.IOScheduler;
 import com.yupay.perutax.dao.DAO;
 import com.yupay.perutax.dao.FolioContext;
 import com.yupay.perutax.entities.JournalDtFolio;
@@ -124,7 +125,7 @@ public class JournalDtFolioDialog extends Dialog<JournalDtFolio> {
                             .typeFolio()
                             .specialize()
                             .findByContext(contexts))
-                    .subscribeOn(Schedulers.single())
+                    .subscribeOn(IOScheduler.lane("JournalDtFolioDialog:TypeFolio"))
                     .map(FXCollections::observableArrayList)
                     .publishOn(FxSchedulers.fxThread())
                     .subscribe(cboType::setItems,
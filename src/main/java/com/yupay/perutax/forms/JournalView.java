@@ -8,6 +8,7 @@ import com.yupay.perutax.entities.TaxPeriod;
 import com.yupay.perutax.entities.functionals.PeriodComparator;
 import com.yupay.perutax.forms.flows.InsertOneFlow;
 import com.yupay.perutax.forms.flows.SelectAllFlow;
+import com.yupay.perutax.forms.flows.SelectPageFlow;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -40,6 +41,11 @@ public class JournalView {
      */
     private final ObservableList<JournalSnapshot> data
             = FXCollections.observableArrayList();
+    /**
+     * The journal snapshots reader, newest first, one page at a time.
+     */
+    private final SelectPageFlow<JournalSnapshot> pager
+            = new SelectPageFlow<>(JournalSnapshot.class, "createdAt", false);
 
     /**
      * FXML control injected from journal-view.fxml
@@ -185,6 +191,10 @@ public class JournalView {
         columnValueFactory(colStamp, JournalSnapshot::createdAtProperty);
         columnValueFactory(colCurrency, JournalSnapshot::currencyProperty);
 
+        pager.forEach(data::add)
+                .onError(easy("No se pudo cargar el listado de asientos del diario."));
+        pager.loadOnScroll(tblData);
+
     }
 
     /**
@@ -264,11 +274,8 @@ public class JournalView {
      * Convenient method to load the data into the table view.
      */
     private void loadData() {
-        new SelectAllFlow<>(JournalSnapshot.class)
-                .first(data::clear)
-                .forEach(data::add)
-                .onError(easy("No se pudo cargar el listado de asientos del diario."))
-                .execute();
+        data.clear();
+        pager.reset().execute();
     }
 
     /**
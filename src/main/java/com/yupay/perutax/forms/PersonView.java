@@ -25,7 +25,7 @@ import com.yupay.perutax.entities.TypeDOI;
 import com.yupay.perutax.entities.validation.RUCValidation;
 import com.yupay.perutax.forms.flows.EditSelectionTrigger;
 import com.yupay.perutax.forms.flows.InsertOneFlow;
-import com.yupay.perutax.forms.flows.SelectAllFlow;
+import com.yupay.perutax.forms.flows.SelectPageFlow;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -62,6 +62,11 @@ public class PersonView {
      */
     private final ObservableList<Person> data
             = FXCollections.observableArrayList();
+    /**
+     * The persons reader, sorted by name, one page at a time.
+     */
+    private final SelectPageFlow<Person> pager
+            = new SelectPageFlow<>(Person.class, "fullName", true);
     //</editor-fold>
 
     //<editor-fold desc="FXML controls.">
@@ -198,6 +203,10 @@ public class PersonView {
                 chkFilter.selectedProperty(), txtFilter.textProperty());
         //noinspection unchecked
         tblData.getSortOrder().setAll(colTrash, colName, colDoiNum);
+
+        pager.forEach(data::add)
+                .onError(easy("No se pudo completar la carga de personas."));
+        pager.loadOnScroll(tblData);
     }
     //</editor-fold>
 
@@ -308,11 +317,8 @@ public class PersonView {
      * Effectively loads the data into the table view.
      */
     private void loadData() {
-        new SelectAllFlow<>(Person.class)
-                .first(data::clear)
-                .forEach(data::add)
-                .onError(easy("No se pudo completar la carga de personas."))
-                .execute();
+        data.clear();
+        pager.reset().execute();
     }
 
     /**
@@ -18,7 +18,11 @@
 
 package com.yupay.perutax.forms;
 
+import com.yupay.perutax.dao.SearchIndex;
+import com.yupay.perutax.forms.inner.SearchPipeline;
 import com.yupay.perutax.forms.inner.SearchableInfo;
+import freetimelabs.io.reactorfx.schedulers.FxSchedulers;
+import javafx.beans.value.ChangeListener;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -27,19 +31,25 @@ import javafx.scene.control.*;
 import javafx.scene.input.MouseEvent;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.function.Predicate;
-import java.util.regex.Pattern;
 import java.util.stream.IntStream;
 
+import static com.yupay.perutax.forms.ErrorAlert.easy;
 import static com.yupay.perutax.forms.FormUtils.*;
 
 /**
  * This dialog is a utility to select search results when
- * the result size is greater than 1.
+ * the result size is greater than 1. The results are narrowed
+ * in memory as the user types, and refreshed from the query
+ * once the user stops typing (see {@link SearchPipeline}).
  *
  * @author InfoYupay SACS
  * @version 1.0
@@ -55,6 +65,14 @@ public class SearchDialog<T> extends Dialog<T> {
      * In-memory store for result data.
      */
     private final ObservableList<T> data = FXCollections.observableArrayList();
+    /**
+     * The search pipeline of the query.
+     */
+    private final SearchPipeline<T> pipeline;
+    /**
+     * The running search pipeline subscription.
+     */
+    private final Disposable.Swap searching = Disposables.swap();
     //</editor-fold>
 
     //<editor-fold desc="FXML controls.">
@@ -86,6 +104,7 @@ public class SearchDialog<T> extends Dialog<T> {
      */
     SearchDialog(SearchableInfo<T> info) {
         this.info = info;
+        this.pipeline = new SearchPipeline<>(info.getQuery(), info.getLimit());
     }
 
     /**
@@ -112,6 +131,13 @@ public class SearchDialog<T> extends Dialog<T> {
                 ? tblData.getSelectionModel().getSelectedItem()
                 : null);
         setupTable();
+        setOnShown(e -> searching.update(pipeline
+                .results(textChanges())
+                .publishOn(FxSchedulers.fxThread())
+                .doOnError(easy("No se pudo ejecutar la búsqueda."))
+                .retry()
+                .subscribe(data::setAll)));
+        setOnHidden(e -> searching.dispose());
     }
     //</editor-fold>
 
@@ -166,6 +192,20 @@ public class SearchDialog<T> extends Dialog<T> {
         setupTableFilter(tblData, data, new TextFilter(), txtFilter.textProperty());
     }
 
+    /**
+     * Creates a flux of the filter text changes. The listener
+     * is removed when the subscription is cancelled.
+     *
+     * @return the flux of texts.
+     */
+    private @NotNull Flux<String> textChanges() {
+        return Flux.create(sink -> {
+            ChangeListener<String> listener = (o, oldV, newV) -> sink.next(newV);
+            txtFilter.textProperty().addListener(listener);
+            sink.onDispose(() -> txtFilter.textProperty().removeListener(listener));
+        });
+    }
+
     /**
      * Delegated method to create a column for index.
      *
@@ -184,7 +224,21 @@ public class SearchDialog<T> extends Dialog<T> {
     //<editor-fold desc="Public API.">
 
     /**
-     * Fluent setter -with.
+     * Fluent setter -with. The terms are shown in the
+     * filter text field, so the user can refine them.
+     *
+     * @param terms the search terms.
+     * @return this instance.
+     */
+    @Contract("_->this")
+    public @NotNull SearchDialog<T> withTerms(@NotNull String terms) {
+        txtFilter.setText(terms.strip());
+        return this;
+    }
+
+    /**
+     * Fluent setter -with. The data is remembered as the
+     * results of the current terms (see {@link #withTerms(String)}).
      *
      * @param data the result data.
      * @return this instance.
@@ -192,6 +246,7 @@ public class SearchDialog<T> extends Dialog<T> {
     @Contract("_->this")
     public @NotNull SearchDialog<T> withData(@NotNull Collection<T> data) {
         this.data.setAll(data);
+        pipeline.remember(txtFilter.getText(), List.copyOf(data));
         return this;
     }
     //</editor-fold>
@@ -209,7 +264,7 @@ public class SearchDialog<T> extends Dialog<T> {
     private class TextFilter implements
             Callable<Predicate<T>>,
             Predicate<T> {
-        private String regex;
+        private String folded;
 
         @Override
         public Predicate<T> call() throws Exception {
@@ -217,14 +272,14 @@ public class SearchDialog<T> extends Dialog<T> {
             if (txt.isBlank()) {
                 return always();
             } else {
-                regex = Pattern.quote(txt);
+                folded = SearchIndex.fold(txt);
                 return this;
             }
         }
 
         @Override
         public boolean test(T t) {
-            return t != null && info.getFilter().test(regex, t);
+            return t != null && info.getFilter().test(folded, t);
         }
     }
     //</editor-fold>
@@ -23,7 +23,7 @@ import com.yupay.perutax.entities.functionals.TaxAccountParser;
 import com.yupay.perutax.forms.flows.EditSelectionTrigger;
 import com.yupay.perutax.forms.flows.ImportFileFlow;
 import com.yupay.perutax.forms.flows.InsertOneFlow;
-import com.yupay.perutax.forms.flows.SelectAllFlow;
+import com.yupay.perutax.forms.flows.SelectPageFlow;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -60,6 +60,11 @@ public class TaxAccountView {
      */
     private final ObservableList<TaxAccount> data
             = FXCollections.observableArrayList();
+    /**
+     * The tax accounts reader, sorted by id, one page at a time.
+     */
+    private final SelectPageFlow<TaxAccount> pager
+            = new SelectPageFlow<>(TaxAccount.class, "id", true);
     //</editor-fold>
 
     //<editor-fold desc="FXML controls.">
@@ -189,6 +194,9 @@ public class TaxAccountView {
         tblData.getSortOrder().clear();
         tblData.getSortOrder().add(colID);
 
+        pager.forEach(data::add)
+                .onError(easy("No se pudo cargar el plan contable de la base de datos."));
+        pager.loadOnScroll(tblData);
 
     }
     //</editor-fold>
@@ -298,11 +306,8 @@ public class TaxAccountView {
      * Loads the data into table view.
      */
     private void loadData() {
-        new SelectAllFlow<>(TaxAccount.class)
-                .first(data::clear)
-                .forEach(data::add)
-                .onError(easy("No se pudo cargar el plan contable de la base de datos."))
-                .execute();
+        data.clear();
+        pager.reset().execute();
     }
 
     /**
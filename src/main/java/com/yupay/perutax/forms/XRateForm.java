@@ -377,11 +377,9 @@ public class XRateForm {
                     .show();
             return;
         }
-        try {
-            data.clear();
-            DAO.xrate().specialize()
-                    .findInPeriod(period)
-                    .forEach(data::add);
+        data.clear();
+        try (var rates = DAO.xrate().specialize().findInPeriod(period)) {
+            rates.forEach(data::add);
         } catch (RuntimeException e) {
             easy("Ocurrió un error al descargar los tipos de cambio del período " + period)
                     .accept(e);
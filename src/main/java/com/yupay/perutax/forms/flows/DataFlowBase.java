@@ -19,12 +19,13 @@
 package com.yupay.perutax.forms.flows;
 
 import com.yupay.perutax.EmptyFunctionals;
+import com.yupay.perutax.concurrent.IOScheduler;
 import freetimelabs.io.reactorfx.schedulers.FxSchedulers;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import reactor.core.Disposable;
 import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
-import reactor.core.scheduler.Schedulers;
 
 import java.util.function.Consumer;
 import java.util.stream.Stream;
@@ -38,7 +39,7 @@ import java.util.stream.Stream;
  * @author InfoYupay SACS
  * @version 1.0
  */
-public sealed abstract class DataFlowBase<T> permits SelectActiveFlow, SelectAllFlow {
+public sealed abstract class DataFlowBase<T> permits SelectActiveFlow, SelectAllFlow, SelectPageFlow {
     /**
      * The entity class.
      */
@@ -123,18 +124,33 @@ public sealed abstract class DataFlowBase<T> permits SelectActiveFlow, SelectAll
 
     /**
      * Should execute a Flux or Mono using the protected fields
-     * for first, doFinally, and subscribe.
+     * for first, doFinally, and subscribe. Disposing the result
+     * cancels the flow and closes the query stream, releasing
+     * its database cursor.
+     *
+     * @return the disposable of the running flow.
      */
-    public void execute() {
+    public @NotNull Disposable execute() {
         var cnt = Disposables.swap();
         var dsp = Flux.fromStream(this::getQuery)
                 .doFirst(first)
-                .subscribeOn(Schedulers.single())
+                .subscribeOn(IOScheduler.lane(lane()))
                 .doFinally(s -> onFinally.run())
                 .publishOn(FxSchedulers.fxThread())
                 .doAfterTerminate(cnt::dispose)
                 .subscribe(forEach, onError, onComplete);
         cnt.replace(dsp);
+        return dsp;
+    }
+
+    /**
+     * The name of the {@link IOScheduler} lane where
+     * the query runs, ie: SelectActiveFlow:Subdiary.
+     *
+     * @return the lane name.
+     */
+    protected @NotNull String lane() {
+        return getClass().getSimpleName() + ":" + entity.getSimpleName();
     }
 
     /**
@@ -18,6 +18,7 @@
 
 package com.yupay.perutax.forms.flows;
 
+import com.yupay.perutax.concurrent.IOScheduler;
 import com.yupay.perutax.dao.DAO;
 import com.yupay.perutax.forms.ErrorAlert;
 import com.yupay.perutax.forms.PeruTaxFXApp;
@@ -26,20 +27,31 @@ import javafx.stage.FileChooser.ExtensionFilter;
 import org.jetbrains.annotations.Blocking;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.Serial;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.Stream;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
 
 import static com.yupay.perutax.forms.ErrorAlert.easy;
 
@@ -78,6 +90,33 @@ public class ImportFileFlow<T> {
      * Also if user copy-pastes the source file in a textfield.
      */
     private Path dropFile;
+    /**
+     * Receives the count of inserted items so far.
+     */
+    private IntConsumer onProgress = x -> {
+    };
+    /**
+     * What to do with the lines that couldn't be imported.
+     * By default, they are reported to {@link #onError}.
+     */
+    private Consumer<List<LineError>> onLineErrors = e -> onError.accept(new LineErrorsException(e));
+    /**
+     * What to do with each inserted batch. If null, the inserted
+     * items are returned by {@link #execute()}.
+     */
+    private Consumer<List<T>> onInserted;
+    /**
+     * Lines per parsed and inserted batch.
+     */
+    private int batchSize = 1_000;
+    /**
+     * Errors found in the last execution.
+     */
+    private final Queue<LineError> errors = new ConcurrentLinkedQueue<>();
+    /**
+     * Items inserted in the last execution.
+     */
+    private int inserted;
 
     /**
      * Default constructor.
@@ -201,6 +240,59 @@ public class ImportFileFlow<T> {
         return this;
     }
 
+    /**
+     * Fluent setter for the progress listener, which receives
+     * the count of items inserted so far.
+     *
+     * @param onProgress the progress listener.
+     * @return this instance.
+     */
+    @Contract("_->this")
+    public @NotNull ImportFileFlow<T> withOnProgress(@NotNull IntConsumer onProgress) {
+        this.onProgress = onProgress;
+        return this;
+    }
+
+    /**
+     * Fluent setter for the lines per batch. Each batch is parsed
+     * in parallel with others, and then inserted in its own transaction.
+     *
+     * @param batchSize lines per batch.
+     * @return this instance.
+     */
+    @Contract("_->this")
+    public @NotNull ImportFileFlow<T> withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Fluent setter for the line errors handler. By default, the line
+     * errors are reported to the error handler as a {@link LineErrorsException}.
+     *
+     * @param onLineErrors the line errors handler.
+     * @return this instance.
+     */
+    @Contract("_->this")
+    public @NotNull ImportFileFlow<T> withOnLineErrors(@NotNull Consumer<List<LineError>> onLineErrors) {
+        this.onLineErrors = onLineErrors;
+        return this;
+    }
+
+    /**
+     * Fluent setter for the inserted batches consumer. If set, the
+     * inserted items aren't kept by the flow, so memory usage doesn't
+     * depend on the file size; and {@link #execute()} returns an empty list.
+     *
+     * @param onInserted the inserted batches consumer.
+     * @return this instance.
+     */
+    @Contract("_->this")
+    public @NotNull ImportFileFlow<T> withOnInserted(@NotNull Consumer<List<T>> onInserted) {
+        this.onInserted = onInserted;
+        return this;
+    }
+
     /**
      * Delegated method to show the file chooser to the user.
      *
@@ -218,43 +310,205 @@ public class ImportFileFlow<T> {
     }
 
     /**
-     * Delegated method to read each line of a choosen file, and
-     * map it using the {@link  #lineParser}.
+     * Delegated method to read a choosen file line by line, and parse
+     * chunks of lines in parallel using the {@link  #lineParser}. The
+     * lines are read only as the downstream requests more chunks, so
+     * at most a few chunks are held in memory at any time. Lines that
+     * cannot be parsed are collected in {@link #errors}.
      *
      * @param choosen the choosen file.
-     * @return stream of parsed entities.
+     * @return flux of parsed chunks, in file order.
+     */
+    private @NotNull Flux<Chunk<T>> readSourceFile(@NotNull Path choosen) {
+        return Flux.using(() -> Files.newBufferedReader(choosen, StandardCharsets.UTF_8),
+                        reader -> Flux.fromStream(reader.lines()),
+                        this::closeReader)
+                .index()
+                .buffer(batchSize)
+                .flatMapSequential(lines -> Mono.fromCallable(() -> parseChunk(lines))
+                                .subscribeOn(Schedulers.parallel()),
+                        Schedulers.DEFAULT_POOL_SIZE, 1);
+    }
+
+    /**
+     * Closes the source file reader.
+     *
+     * @param reader the reader.
      * @throws UncheckedIOException if IOException is caught.
      */
-    private Stream<T> readSourceFile(@NotNull Path choosen) {
+    private void closeReader(@NotNull BufferedReader reader) {
         try {
-            return Files.readAllLines(choosen, StandardCharsets.UTF_8)
-                    .stream()
-                    .map(lineParser);
+            reader.close();
         } catch (IOException e) {
-            throw new UncheckedIOException("Cannot read choosen file source.", e);
+            throw new UncheckedIOException("Cannot close choosen file source.", e);
+        }
+    }
+
+    /**
+     * Parses a chunk of indexed lines. Blank or skipped lines (those
+     * the parser maps to null) are ignored, and failures are recorded
+     * as line errors.
+     *
+     * @param lines the lines with their zero based index.
+     * @return the parsed chunk.
+     */
+    private @NotNull Chunk<T> parseChunk(@NotNull List<Tuple2<Long, String>> lines) {
+        var chunk = new Chunk<T>(new ArrayList<>(lines.size()), new ArrayList<>(lines.size()));
+        for (var line : lines) {
+            try {
+                var item = lineParser.apply(line.getT2());
+                if (item == null) continue;
+                chunk.items().add(item);
+                chunk.lines().add(line.getT1() + 1);
+            } catch (RuntimeException e) {
+                errors.add(new LineError(line.getT1() + 1, line.getT2(), e));
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Inserts a parsed chunk into the database, in a single
+     * transaction. If the chunk fails as a whole, its items are
+     * retried one by one, so only the offending lines are lost.
+     *
+     * @param chunk the parsed chunk.
+     * @return the inserted items.
+     */
+    private @NotNull List<T> insertChunk(@NotNull Chunk<T> chunk) {
+        if (chunk.items().isEmpty()) return List.of();
+        var dao = DAO.forEntity(tClass);
+        var base = inserted;
+        try {
+            var r = dao.copyMany(chunk.items(), x -> onProgress.accept(base + x));
+            inserted += r.size();
+            return r;
+        } catch (RuntimeException e) {
+            //The chunk was rolled back, rewind the reported progress.
+            inserted = base;
+            onProgress.accept(base);
+            var r = new ArrayList<T>(chunk.items().size());
+            for (int i = 0; i < chunk.items().size(); i++) {
+                try {
+                    r.add(dao.insertOne(chunk.items().get(i)));
+                    onProgress.accept(++inserted);
+                } catch (RuntimeException ex) {
+                    errors.add(new LineError(chunk.lines().get(i), null, ex));
+                }
+            }
+            return r;
         }
     }
 
     /**
      * Effectively runs/execute this flow.
-     * The flow is thread-blocking.
+     * The flow is thread-blocking. The file is read, parsed and
+     * inserted in batches of {@link #batchSize} lines, with a
+     * bounded count of batches in flight, and each
+     * batch is committed on its own; so a failing line doesn't
+     * abort the whole file. When it's done, if any line failed,
+     * the line errors are sent to {@link #onLineErrors}.
      *
-     * @return inserted elements.
+     * @return inserted elements, or an empty list if the inserted
+     * batches are sent to {@link #onInserted}.
      */
     @Blocking
     public @NotNull List<T> execute() {
+        errors.clear();
+        inserted = 0;
         try {
-            var ls = chooseFile().stream()
-                    .flatMap(this::readSourceFile)
-                    .filter(Objects::nonNull)
-                    .toList();
-            if (ls.isEmpty()) {
+            var choosen = chooseFile();
+            if (choosen.isEmpty()) return List.of();
+            var r = new ArrayList<T>();
+            readSourceFile(choosen.get())
+                    .publishOn(IOScheduler.lane("ImportFileFlow:" + tClass.getSimpleName()), 2)
+                    .map(this::insertChunk)
+                    .doOnNext(onInserted == null ? r::addAll : onInserted)
+                    .blockLast();
+            if (inserted == 0 && errors.isEmpty()) {
                 throw new IllegalStateException("The file didn't contain valid items.");
             }
-            return DAO.forEntity(tClass).insertMany(ls);
+            if (!errors.isEmpty()) onLineErrors.accept(getErrors());
+            return r;
         } catch (Exception e) {
             onError.accept(e);
             return List.of();
         }
     }
+
+    /**
+     * The errors of the last execution.
+     *
+     * @return the line errors, ordered by line number.
+     */
+    public @NotNull @Unmodifiable List<LineError> getErrors() {
+        return errors.stream()
+                .sorted(Comparator.comparingLong(LineError::line))
+                .toList();
+    }
+
+    /**
+     * A chunk of parsed items along with their line numbers.
+     *
+     * @param items the parsed items.
+     * @param lines the one based line number of each item.
+     * @param <T>   type erasure of imported entities.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    private record Chunk<T>(@NotNull List<T> items, @NotNull List<Long> lines) {
+    }
+
+    /**
+     * An error found while importing a line.
+     *
+     * @param line  the one based line number.
+     * @param text  the line text, if available.
+     * @param cause the error.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    public record LineError(long line, @Nullable String text, @NotNull Throwable cause) {
+        @Override
+        public String toString() {
+            return "Línea %d: %s".formatted(line, cause.getMessage());
+        }
+    }
+
+    /**
+     * Exception to report the lines that couldn't be imported,
+     * used by the default line errors handler.
+     *
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    public static final class LineErrorsException extends RuntimeException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        /**
+         * The line errors.
+         */
+        private final transient List<LineError> errors;
+
+        /**
+         * Default constructor.
+         *
+         * @param errors the line errors.
+         */
+        public LineErrorsException(@NotNull List<LineError> errors) {
+            super("%d línea(s) no se pudieron importar:%n%s".formatted(errors.size(),
+                    errors.stream().limit(20).map(LineError::toString)
+                            .collect(Collectors.joining(System.lineSeparator()))));
+            this.errors = errors;
+        }
+
+        /**
+         * Accessor - getter.
+         *
+         * @return the line errors.
+         */
+        public @NotNull List<LineError> getErrors() {
+            return errors;
+        }
+    }
 }
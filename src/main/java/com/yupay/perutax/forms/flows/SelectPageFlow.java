@@ -0,0 +1,219 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.forms.flows;
+
+import com.yupay.perutax.dao.DAO;
+import javafx.geometry.Orientation;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TableView;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+
+import java.util.stream.Stream;
+
+/**
+ * Data flow to read a table one page at a time, using keyset
+ * pagination. Each execution emits the next page, until the
+ * last page has been read. It may be bound to a table view,
+ * so the next page is loaded as the user scrolls down.
+ * <br/>
+ * The cursor state is read and written holding the lock of
+ * this flow, since the pages are read in an IO thread while
+ * the flow may be reset from the FX thread.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class SelectPageFlow<T> extends DataFlowBase<T> {
+    /**
+     * The default page size.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    /**
+     * The sort attribute.
+     */
+    private final String column;
+    /**
+     * True to sort ascending.
+     */
+    private final boolean ascending;
+    /**
+     * The running page load.
+     */
+    private final Disposable.Swap running = Disposables.swap();
+    /**
+     * Maximum rows per page.
+     */
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    /**
+     * Last element of the last read page.
+     */
+    private T last;
+    /**
+     * True once the last page has been read.
+     */
+    private boolean exhausted;
+    /**
+     * True while a page is being read.
+     */
+    private boolean loading;
+    /**
+     * Incremented on each reset, so a page read before
+     * the reset doesn't move the cursor of the new one.
+     */
+    private int generation;
+
+    /**
+     * Default constructor.
+     *
+     * @param entity    the entity class.
+     * @param column    the sort attribute, should be not null.
+     * @param ascending true to sort ascending.
+     */
+    public SelectPageFlow(Class<T> entity, @NotNull String column, boolean ascending) {
+        super(entity);
+        this.column = column;
+        this.ascending = ascending;
+    }
+
+    /**
+     * Fluent setter.
+     *
+     * @param pageSize maximum rows per page.
+     * @return this instance.
+     */
+    @Contract("_->this")
+    public @NotNull SelectPageFlow<T> withPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Cancels any running page load and restarts the flow,
+     * so the next execution will read the first page.
+     *
+     * @return this instance.
+     */
+    @Contract("->this")
+    public @NotNull SelectPageFlow<T> reset() {
+        running.update(null);
+        synchronized (this) {
+            generation++;
+            last = null;
+            exhausted = false;
+            loading = false;
+        }
+        return this;
+    }
+
+    /**
+     * Checks if the last page has been read.
+     *
+     * @return true if there are no more pages.
+     */
+    public synchronized boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * Reads the next page. Does nothing if a page is already
+     * being read or if the last page has been read.
+     *
+     * @return the disposable of the running page load.
+     */
+    @Override
+    public @NotNull Disposable execute() {
+        synchronized (this) {
+            if (exhausted || loading) return Disposables.disposed();
+            loading = true;
+        }
+        var dsp = super.execute();
+        running.update(dsp);
+        return dsp;
+    }
+
+    /**
+     * Binds this flow to the vertical scroll bar of a table
+     * view, so the next page is read when the user scrolls
+     * near to the bottom of the table.
+     *
+     * @param table the table view.
+     * @return this instance.
+     */
+    @Contract("_->this")
+    public @NotNull SelectPageFlow<T> loadOnScroll(@NotNull TableView<?> table) {
+        if (table.getSkin() != null) bindScrollBar(table);
+        else table.skinProperty().addListener((o, old, skin) -> {
+            if (old == null && skin != null) bindScrollBar(table);
+        });
+        return this;
+    }
+
+    /**
+     * Looks up the vertical scroll bar of the table
+     * and listens to its value.
+     *
+     * @param table the table view, with skin already set.
+     */
+    private void bindScrollBar(@NotNull TableView<?> table) {
+        for (var node : table.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar bar
+                    && bar.getOrientation() == Orientation.VERTICAL) {
+                bar.valueProperty().addListener((o, old, value) -> {
+                    if (value.doubleValue() >= bar.getMax() * 0.9) execute();
+                });
+            }
+        }
+    }
+
+    @Override
+    protected @NotNull Stream<T> getQuery() {
+        int gen;
+        T from;
+        synchronized (this) {
+            gen = generation;
+            from = last;
+        }
+        try {
+            var page = DAO.forEntity(entity).findNextPage(column, ascending, from, pageSize);
+            synchronized (this) {
+                //Reset while reading: this page belongs to the old cursor.
+                if (gen != generation) return Stream.empty();
+                if (page.size() < pageSize) exhausted = true;
+                if (!page.isEmpty()) last = page.get(page.size() - 1);
+            }
+            return page.stream().onClose(() -> loaded(gen));
+        } catch (RuntimeException e) {
+            loaded(gen);
+            throw e;
+        }
+    }
+
+    /**
+     * Allows the next page to be read, unless
+     * the flow has been reset meanwhile.
+     *
+     * @param gen the generation of the read page.
+     */
+    private synchronized void loaded(int gen) {
+        if (gen == generation) loading = false;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.forms.inner;
+
+import com.yupay.perutax.concurrent.IOScheduler;
+import com.yupay.perutax.dao.SearchIndex;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Reactive pipeline from the search terms typed by the user
+ * to the query results. The terms are debounced, so a query
+ * only runs when the user stops typing; a new query cancels
+ * the one in flight, and the results of recent terms are kept
+ * in a small cache.
+ * <br/>
+ * When the cached results of a prefix of the terms are complete
+ * (fewer than the query limit) they are a superset of the results
+ * of the terms, so they're reused without running the query; the
+ * caller is expected to narrow them with its own filter.
+ *
+ * @param <T> the type erasure of the results.
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class SearchPipeline<T> {
+    /**
+     * Quiet time after the last keystroke before querying.
+     */
+    public static final Duration DEBOUNCE = Duration.ofMillis(250);
+    /**
+     * Maximum count of cached terms.
+     */
+    private static final int CACHE_SIZE = 32;
+    /**
+     * The query function.
+     */
+    private final Function<String, List<T>> query;
+    /**
+     * The maximum results count of the query function.
+     */
+    private final int limit;
+    /**
+     * Recent results, by folded terms, in access order.
+     */
+    private final Map<String, List<T>> cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<T>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Default constructor.
+     *
+     * @param query the query function.
+     * @param limit the maximum results count of the query function.
+     */
+    public SearchPipeline(@NotNull Function<String, List<T>> query, int limit) {
+        this.query = query;
+        this.limit = limit;
+    }
+
+    /**
+     * Maps a flux of search terms into a flux of results. Blank
+     * terms are ignored, and repeated terms are queried once.
+     * The results are emitted on the search lane of the
+     * {@link IOScheduler} (or on the caller thread when they come
+     * from the cache).
+     *
+     * @param terms the terms, as typed by the user.
+     * @return the flux of results.
+     */
+    @Contract(pure = true)
+    public @NotNull Flux<List<T>> results(@NotNull Flux<String> terms) {
+        return terms.map(String::strip)
+                .filter(s -> !s.isEmpty())
+                .sampleTimeout(s -> Mono.delay(DEBOUNCE))
+                .distinctUntilChanged(SearchIndex::fold)
+                .switchMap(this::lookup);
+    }
+
+    /**
+     * Stores the results of the given terms, ie: those of
+     * the first query, run before the pipeline started.
+     *
+     * @param terms   the terms.
+     * @param results the results.
+     */
+    public void remember(@NotNull String terms, @NotNull List<T> results) {
+        var key = SearchIndex.fold(terms.strip());
+        if (key.isEmpty()) return;
+        synchronized (cache) {
+            cache.put(key, List.copyOf(results));
+        }
+    }
+
+    /**
+     * Looks up the results of the terms in the cache, or runs
+     * the query in the search lane.
+     *
+     * @param terms the stripped terms.
+     * @return the results.
+     */
+    @NotNull Mono<List<T>> lookup(@NotNull String terms) {
+        var hit = cached(SearchIndex.fold(terms));
+        if (hit != null) return Mono.just(hit);
+        return Mono.fromCallable(() -> query.apply(terms))
+                .subscribeOn(IOScheduler.lane("search"))
+                .doOnNext(ls -> remember(terms, ls));
+    }
+
+    /**
+     * Finds the cached results of the terms, or the complete
+     * results of its longest cached prefix.
+     *
+     * @param key the folded terms.
+     * @return the results, or null if not cached.
+     */
+    @Nullable List<T> cached(@NotNull String key) {
+        synchronized (cache) {
+            var r = cache.get(key);
+            if (r != null) return r;
+            for (int i = key.length() - 1; i > 0; i--) {
+                r = cache.get(key.substring(0, i));
+                if (r != null && r.size() < limit) return r;
+            }
+            return null;
+        }
+    }
+}
@@ -152,7 +152,7 @@ public class SearchableCell<S, T> extends TableCell<S, T> {
             var ls = info.getQuery().apply(terms);
             if (ls.isEmpty()) cancelEdit();
             else if (ls.size() == 1) commitEdit(ls.get(0));
-            else runDialog(ls);
+            else runDialog(terms, ls);
         } catch (RuntimeException e) {
             easy("No se pudo ejecutar la búsqueda.").accept(e);
             cancelEdit();
@@ -162,10 +162,12 @@ public class SearchableCell<S, T> extends TableCell<S, T> {
     /**
      * Runs the user selection dialog with a list of results.
      *
+     * @param terms   the search terms.
      * @param results the list of results.
      */
-    private void runDialog(@NotNull List<T> results) {
+    private void runDialog(@NotNull String terms, @NotNull List<T> results) {
         Forms.search(info)
+                .withTerms(terms)
                 .withData(results)
                 .showAndWait()
                 .ifPresentOrElse(
@@ -21,6 +21,7 @@ package com.yupay.perutax.forms.inner;
 import com.yupay.perutax.dao.DAO;
 import com.yupay.perutax.dao.FolioContext;
 import com.yupay.perutax.dao.PersonRole;
+import com.yupay.perutax.dao.SearchIndex;
 import com.yupay.perutax.entities.CostCenter;
 import com.yupay.perutax.entities.Person;
 import com.yupay.perutax.entities.TaxAccount;
@@ -32,6 +33,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.List;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * The searchable info class is a pretty wrapper
@@ -47,6 +49,11 @@ public class SearchableInfo<T> {
      * and retrieve all results from database.
      */
     private Function<String, List<T>> query;
+    /**
+     * The maximum results count of the query; fewer results
+     * mean the query returned every match of the text.
+     */
+    private int limit = SearchIndex.LIMIT;
     /**
      * The headers texts to show in the selection dialog.
      */
@@ -61,7 +68,8 @@ public class SearchableInfo<T> {
     private Function<T, ObservableValue<String>>[] columnValues;
     /**
      * The text filtering predicate to allow user for finer control
-     * of the search dialog.
+     * of the search dialog. It receives the folded user text
+     * (see {@link SearchIndex#fold(String)}).
      */
     private BiPredicate<String, T> filter;
     /**
@@ -84,10 +92,8 @@ public class SearchableInfo<T> {
                         x -> x.currencyProperty().asString())
                 .withHeaders("Código", "Nombre", "Moneda")
                 .withWidths(100, 350, 100)
-                .withFilter((s, t)
-                        -> t.getId().matches("^" + s + ".*")
-                        || t.getName().matches("(?i).*" + s + ".*"))
-                .withQuery(DAO.taxAccount().specialize()::search)
+                .withFilter((s, t) -> SearchIndex.matches(t.getId(), t.getName(), s))
+                .withQuery(SearchIndex.accounts()::search)
                 .withFormatter(o -> o.getId() + " - " + o.getName());
     }
 
@@ -104,10 +110,8 @@ public class SearchableInfo<T> {
                         CostCenter::titleProperty)
                 .withHeaders("Código", "Descripción")
                 .withWidths(100, 375)
-                .withFilter((s, t)
-                        -> t.getId().matches("^" + s + ".*")
-                        || t.getTitle().matches("(?i).*" + s + ".*"))
-                .withQuery(DAO.costcenter().specialize()::search)
+                .withFilter((s, t) -> SearchIndex.matches(t.getId(), t.getTitle(), s))
+                .withQuery(SearchIndex.costCenters()::search)
                 .withFormatter(o -> o.getId() + " - " + o.getTitle());
     }
 
@@ -127,10 +131,10 @@ public class SearchableInfo<T> {
                         Person::fullNameProperty)
                 .withHeaders("Tipo", "Documento", "Nombre")
                 .withWidths(100, 150, 375)
-                .withFilter((s, t)
-                        -> t.getDoiNum().matches("^" + s + ".*")
-                        || t.getFullName().matches("(?i).*" + s + ".*"))
-                .withQuery(s -> DAO.person().specialize().search(s, roles));
+                .withFilter((s, t) -> SearchIndex.matches(t.getDoiNum(), t.getFullName(), s))
+                .withQuery(s -> SearchIndex.persons().search(s,
+                        p -> roles.length == 0 || Stream.of(roles).anyMatch(r -> r.test(p)),
+                        SearchIndex.LIMIT));
     }
 
     /**
@@ -148,9 +152,9 @@ public class SearchableInfo<T> {
                         TypeFolio::titleProperty)
                 .withHeaders("Código", "Nombre")
                 .withWidths(150, 375)
-                .withFilter((s, t)
-                        -> t.getTitle().matches("(?i).*" + s + ".*"))
-                .withQuery(s -> DAO.typeFolio().specialize().findByContext(contexts));
+                .withFilter((s, t) -> SearchIndex.matches(null, t.getTitle(), s))
+                .withQuery(s -> DAO.typeFolio().specialize().findByContext(contexts))
+                .withLimit(Integer.MAX_VALUE);
     }
 
     /**
@@ -254,6 +258,26 @@ public class SearchableInfo<T> {
         return query;
     }
 
+    /**
+     * Fluent setter - with.
+     *
+     * @param limit new value to set in {@link #limit}
+     * @return this instance.
+     */
+    public final SearchableInfo<T> withLimit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Accessor - getter.
+     *
+     * @return value of {@link #limit}
+     */
+    public final int getLimit() {
+        return limit;
+    }
+
     /**
      * Fluent setter - with.
      *
@@ -203,7 +203,7 @@ public class SearchableWrapCell<S, T, U> extends TableCell<S, U> {
             var ls = info.getQuery().apply(terms);
             if (ls.isEmpty()) cancelEdit();
             else if (ls.size() == 1) commitEdit(wrapper.apply(ls.get(0)));
-            else runDialog(ls);
+            else runDialog(terms, ls);
         } catch (RuntimeException e) {
             easy("No se pudo ejecutar la búsqueda.").accept(e);
             cancelEdit();
@@ -214,10 +214,12 @@ public class SearchableWrapCell<S, T, U> extends TableCell<S, U> {
      * Effectively runs the dialog if user search
      * fetches more than one result.
      *
+     * @param terms   the search terms.
      * @param results the multiple results.
      */
-    private void runDialog(@NotNull @Unmodifiable List<T> results) {
+    private void runDialog(@NotNull String terms, @NotNull @Unmodifiable List<T> results) {
         Forms.search(info)
+                .withTerms(terms)
                 .withData(results)
                 .showAndWait()
                 .map(wrapper)
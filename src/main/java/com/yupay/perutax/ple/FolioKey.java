@@ -0,0 +1,70 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.ple;
+
+import com.yupay.perutax.entities.Sale;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The key of a folio (document) in the registers: folio type,
+ * serie and number. The serie is upper cased and the leading
+ * zeros of the number are removed, so the same folio written
+ * by SUNAT and by the books has the same key.
+ *
+ * @param type   the folio type id.
+ * @param serie  the folio serie.
+ * @param number the folio number.
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public record FolioKey(@NotNull String type, @NotNull String serie, @NotNull String number) {
+    /**
+     * Canonical constructor, normalizing the serie and number.
+     *
+     * @param type   the folio type id.
+     * @param serie  the folio serie.
+     * @param number the folio number.
+     */
+    public FolioKey {
+        type = type.strip();
+        serie = serie.strip().toUpperCase();
+        number = number.strip();
+        var i = 0;
+        while (i < number.length() - 1 && number.charAt(i) == '0') i++;
+        number = number.substring(i);
+    }
+
+    /**
+     * Static factory, from a sale.
+     *
+     * @param sale the sale.
+     * @return the folio key.
+     */
+    @Contract("_->new")
+    public static @NotNull FolioKey of(@NotNull Sale sale) {
+        return new FolioKey(sale.getFolioType().getId(), sale.getFolioSerie(), sale.getFolioNum());
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + serie + "-" + number;
+    }
+}
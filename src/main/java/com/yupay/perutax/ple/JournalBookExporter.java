@@ -0,0 +1,261 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.ple;
+
+import com.yupay.perutax.dao.BookConstants;
+import com.yupay.perutax.dao.DAORows;
+import com.yupay.perutax.entities.TaxPeriod;
+import com.yupay.perutax.entities.validation.DOIValidation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Exporter of the journal book into PLE files: the journal
+ * (050100) and the detail of the chart of accounts (050300).
+ * <br/>
+ * The journal detail lines are streamed from the database
+ * through a cursor (see {@link DAORows}) and written straight
+ * into the file, so the memory usage doesn't depend on the count
+ * of lines. Exports are cold monos.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class JournalBookExporter {
+    /**
+     * Journal detail lines of a period (parameter: period id).
+     * The journal id is the unique operation code (CUO).
+     */
+    private static final String JOURNAL = "SELECT J.id, J.correlative, D.line, D.account_id, " +
+            "D.cost_center_id, J.currency, P.doi_type, P.doi_num, " +
+            "F.folio_type, F.folio_serie, F.folio_num, " +
+            "J.date_tax, J.date_due, J.date_doc, J.briefing, D.reference, " +
+            "(D.debit_sc * 100)::bigint, (D.credit_sc * 100)::bigint, " +
+            "J.ref_book, J.ref_period, J.ref_id, J.ref_correlative " +
+            "FROM public.journal J JOIN public.journal_dt D ON D.trans_id = J.id " +
+            "LEFT JOIN public.person_reference P ON P.id = D.person " +
+            "LEFT JOIN public.journal_dt_folio F ON F.id = D.folio " +
+            "WHERE J.tax_period = ? ORDER BY J.correlative, D.line";
+    /**
+     * Accounts of the chart of accounts, not trashed.
+     */
+    private static final String ACCOUNTS = "SELECT id, name FROM public.tax_account " +
+            "WHERE NOT trash ORDER BY id";
+    /**
+     * Chart of accounts code (table 17): PCGE.
+     */
+    private static final String PCGE = "01";
+    /**
+     * Folio type of lines without folio (table 10): others.
+     */
+    private static final String NO_FOLIO = "00";
+    /**
+     * Operation state: registered in the period.
+     */
+    private static final String STATE = "1";
+    /**
+     * The taxpayer RUC.
+     */
+    private final String ruc;
+
+    /**
+     * Default constructor.
+     *
+     * @param ruc the taxpayer RUC.
+     * @throws IllegalArgumentException if the RUC is not valid.
+     */
+    public JournalBookExporter(@NotNull String ruc) {
+        if (!DOIValidation.ruc().test(ruc))
+            throw new IllegalArgumentException("El RUC " + ruc + " no es válido.");
+        this.ruc = ruc;
+    }
+
+    /**
+     * Exports the journal (050100) of a period.
+     *
+     * @param period the tax period.
+     * @param folder the destination folder.
+     * @return the cold mono of the written file.
+     */
+    public @NotNull Mono<Path> journal(@NotNull TaxPeriod period, @NotNull Path folder) {
+        var name = PLEFileName.monthly(ruc, period, BookConstants.JOURNAL);
+        var field = period.getId() + "00";
+        var rows = DAORows.flux(JOURNAL,
+                st -> st.setString(1, period.getId()),
+                JournalLine::of);
+        return PLEExport.write(folder, name, rows, (w, r) -> r.write(w, field));
+    }
+
+    /**
+     * Exports the detail of the chart of accounts (050300)
+     * of a period.
+     *
+     * @param period the tax period.
+     * @param folder the destination folder.
+     * @return the cold mono of the written file.
+     */
+    public @NotNull Mono<Path> accounts(@NotNull TaxPeriod period, @NotNull Path folder) {
+        var name = PLEFileName.monthly(ruc, period, BookConstants.JOURNAL_ACCOUNTS);
+        var field = period.getDateFrom().toString().replace("-", "");
+        var rows = DAORows.flux(ACCOUNTS, st -> {
+        }, rs -> new String[]{rs.getString(1), rs.getString(2)});
+        return PLEExport.write(folder, name, rows, (w, r) -> w.text(field)
+                .text(r[0])
+                .text(r[1], 100)
+                .text(PCGE)
+                .empty()
+                .empty()
+                .empty()
+                .text(STATE));
+    }
+
+    /**
+     * A journal detail line, as read for the export.
+     *
+     * @param cuo            the journal id.
+     * @param correlative    the journal correlative.
+     * @param line           the line number.
+     * @param account        the account code.
+     * @param costCenter     the cost center code.
+     * @param currency       the currency code.
+     * @param doiType        the person's document type.
+     * @param doiNum         the person's document number.
+     * @param folioType      the folio type.
+     * @param folioSerie     the folio serie.
+     * @param folioNum       the folio number.
+     * @param dateTax        the accounting date.
+     * @param dateDue        the due date.
+     * @param dateDoc        the operation date.
+     * @param briefing       the journal briefing.
+     * @param reference      the line reference.
+     * @param debit          the debit, in cents.
+     * @param credit         the credit, in cents.
+     * @param refBook        the referenced book.
+     * @param refPeriod      the referenced period.
+     * @param refId          the referenced operation code.
+     * @param refCorrelative the referenced correlative.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    record JournalLine(@NotNull String cuo,
+                       @NotNull String correlative,
+                       int line,
+                       @NotNull String account,
+                       @Nullable String costCenter,
+                       @NotNull String currency,
+                       @Nullable String doiType,
+                       @Nullable String doiNum,
+                       @Nullable String folioType,
+                       @Nullable String folioSerie,
+                       @Nullable String folioNum,
+                       @NotNull LocalDate dateTax,
+                       @Nullable LocalDate dateDue,
+                       @Nullable LocalDate dateDoc,
+                       @Nullable String briefing,
+                       @Nullable String reference,
+                       long debit,
+                       long credit,
+                       @Nullable String refBook,
+                       @Nullable String refPeriod,
+                       @Nullable String refId,
+                       @Nullable String refCorrelative) {
+        /**
+         * Maps a result set row.
+         *
+         * @param rs the result set.
+         * @return the journal line.
+         * @throws SQLException if something fails.
+         */
+        static @NotNull JournalLine of(@NotNull ResultSet rs) throws SQLException {
+            return new JournalLine(rs.getString(1),
+                    rs.getString(2),
+                    rs.getInt(3),
+                    rs.getString(4),
+                    rs.getString(5),
+                    rs.getString(6),
+                    rs.getString(7),
+                    rs.getString(8),
+                    rs.getString(9),
+                    rs.getString(10),
+                    rs.getString(11),
+                    rs.getDate(12).toLocalDate(),
+                    local(rs.getDate(13)),
+                    local(rs.getDate(14)),
+                    rs.getString(15),
+                    rs.getString(16),
+                    rs.getLong(17),
+                    rs.getLong(18),
+                    rs.getString(19),
+                    rs.getString(20),
+                    rs.getString(21),
+                    rs.getString(22));
+        }
+
+        /**
+         * Null safe date conversion.
+         *
+         * @param date the SQL date.
+         * @return the local date.
+         */
+        private static @Nullable LocalDate local(@Nullable Date date) {
+            return date == null ? null : date.toLocalDate();
+        }
+
+        /**
+         * Writes the 21 fields of the 050100 line. The folio
+         * number is required, so lines without folio use the
+         * journal correlative (with folio type 00).
+         *
+         * @param w      the writer.
+         * @param period the period field (AAAAMM00).
+         */
+        void write(@NotNull PLEWriter w, @NotNull String period) {
+            var folio = folioType != null;
+            w.text(period)
+                    .text(cuo, 40)
+                    .code(correlative.charAt(0), line, 4)
+                    .text(account, 24)
+                    .empty()
+                    .text(costCenter, 24)
+                    .text(currency)
+                    .text(doiType, 1)
+                    .text(doiNum, 15)
+                    .text(folio ? folioType : NO_FOLIO, 2)
+                    .text(folio ? folioSerie : null, 20)
+                    .text(folio ? folioNum : correlative, 20)
+                    .date(dateTax)
+                    .date(dateDue)
+                    .date(dateDoc)
+                    .text(briefing, 200)
+                    .text(reference, 200);
+            w.amount(debit).amount(credit);
+            if (refBook == null || refId == null) w.empty();
+            else w.text(refBook + '&' + refPeriod + "00&" + refId + '&' + refCorrelative, 92);
+            w.text(STATE);
+        }
+    }
+}
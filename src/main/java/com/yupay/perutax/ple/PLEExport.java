@@ -0,0 +1,122 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.ple;
+
+import org.jetbrains.annotations.NotNull;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Writes a flux of rows into a PLE file. Since the content
+ * indicator is part of the file name, the lines are written
+ * into a temporary file of the same folder, which is renamed
+ * once the flux completes (or deleted if it fails).
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+final class PLEExport {
+    /**
+     * Private constructor, utility class.
+     */
+    private PLEExport() {
+    }
+
+    /**
+     * Creates a mono writing the rows into a PLE file.
+     *
+     * @param folder the destination folder.
+     * @param name   the file name.
+     * @param rows   the rows to write.
+     * @param line   writes the fields of a row (not the line end).
+     * @param <T>    type erasure of the rows.
+     * @return the cold mono of the written file.
+     */
+    static <T> @NotNull Mono<Path> write(@NotNull Path folder,
+                                         @NotNull PLEFileName name,
+                                         @NotNull Flux<T> rows,
+                                         @NotNull BiConsumer<PLEWriter, T> line) {
+        return Mono.defer(() -> {
+            var tmp = temporary(folder);
+            return Mono.using(() -> PLEWriter.create(tmp),
+                            w -> rows.doOnNext(r -> {
+                                line.accept(w, r);
+                                w.endLine();
+                            }).then(Mono.fromSupplier(w::lines)),
+                            PLEWriter::close)
+                    .map(lines -> move(tmp, folder.resolve(name.resolve(lines > 0))))
+                    .doOnError(e -> delete(tmp))
+                    .doOnCancel(() -> delete(tmp));
+        });
+    }
+
+    /**
+     * Creates the temporary file.
+     *
+     * @param folder the destination folder.
+     * @return the temporary file.
+     * @throws UncheckedIOException if cannot create the file.
+     */
+    private static @NotNull Path temporary(@NotNull Path folder) {
+        try {
+            return Files.createTempFile(folder, "LE", ".tmp");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create PLE file in " + folder + ".", e);
+        }
+    }
+
+    /**
+     * Renames the temporary file.
+     *
+     * @param tmp    the temporary file.
+     * @param target the final file.
+     * @return the final file.
+     * @throws UncheckedIOException if cannot rename.
+     */
+    private static @NotNull Path move(@NotNull Path tmp, @NotNull Path target) {
+        try {
+            return Files.move(tmp, target, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot rename PLE file to " + target + ".", e);
+        }
+    }
+
+    /**
+     * Deletes the temporary file, quietly.
+     *
+     * @param tmp the temporary file.
+     */
+    private static void delete(@NotNull Path tmp) {
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException ignored) {
+            //Nothing else to do, it's only a leftover.
+        }
+    }
+}
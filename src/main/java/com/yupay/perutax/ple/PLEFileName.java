@@ -0,0 +1,97 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.ple;
+
+import com.yupay.perutax.entities.Currenci;
+import com.yupay.perutax.entities.TaxPeriod;
+import com.yupay.perutax.entities.validation.DOIValidation;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The SUNAT naming rule of PLE files:
+ * {@code LERRRRRRRRRRRAAAAMMDDLLLLLLCCOIMG.TXT}, where R is the RUC,
+ * AAAAMMDD the period (day 00 except for the inventories book),
+ * L the book code, C the opportunity code (00 except for the
+ * inventories book), O the operations indicator, I the content
+ * indicator, M the currency indicator and G the PLE indicator.
+ *
+ * @param ruc    the taxpayer RUC.
+ * @param year   the year.
+ * @param month  the month, 0 for yearly books.
+ * @param book   the book code (ie: 050100).
+ * @param closed true if the taxpayer ceased operations
+ *               (operations indicator 0, otherwise 1).
+ * @param money  the book currency.
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public record PLEFileName(@NotNull String ruc,
+                          int year,
+                          int month,
+                          @NotNull String book,
+                          boolean closed,
+                          @NotNull Currenci money) {
+    /**
+     * Canonical constructor, validating the RUC.
+     *
+     * @param ruc    the taxpayer RUC.
+     * @param year   the year.
+     * @param month  the month, 0 for yearly books.
+     * @param book   the book code (ie: 050100).
+     * @param closed true if the taxpayer ceased operations.
+     * @param money  the book currency.
+     * @throws IllegalArgumentException if the RUC is not valid.
+     */
+    public PLEFileName {
+        if (!DOIValidation.ruc().test(ruc))
+            throw new IllegalArgumentException("El RUC " + ruc + " no es válido.");
+    }
+
+    /**
+     * Static factory for a monthly book of an operating
+     * taxpayer, in soles.
+     *
+     * @param ruc    the taxpayer RUC.
+     * @param period the tax period.
+     * @param book   the book code.
+     * @return a new file name.
+     */
+    @Contract("_,_,_->new")
+    public static @NotNull PLEFileName monthly(@NotNull String ruc,
+                                               @NotNull TaxPeriod period,
+                                               @NotNull String book) {
+        var id = Integer.parseInt(period.getId());
+        return new PLEFileName(ruc, id / 100, id % 100, book, false, Currenci.PEN);
+    }
+
+    /**
+     * Builds the file name.
+     *
+     * @param content true if the file has lines.
+     * @return the file name.
+     */
+    public @NotNull String resolve(boolean content) {
+        return "LE%s%04d%02d00%s00%c%c%c1.TXT".formatted(ruc, year, month, book,
+                closed ? '0' : '1',
+                content ? '1' : '0',
+                money == Currenci.PEN ? '1' : '2');
+    }
+}
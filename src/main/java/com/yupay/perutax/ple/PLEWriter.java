@@ -0,0 +1,313 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.ple;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Writer of PLE text files: pipe terminated fields, CRLF
+ * terminated lines, ISO-8859-1 encoded. Fields are formatted
+ * straight into a fixed size buffer (no intermediate strings),
+ * which is written to the channel each time it's full; so
+ * memory usage doesn't depend on the file size.
+ * <br/>
+ * Texts are sanitized according to the PLE general rules:
+ * pipes, slashes and backslashes are not allowed, nor line
+ * breaks, and characters outside ISO-8859-1 are replaced.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class PLEWriter implements AutoCloseable {
+    /**
+     * Buffer size, in bytes.
+     */
+    private static final int BUFFER = 64 * 1024;
+    /**
+     * The destination channel.
+     */
+    private final WritableByteChannel channel;
+    /**
+     * The output buffer.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+    /**
+     * Digits scratch area, for numbers.
+     */
+    private final byte[] digits = new byte[20];
+    /**
+     * Count of lines written.
+     */
+    private long lines;
+
+    /**
+     * Default constructor.
+     *
+     * @param channel the destination channel.
+     */
+    public PLEWriter(@NotNull WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Static factory, creating (or truncating) a file.
+     *
+     * @param file the file path.
+     * @return a new writer.
+     * @throws UncheckedIOException if cannot open the file.
+     */
+    @Contract("_->new")
+    public static @NotNull PLEWriter create(@NotNull Path file) {
+        try {
+            return new PLEWriter(FileChannel.open(file, CREATE, TRUNCATE_EXISTING, WRITE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create PLE file " + file + ".", e);
+        }
+    }
+
+    /**
+     * Writes a text field, stripped, sanitized and
+     * truncated to the given maximum length.
+     *
+     * @param text the text, empty field if null.
+     * @param max  maximum length.
+     * @return this instance.
+     */
+    @Contract("_,_->this")
+    public @NotNull PLEWriter text(@Nullable CharSequence text, int max) {
+        if (text != null) {
+            var from = 0;
+            var to = text.length();
+            while (from < to && Character.isWhitespace(text.charAt(from))) from++;
+            while (to > from && Character.isWhitespace(text.charAt(to - 1))) to--;
+            to = Math.min(to, from + max);
+            for (int i = from; i < to; i++) {
+                var c = text.charAt(i);
+                if (c == '|' || c == '/' || c == '\\' || c < ' ') c = ' ';
+                else if (c > 0xFF) c = '?';
+                put((byte) c);
+            }
+        }
+        return end();
+    }
+
+    /**
+     * Writes a text field, stripped and sanitized.
+     *
+     * @param text the text, empty field if null.
+     * @return this instance.
+     */
+    @Contract("_->this")
+    public @NotNull PLEWriter text(@Nullable CharSequence text) {
+        return text(text, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Writes an empty field.
+     *
+     * @return this instance.
+     */
+    @Contract("->this")
+    public @NotNull PLEWriter empty() {
+        return end();
+    }
+
+    /**
+     * Writes an amount field, in format {@code #.##} or
+     * {@code -#.##}, without thousands separator.
+     *
+     * @param cents the amount, in cents.
+     * @return this instance.
+     */
+    @Contract("_->this")
+    public @NotNull PLEWriter amount(long cents) {
+        return decimal(cents, 2);
+    }
+
+    /**
+     * Writes a decimal number field, with the given count of
+     * decimals, without thousands separator (ie: {@code -#.###}).
+     *
+     * @param unscaled the unscaled value.
+     * @param scale    the count of decimals.
+     * @return this instance.
+     */
+    @Contract("_,_->this")
+    public @NotNull PLEWriter decimal(long unscaled, int scale) {
+        if (unscaled < 0) put((byte) '-');
+        //Negative magnitude, so Long.MIN_VALUE doesn't overflow.
+        var v = unscaled < 0 ? unscaled : -unscaled;
+        var n = 0;
+        do {
+            digits[n++] = (byte) ('0' - v % 10);
+            v /= 10;
+        } while (v != 0 || n <= scale);
+        for (int i = n - 1; i >= 0; i--) {
+            put(digits[i]);
+            if (i == scale && scale > 0) put((byte) '.');
+        }
+        return end();
+    }
+
+    /**
+     * Writes a zero padded number field.
+     *
+     * @param value the value (not negative).
+     * @param width the minimum width.
+     * @return this instance.
+     */
+    @Contract("_,_->this")
+    public @NotNull PLEWriter number(long value, int width) {
+        digits(value, width);
+        return end();
+    }
+
+    /**
+     * Writes a code field made of a prefix char followed
+     * by a zero padded number (ie: M0001).
+     *
+     * @param prefix the prefix char.
+     * @param value  the value (not negative).
+     * @param width  the minimum width of the number.
+     * @return this instance.
+     */
+    @Contract("_,_,_->this")
+    public @NotNull PLEWriter code(char prefix, long value, int width) {
+        put((byte) prefix);
+        digits(value, width);
+        return end();
+    }
+
+    /**
+     * Writes a date field in format {@code DD/MM/AAAA}.
+     *
+     * @param date the date, empty field if null.
+     * @return this instance.
+     */
+    @Contract("_->this")
+    public @NotNull PLEWriter date(@Nullable LocalDate date) {
+        if (date != null) {
+            digits(date.getDayOfMonth(), 2);
+            put((byte) '/');
+            digits(date.getMonthValue(), 2);
+            put((byte) '/');
+            digits(date.getYear(), 4);
+        }
+        return end();
+    }
+
+    /**
+     * Ends the current line.
+     */
+    public void endLine() {
+        put((byte) '\r');
+        put((byte) '\n');
+        lines++;
+    }
+
+    /**
+     * Count of lines written so far.
+     *
+     * @return the count.
+     */
+    public long lines() {
+        return lines;
+    }
+
+    /**
+     * Writes the buffered bytes into the channel.
+     *
+     * @throws UncheckedIOException if cannot write.
+     */
+    public void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write PLE file.", e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!channel.isOpen()) return;
+        try {
+            flush();
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //Closing only fails if the data could not be written.
+                throw new UncheckedIOException("Cannot close PLE file.", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the digits of a zero padded number.
+     *
+     * @param value the value (not negative).
+     * @param width the minimum width.
+     */
+    private void digits(long value, int width) {
+        var n = 0;
+        do {
+            digits[n++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = n; i < width; i++) put((byte) '0');
+        for (int i = n - 1; i >= 0; i--) put(digits[i]);
+    }
+
+    /**
+     * Ends the current field.
+     *
+     * @return this instance.
+     */
+    @Contract("->this")
+    private @NotNull PLEWriter end() {
+        put((byte) '|');
+        return this;
+    }
+
+    /**
+     * Puts a byte into the buffer, flushing if full.
+     *
+     * @param b the byte.
+     */
+    private void put(byte b) {
+        if (!buffer.hasRemaining()) flush();
+        buffer.put(b);
+    }
+}
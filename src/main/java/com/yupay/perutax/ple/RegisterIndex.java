@@ -0,0 +1,280 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.ple;
+
+import com.yupay.perutax.entities.Sale;
+import com.yupay.perutax.forms.flows.ImportFileFlow.LineError;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A sales register file (as generated by SUNAT) indexed by
+ * {@link FolioKey}, to reconcile against the books.
+ * <br/>
+ * The file is memory mapped and split into chunks at line
+ * boundaries; the chunks are decoded and parsed in parallel, and
+ * then merged in file order into the index. Lines that cannot be
+ * parsed, and repeated folios, are reported as line errors, as
+ * {@link com.yupay.perutax.forms.flows.ImportFileFlow} does.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class RegisterIndex {
+    /**
+     * Chunks per parallel worker, to balance the load.
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+    /**
+     * The sales, by folio key.
+     */
+    private final Map<FolioKey, Sale> sales;
+    /**
+     * The line errors, by line number.
+     */
+    private final List<LineError> errors;
+    /**
+     * Count of lines read.
+     */
+    private final long lines;
+
+    /**
+     * Private constructor. Use {@link #read(Path, Charset, Function)}.
+     *
+     * @param sales  the indexed sales.
+     * @param errors the line errors.
+     * @param lines  count of lines read.
+     */
+    private RegisterIndex(@NotNull Map<FolioKey, Sale> sales,
+                          @NotNull List<LineError> errors,
+                          long lines) {
+        this.sales = sales;
+        this.errors = errors;
+        this.lines = lines;
+    }
+
+    /**
+     * Reads and indexes a register file.
+     *
+     * @param file    the register file.
+     * @param charset the file charset.
+     * @param parser  the line parser (null for skipped lines).
+     * @return the cold mono of the index.
+     */
+    public static @NotNull Mono<RegisterIndex> read(@NotNull Path file,
+                                                    @NotNull Charset charset,
+                                                    @NotNull Function<String, Sale> parser) {
+        return Mono.fromCallable(() -> map(file))
+                .flatMapMany(buffer -> Flux.fromIterable(split(buffer))
+                        .flatMapSequential(range -> Mono.fromCallable(() ->
+                                        parse(buffer, range[0], range[1], charset, parser))
+                                .subscribeOn(Schedulers.parallel())))
+                .collectList()
+                .map(RegisterIndex::merge);
+    }
+
+    /**
+     * Finds a sale of the register.
+     *
+     * @param key the folio key.
+     * @return the sale, or null if not in the register.
+     */
+    public @Nullable Sale get(@NotNull FolioKey key) {
+        return sales.get(key);
+    }
+
+    /**
+     * The folio keys of the register.
+     *
+     * @return unmodifiable view of the keys.
+     */
+    public @NotNull @Unmodifiable Set<FolioKey> keys() {
+        return Collections.unmodifiableSet(sales.keySet());
+    }
+
+    /**
+     * Count of indexed sales.
+     *
+     * @return the count.
+     */
+    public int size() {
+        return sales.size();
+    }
+
+    /**
+     * Count of lines read, including skipped and failed lines.
+     *
+     * @return the count.
+     */
+    public long lines() {
+        return lines;
+    }
+
+    /**
+     * The lines that couldn't be indexed.
+     *
+     * @return the line errors, ordered by line number.
+     */
+    public @NotNull @Unmodifiable List<LineError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Maps the whole file into memory.
+     *
+     * @param file the file.
+     * @return the read only buffer.
+     * @throws UncheckedIOException if cannot read the file.
+     */
+    private static @NotNull ByteBuffer map(@NotNull Path file) {
+        try (var ch = FileChannel.open(file)) {
+            if (ch.size() > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("El archivo " + file + " es demasiado grande.");
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read register file " + file + ".", e);
+        }
+    }
+
+    /**
+     * Splits the buffer into ranges of whole lines.
+     *
+     * @param buffer the buffer.
+     * @return the [from, to) ranges.
+     */
+    private static @NotNull List<int[]> split(@NotNull ByteBuffer buffer) {
+        var size = buffer.limit();
+        var target = Math.max(1, size / (Schedulers.DEFAULT_POOL_SIZE * CHUNKS_PER_WORKER));
+        var r = new ArrayList<int[]>();
+        var from = 0;
+        while (from < size) {
+            var to = Math.min(size, from + target);
+            while (to < size && buffer.get(to - 1) != '\n') to++;
+            r.add(new int[]{from, to});
+            from = to;
+        }
+        return r;
+    }
+
+    /**
+     * Parses the lines of a range.
+     *
+     * @param buffer  the buffer.
+     * @param from    the first byte (inclusive).
+     * @param to      the last byte (exclusive).
+     * @param charset the file charset.
+     * @param parser  the line parser.
+     * @return the parsed chunk.
+     */
+    private static @NotNull Chunk parse(@NotNull ByteBuffer buffer,
+                                        int from,
+                                        int to,
+                                        @NotNull Charset charset,
+                                        @NotNull Function<String, Sale> parser) {
+        var chunk = new Chunk();
+        var bytes = new byte[256];
+        var pos = from;
+        while (pos < to) {
+            var end = pos;
+            while (end < to && buffer.get(end) != '\n') end++;
+            var len = (end > pos && buffer.get(end - 1) == '\r' ? end - 1 : end) - pos;
+            if (bytes.length < len) bytes = new byte[Math.max(len, bytes.length * 2)];
+            buffer.get(pos, bytes, 0, len);
+            var text = new String(bytes, 0, len, charset);
+            var line = ++chunk.lines;
+            try {
+                var sale = parser.apply(text);
+                if (sale != null) {
+                    chunk.sales.add(sale);
+                    chunk.saleLines.add(line);
+                }
+            } catch (RuntimeException e) {
+                chunk.errors.add(new LineError(line, text, e));
+            }
+            pos = end + 1;
+        }
+        return chunk;
+    }
+
+    /**
+     * Merges the parsed chunks, in file order.
+     *
+     * @param chunks the chunks.
+     * @return the index.
+     */
+    private static @NotNull RegisterIndex merge(@NotNull List<Chunk> chunks) {
+        var size = chunks.stream().mapToInt(c -> c.sales.size()).sum();
+        var sales = new HashMap<FolioKey, Sale>(size * 4 / 3 + 1);
+        var errors = new ArrayList<LineError>();
+        var offset = 0L;
+        for (var c : chunks) {
+            for (var e : c.errors) errors.add(new LineError(e.line() + offset, e.text(), e.cause()));
+            for (int i = 0; i < c.sales.size(); i++) {
+                var sale = c.sales.get(i);
+                var key = FolioKey.of(sale);
+                if (sales.putIfAbsent(key, sale) != null) {
+                    errors.add(new LineError(c.saleLines.get(i) + offset, null,
+                            new IllegalArgumentException("Comprobante duplicado: " + key)));
+                }
+            }
+            offset += c.lines;
+        }
+        errors.sort(Comparator.comparingLong(LineError::line));
+        return new RegisterIndex(sales, Collections.unmodifiableList(errors), offset);
+    }
+
+    /**
+     * The parsed lines of a range.
+     *
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    private static final class Chunk {
+        /**
+         * The parsed sales.
+         */
+        private final List<Sale> sales = new ArrayList<>();
+        /**
+         * The line number (within the chunk) of each sale.
+         */
+        private final List<Long> saleLines = new ArrayList<>();
+        /**
+         * The line errors, numbered within the chunk.
+         */
+        private final List<LineError> errors = new ArrayList<>();
+        /**
+         * Count of lines.
+         */
+        private long lines;
+    }
+}
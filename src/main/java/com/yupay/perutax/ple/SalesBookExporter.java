@@ -0,0 +1,323 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.ple;
+
+import com.yupay.perutax.concurrent.IOScheduler;
+import com.yupay.perutax.dao.BookConstants;
+import com.yupay.perutax.dao.DAORows;
+import com.yupay.perutax.entities.SaleTotalClass;
+import com.yupay.perutax.entities.TaxPeriod;
+import com.yupay.perutax.entities.validation.DOIValidation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.yupay.perutax.entities.SaleTotalClass.*;
+
+/**
+ * Exporter of the sales book (registro de ventas e ingresos,
+ * 140100) into a PLE file.
+ * <br/>
+ * The sales of each folio type are streamed from the database
+ * through their own cursor (see {@link DAORows}), in parallel
+ * on the IO scheduler, sorted by correlative;
+ * then merged in correlative order and written into the file.
+ * The totals of each sale are pivoted by {@link SaleTotalClass}
+ * within the same query, so there's one round trip per chunk of
+ * rows instead of a lazy load per sale.
+ * <br/>
+ * Each folio type holds a connection while streaming, so the
+ * connection pool must allow as many connections as folio types
+ * used in sales (usually four). The export is a cold mono.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class SalesBookExporter {
+    /**
+     * Folio types used by the sales of a period
+     * (parameter: period id).
+     */
+    private static final String FOLIO_TYPES = "SELECT DISTINCT folio_type FROM public.sale " +
+            "WHERE period = ?";
+    /**
+     * Sales of a period and folio type, with their totals pivoted
+     * in {@link SaleTotalClass} order (parameters: period id and
+     * folio type id). The journal entry id is the unique
+     * operation code (CUO).
+     */
+    private static final String SALES = "SELECT S.id, J.id, J.correlative, S.correlative, " +
+            "S.date_doc, S.date_due, S.folio_type, S.folio_serie, S.folio_num, " +
+            "P.doi_type, P.doi_num, P.full_name, (S.payable_sc * 100)::bigint, " +
+            "S.currency, (S.xrate * 1000)::bigint, " +
+            "M.date_doc, M.folio_type, M.folio_serie, M.folio_num, S.voided, " +
+            Arrays.stream(SaleTotalClass.values())
+                    .map(c -> "COALESCE(SUM((T.amount_sc * 100)::bigint) FILTER (WHERE T.type = '"
+                            + c.name() + "'), 0)")
+                    .collect(Collectors.joining(", ")) +
+            " FROM public.sale S JOIN public.journal J ON J.id = S.journal " +
+            "JOIN public.person_reference P ON P.id = S.person " +
+            "LEFT JOIN public.sale M ON M.id = S.modified " +
+            "LEFT JOIN public.sale_total T ON T.owner = S.id " +
+            "WHERE S.period = ? AND S.folio_type = ? " +
+            "GROUP BY S.id, J.id, P.id, M.id ORDER BY S.correlative";
+    /**
+     * Index of the first total in the result set.
+     */
+    private static final int TOTALS = 21;
+    /**
+     * Order of the sales in the register.
+     */
+    private static final Comparator<SaleRow> ORDER =
+            Comparator.comparing(SaleRow::correlative).thenComparing(SaleRow::id);
+    /**
+     * Credit notes folio types (table 10), written with negative amounts.
+     */
+    private static final Set<String> CREDIT_NOTES = Set.of("07", "87");
+    /**
+     * Operation state: registered in the period.
+     */
+    private static final String STATE = "1";
+    /**
+     * Operation state: document voided in the period.
+     */
+    private static final String VOIDED = "2";
+    /**
+     * The taxpayer RUC.
+     */
+    private final String ruc;
+
+    /**
+     * Default constructor.
+     *
+     * @param ruc the taxpayer RUC.
+     * @throws IllegalArgumentException if the RUC is not valid.
+     */
+    public SalesBookExporter(@NotNull String ruc) {
+        if (!DOIValidation.ruc().test(ruc))
+            throw new IllegalArgumentException("El RUC " + ruc + " no es válido.");
+        this.ruc = ruc;
+    }
+
+    /**
+     * Exports the sales book (140100) of a period.
+     *
+     * @param period the tax period.
+     * @param folder the destination folder.
+     * @return the cold mono of the written file.
+     */
+    public @NotNull Mono<Path> sales(@NotNull TaxPeriod period, @NotNull Path folder) {
+        var name = PLEFileName.monthly(ruc, period, BookConstants.SALES);
+        var field = period.getId() + "00";
+        var rows = DAORows.flux(FOLIO_TYPES,
+                        st -> st.setString(1, period.getId()),
+                        rs -> rs.getString(1))
+                .map(type -> sales(period, type))
+                .collectList()
+                .flatMapMany(l -> l.stream().reduce(Flux.empty(), (a, b) -> a.mergeComparingWith(b, ORDER)));
+        return PLEExport.write(folder, name, rows, (w, r) -> r.write(w, field));
+    }
+
+    /**
+     * Streams the sales of a period and folio type,
+     * on its own worker.
+     *
+     * @param period the tax period.
+     * @param type   the folio type id.
+     * @return the cold flux of sales, by correlative.
+     */
+    private static @NotNull Flux<SaleRow> sales(@NotNull TaxPeriod period, @NotNull String type) {
+        return DAORows.flux(SALES, st -> {
+            st.setString(1, period.getId());
+            st.setString(2, type);
+        }, SaleRow::of).subscribeOn(IOScheduler.lane("SalesBookExporter"));
+    }
+
+    /**
+     * A sale, as read for the export.
+     *
+     * @param id           the sale id.
+     * @param cuo          the journal entry id.
+     * @param journal      the journal entry correlative.
+     * @param correlative  the sale correlative.
+     * @param dateDoc      the emission date.
+     * @param dateDue      the due date.
+     * @param folioType    the folio type.
+     * @param folioSerie   the folio serie.
+     * @param folioNum     the folio number.
+     * @param doiType      the customer's document type.
+     * @param doiNum       the customer's document number.
+     * @param fullName     the customer's name.
+     * @param payable      the total payable, in cents.
+     * @param currency     the currency code.
+     * @param xrate        the exchange rate, in thousandths.
+     * @param modDate      the modified folio emission date.
+     * @param modType      the modified folio type.
+     * @param modSerie     the modified folio serie.
+     * @param modNum       the modified folio number.
+     * @param voided       true if the sale was voided.
+     * @param totals       the totals in cents, by {@link SaleTotalClass} ordinal.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    record SaleRow(@NotNull String id,
+                   @NotNull String cuo,
+                   @NotNull String journal,
+                   @NotNull String correlative,
+                   @NotNull LocalDate dateDoc,
+                   @Nullable LocalDate dateDue,
+                   @NotNull String folioType,
+                   @NotNull String folioSerie,
+                   @NotNull String folioNum,
+                   @NotNull String doiType,
+                   @NotNull String doiNum,
+                   @NotNull String fullName,
+                   long payable,
+                   @NotNull String currency,
+                   long xrate,
+                   @Nullable LocalDate modDate,
+                   @Nullable String modType,
+                   @Nullable String modSerie,
+                   @Nullable String modNum,
+                   boolean voided,
+                   long @NotNull [] totals) {
+        /**
+         * Maps a result set row.
+         *
+         * @param rs the result set.
+         * @return the sale row.
+         * @throws SQLException if something fails.
+         */
+        static @NotNull SaleRow of(@NotNull ResultSet rs) throws SQLException {
+            var totals = new long[SaleTotalClass.values().length];
+            for (int i = 0; i < totals.length; i++) totals[i] = rs.getLong(TOTALS + i);
+            return new SaleRow(rs.getString(1),
+                    rs.getString(2),
+                    rs.getString(3),
+                    rs.getString(4),
+                    rs.getDate(5).toLocalDate(),
+                    local(rs.getDate(6)),
+                    rs.getString(7),
+                    rs.getString(8),
+                    rs.getString(9),
+                    rs.getString(10),
+                    rs.getString(11),
+                    rs.getString(12),
+                    rs.getLong(13),
+                    rs.getString(14),
+                    rs.getLong(15),
+                    local(rs.getDate(16)),
+                    rs.getString(17),
+                    rs.getString(18),
+                    rs.getString(19),
+                    rs.getBoolean(20),
+                    totals);
+        }
+
+        /**
+         * Null safe date conversion.
+         *
+         * @param date the SQL date.
+         * @return the local date.
+         */
+        private static @Nullable LocalDate local(@Nullable Date date) {
+            return date == null ? null : date.toLocalDate();
+        }
+
+        /**
+         * The amount of a total, signed for the register: negative
+         * for credit notes, zero for voided sales.
+         *
+         * @param c the total class.
+         * @return the amount in cents.
+         */
+        long total(@NotNull SaleTotalClass c) {
+            return signed(totals[c.ordinal()]);
+        }
+
+        /**
+         * Signs an amount for the register.
+         *
+         * @param cents the stored amount.
+         * @return the amount in cents.
+         */
+        private long signed(long cents) {
+            if (voided) return 0;
+            return CREDIT_NOTES.contains(folioType) ? -Math.abs(cents) : cents;
+        }
+
+        /**
+         * Writes the 35 fields of the 140100 line. There are
+         * no selective consumption tax nor IVAP totals, so
+         * those are written as zero.
+         *
+         * @param w      the writer.
+         * @param period the period field (AAAAMM00).
+         */
+        void write(@NotNull PLEWriter w, @NotNull String period) {
+            w.text(period)
+                    .text(cuo, 40)
+                    .text(journal, 10)
+                    .date(dateDoc)
+                    .date(dateDue)
+                    .text(folioType, 2)
+                    .text(folioSerie, 20)
+                    .text(folioNum, 20)
+                    .empty()
+                    .text(doiType, 1)
+                    .text(doiNum, 15)
+                    .text(fullName, 100)
+                    .amount(total(EXPORT))
+                    .amount(total(TAXABLE))
+                    .amount(total(DISCOUNT))
+                    .amount(total(TAX))
+                    .amount(total(DISCOUNT_TAX))
+                    .amount(total(EXEMPT))
+                    .amount(total(TAX_FREE))
+                    .amount(0)
+                    .amount(0)
+                    .amount(0)
+                    .amount(total(ICBP))
+                    .amount(total(OTHERS))
+                    .amount(signed(payable))
+                    .text(currency, 3)
+                    .decimal(xrate, 3)
+                    .date(modDate)
+                    .text(modType, 2)
+                    .text(modSerie, 20)
+                    .text(modNum, 20)
+                    .empty()
+                    .empty()
+                    .empty()
+                    .text(voided ? VOIDED : STATE);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.ple;
+
+import com.yupay.perutax.dao.DAORows;
+import com.yupay.perutax.entities.Sale;
+import com.yupay.perutax.entities.TaxPeriod;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Reconciles a sales register file (as generated by SUNAT)
+ * against the sales of a period in the books.
+ * <br/>
+ * The sales of the period are streamed from the database (only
+ * the compared columns, see {@link DAORows}) and looked up in the
+ * register index by folio key, so each side is read once and
+ * there's a single hash lookup per sale. The reconciliation is a
+ * cold mono.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class SalesReconciler {
+    /**
+     * Sales of a period (parameter: period id).
+     */
+    private static final String SALES = "SELECT S.folio_type, S.folio_serie, S.folio_num, " +
+            "S.date_doc, (S.payable_sc * 100)::bigint, P.doi_num, S.voided " +
+            "FROM public.sale S JOIN public.person_reference P ON P.id = S.person " +
+            "WHERE S.period = ?";
+
+    /**
+     * Private constructor, utility class.
+     */
+    private SalesReconciler() {
+    }
+
+    /**
+     * Reconciles a register against the sales of a period.
+     *
+     * @param register the register index.
+     * @param period   the tax period.
+     * @return the cold mono of the reconciliation.
+     */
+    public static @NotNull Mono<Reconciliation> reconcile(@NotNull RegisterIndex register,
+                                                          @NotNull TaxPeriod period) {
+        return Mono.defer(() -> {
+            var pending = new HashSet<>(register.keys());
+            var missing = new ArrayList<FolioKey>();
+            var mismatches = new ArrayList<Mismatch>();
+            return DAORows.flux(SALES, st -> st.setString(1, period.getId()), Booked::of)
+                    .doOnNext(b -> {
+                        var sale = register.get(b.key);
+                        if (sale == null) missing.add(b.key);
+                        else {
+                            pending.remove(b.key);
+                            b.compare(sale, mismatches);
+                        }
+                    })
+                    .then(Mono.fromSupplier(() -> new Reconciliation(
+                            pending.stream().sorted(Comparator.comparing(FolioKey::toString))
+                                    .map(register::get).toList(),
+                            missing.stream().sorted(Comparator.comparing(FolioKey::toString)).toList(),
+                            List.copyOf(mismatches))));
+        });
+    }
+
+    /**
+     * The result of a reconciliation.
+     *
+     * @param unbooked   sales in the register, but not in the books.
+     * @param missing    sales in the books, but not in the register.
+     * @param mismatches sales in both, with different values.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    public record Reconciliation(@NotNull @Unmodifiable List<Sale> unbooked,
+                                 @NotNull @Unmodifiable List<FolioKey> missing,
+                                 @NotNull @Unmodifiable List<Mismatch> mismatches) {
+        /**
+         * Checks if both sides are the same.
+         *
+         * @return true if there are no differences.
+         */
+        public boolean isClean() {
+            return unbooked.isEmpty() && missing.isEmpty() && mismatches.isEmpty();
+        }
+    }
+
+    /**
+     * A value that differs between the books and the register.
+     *
+     * @param key      the folio key.
+     * @param field    the field description.
+     * @param books    the value in the books.
+     * @param register the value in the register.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    public record Mismatch(@NotNull FolioKey key,
+                           @NotNull String field,
+                           @NotNull String books,
+                           @NotNull String register) {
+        @Override
+        public String toString() {
+            return "%s: %s %s <> %s".formatted(key, field, books, register);
+        }
+    }
+
+    /**
+     * A sale of the books, as read for the reconciliation.
+     *
+     * @param key     the folio key.
+     * @param dateDoc the emission date.
+     * @param payable the total payable, in cents.
+     * @param doiNum  the customer's document number.
+     * @param voided  true if voided.
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    private record Booked(@NotNull FolioKey key,
+                          @NotNull LocalDate dateDoc,
+                          long payable,
+                          @NotNull String doiNum,
+                          boolean voided) {
+        /**
+         * Maps a result set row.
+         *
+         * @param rs the result set.
+         * @return the booked sale.
+         * @throws SQLException if something fails.
+         */
+        static @NotNull Booked of(@NotNull ResultSet rs) throws SQLException {
+            return new Booked(new FolioKey(rs.getString(1), rs.getString(2), rs.getString(3)),
+                    rs.getDate(4).toLocalDate(),
+                    rs.getLong(5),
+                    rs.getString(6),
+                    rs.getBoolean(7));
+        }
+
+        /**
+         * Compares with the register sale. Voided sales are only
+         * compared by state; and the total is compared without
+         * sign, since the register has negative credit notes.
+         *
+         * @param sale       the register sale.
+         * @param mismatches receives the differences.
+         */
+        void compare(@NotNull Sale sale, @NotNull List<Mismatch> mismatches) {
+            if (voided != sale.isVoided()) {
+                mismatches.add(new Mismatch(key, "Anulado", String.valueOf(voided), String.valueOf(sale.isVoided())));
+                return;
+            }
+            if (voided) return;
+            if (!dateDoc.equals(sale.getDateDoc()))
+                mismatches.add(new Mismatch(key, "Fecha de emisión", dateDoc.toString(),
+                        String.valueOf(sale.getDateDoc())));
+            var total = sale.getPayableSc().movePointRight(2).abs().longValue();
+            if (Math.abs(payable) != total)
+                mismatches.add(new Mismatch(key, "Importe total", BigDecimal.valueOf(payable, 2).toPlainString(),
+                        sale.getPayableSc().toPlainString()));
+            if (!doiNum.strip().equals(sale.getPerson().getDoiNum()))
+                mismatches.add(new Mismatch(key, "Documento del cliente", doiNum,
+                        sale.getPerson().getDoiNum()));
+        }
+    }
+}
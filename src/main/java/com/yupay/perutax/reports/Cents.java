@@ -0,0 +1,65 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.reports;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between amounts and cents. Reports aggregate
+ * amounts as long cents, which is exact for 2 decimal amounts
+ * and doesn't allocate in the inner loop; amounts are turned
+ * into BigDecimal only when a report row is emitted.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class Cents {
+    /**
+     * Private constructor, utility class.
+     */
+    private Cents() {
+    }
+
+    /**
+     * Converts cents into an amount.
+     *
+     * @param cents the cents.
+     * @return the amount, with scale 2.
+     */
+    @Contract("_->new")
+    public static @NotNull BigDecimal decimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Converts an amount into cents, rounding half up.
+     *
+     * @param amount the amount.
+     * @return the cents.
+     * @throws ArithmeticException if the amount doesn't fit a long.
+     */
+    public static long of(@NotNull BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.reports;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+
+/**
+ * A row of the cost center breakdown: the movements of
+ * an account within a cost center. Lines without cost
+ * center are reported with null cost center, at the end.
+ *
+ * @param costCenter     the cost center id, if any.
+ * @param costCenterName the cost center title, if any.
+ * @param account        the tax account id.
+ * @param accountName    the tax account name.
+ * @param debitSc        debit movements in system currency.
+ * @param creditSc       credit movements in system currency.
+ * @param debitFc        debit movements in foreign currency.
+ * @param creditFc       credit movements in foreign currency.
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public record CostCenterRow(@Nullable String costCenter,
+                            @Nullable String costCenterName,
+                            @NotNull String account,
+                            @NotNull String accountName,
+                            @NotNull BigDecimal debitSc,
+                            @NotNull BigDecimal creditSc,
+                            @NotNull BigDecimal debitFc,
+                            @NotNull BigDecimal creditFc) {
+}
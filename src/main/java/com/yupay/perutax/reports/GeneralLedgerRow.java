@@ -0,0 +1,83 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.reports;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * A row of the general ledger (libro mayor). Each account
+ * has an opening row (if it had balance), its movements in
+ * date order with the running balance, and a closing row
+ * with the totals. Balances are debit-positive.
+ *
+ * @param kind        the row kind.
+ * @param account     the tax account id.
+ * @param accountName the tax account name.
+ * @param period      the tax period id (null on closing rows).
+ * @param date        the tax date (movement rows only).
+ * @param correlative the journal correlative (movement rows only).
+ * @param text        the line reference, or the journal briefing.
+ * @param debitSc     debit amount in system currency.
+ * @param creditSc    credit amount in system currency.
+ * @param balanceSc   the running balance in system currency.
+ * @param debitFc     debit amount in foreign currency.
+ * @param creditFc    credit amount in foreign currency.
+ * @param balanceFc   the running balance in foreign currency.
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public record GeneralLedgerRow(@NotNull Kind kind,
+                               @NotNull String account,
+                               @NotNull String accountName,
+                               @Nullable String period,
+                               @Nullable LocalDate date,
+                               @Nullable String correlative,
+                               @Nullable String text,
+                               @NotNull BigDecimal debitSc,
+                               @NotNull BigDecimal creditSc,
+                               @NotNull BigDecimal balanceSc,
+                               @NotNull BigDecimal debitFc,
+                               @NotNull BigDecimal creditFc,
+                               @NotNull BigDecimal balanceFc) {
+    /**
+     * The kinds of general ledger rows.
+     *
+     * @author InfoYupay SACS
+     * @version 1.0
+     */
+    public enum Kind {
+        /**
+         * The balance before the report range.
+         */
+        OPENING,
+        /**
+         * A journal detail line.
+         */
+        MOVEMENT,
+        /**
+         * The totals of the account.
+         */
+        CLOSING
+    }
+}
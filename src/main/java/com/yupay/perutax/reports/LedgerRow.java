@@ -0,0 +1,68 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.reports;
+
+import com.yupay.perutax.entities.AccountNature;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDate;
+
+/**
+ * A source row of the reports: either a journal detail line,
+ * or the opening balance of an account (taken from the account
+ * balance snapshot of the period before the report range).
+ * Amounts are in cents; opening balances are set as debit if
+ * positive or as credit if negative.
+ *
+ * @param opening        true if this is an opening balance row.
+ * @param account        the tax account id.
+ * @param accountName    the tax account name.
+ * @param nature         the tax account nature.
+ * @param period         the tax period id.
+ * @param date           the tax date (null on opening rows).
+ * @param correlative    the journal correlative (null on opening rows).
+ * @param line           the journal detail line (0 on opening rows).
+ * @param costCenter     the cost center id, if any.
+ * @param costCenterName the cost center title, if any.
+ * @param text           the line reference, or the journal briefing.
+ * @param debitSc        debit amount in system currency.
+ * @param creditSc       credit amount in system currency.
+ * @param debitFc        debit amount in foreign currency.
+ * @param creditFc       credit amount in foreign currency.
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public record LedgerRow(boolean opening,
+                        @NotNull String account,
+                        @NotNull String accountName,
+                        @NotNull AccountNature nature,
+                        @NotNull String period,
+                        @Nullable LocalDate date,
+                        @Nullable String correlative,
+                        int line,
+                        @Nullable String costCenter,
+                        @Nullable String costCenterName,
+                        @Nullable String text,
+                        long debitSc,
+                        long creditSc,
+                        long debitFc,
+                        long creditFc) {
+}
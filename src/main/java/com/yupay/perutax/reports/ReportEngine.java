@@ -0,0 +1,234 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.reports;
+
+import com.yupay.perutax.dao.DAORows;
+import com.yupay.perutax.entities.AccountNature;
+import com.yupay.perutax.entities.TaxPeriod;
+import org.jetbrains.annotations.NotNull;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * The accounting reports engine. The journal detail rows of a
+ * period range are streamed from the database (joined with their
+ * journal entry, tax account and cost center), already sorted by
+ * the report grouping, and aggregated on the fly one group at a
+ * time with long cents accumulators; so memory usage is bounded
+ * regardless of the row count.
+ * <br/>
+ * The opening balances are read from the account balance snapshot
+ * of the periods before the range, instead of scanning the journal
+ * history.
+ * <br/>
+ * Every report is a cold flux over {@link DAORows}, meant for
+ * the UI and for file exports alike.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public final class ReportEngine {
+    /**
+     * Opening balances of the accounts, before the first period
+     * (parameter: first period id).
+     */
+    private static final String OPENINGS = "SELECT TRUE AS opening, B.account, A.name, A.nature, " +
+            "B.period, NULL::date AS date_tax, NULL AS correlative, 0 AS line, " +
+            "NULL AS cost_center, NULL AS cost_center_name, NULL AS text, " +
+            "(GREATEST(B.closing_sc, 0) * 100)::bigint AS debit_sc, " +
+            "(GREATEST(-B.closing_sc, 0) * 100)::bigint AS credit_sc, " +
+            "(GREATEST(B.closing_fc, 0) * 100)::bigint AS debit_fc, " +
+            "(GREATEST(-B.closing_fc, 0) * 100)::bigint AS credit_fc " +
+            "FROM (SELECT DISTINCT ON (account) * FROM public.account_balance " +
+            "WHERE period < ? ORDER BY account, period DESC) B " +
+            "JOIN public.tax_account A ON A.id = B.account " +
+            "WHERE B.closing_sc <> 0 OR B.closing_fc <> 0";
+    /**
+     * Journal detail lines within the period range (parameters:
+     * first and last period ids). The foreign currency amounts
+     * follow the tax account balance rule.
+     */
+    private static final String MOVEMENTS = "SELECT FALSE AS opening, D.account_id, A.name, A.nature, " +
+            "J.tax_period, J.date_tax, J.correlative, D.line, " +
+            "C.id, C.title, COALESCE(D.reference, J.briefing), " +
+            "(D.debit_sc * 100)::bigint, (D.credit_sc * 100)::bigint, " +
+            "(COALESCE(CASE WHEN J.currency = 'USD' THEN D.debit_fc " +
+            "ELSE round(D.debit_sc / NULLIF(J.xrate, 0), 2) END, 0) * 100)::bigint, " +
+            "(COALESCE(CASE WHEN J.currency = 'USD' THEN D.credit_fc " +
+            "ELSE round(D.credit_sc / NULLIF(J.xrate, 0), 2) END, 0) * 100)::bigint " +
+            "FROM public.journal J JOIN public.journal_dt D ON D.trans_id = J.id " +
+            "JOIN public.tax_account A ON A.id = D.account_id " +
+            "LEFT JOIN public.cost_center C ON C.id = D.cost_center_id " +
+            "WHERE J.tax_period BETWEEN ? AND ?";
+    /**
+     * Openings and movements, by account, period and date.
+     */
+    private static final String BY_ACCOUNT = OPENINGS + " UNION ALL " + MOVEMENTS +
+            " ORDER BY 2, 1 DESC, 5, 6, 7, 8";
+    /**
+     * Movements, by cost center (lines without cost center last) and account.
+     */
+    private static final String BY_COST_CENTER = MOVEMENTS + " ORDER BY 9 NULLS LAST, 2";
+
+    /**
+     * Private constructor, utility class.
+     */
+    private ReportEngine() {
+    }
+
+    /**
+     * Streams the opening balances and the journal detail lines
+     * of a period range, sorted by account, date and correlative.
+     *
+     * @param from  the first tax period.
+     * @param until the last tax period.
+     * @return the cold flux of rows.
+     */
+    public static @NotNull Flux<LedgerRow> ledgerRows(@NotNull TaxPeriod from, @NotNull TaxPeriod until) {
+        return DAORows.flux(BY_ACCOUNT, st -> {
+            st.setString(1, from.getId());
+            st.setString(2, from.getId());
+            st.setString(3, until.getId());
+        }, ReportEngine::row);
+    }
+
+    /**
+     * Streams the journal detail lines of a period range,
+     * sorted by cost center and account.
+     *
+     * @param from  the first tax period.
+     * @param until the last tax period.
+     * @return the cold flux of rows.
+     */
+    public static @NotNull Flux<LedgerRow> costCenterRows(@NotNull TaxPeriod from, @NotNull TaxPeriod until) {
+        return DAORows.flux(BY_COST_CENTER, st -> {
+            st.setString(1, from.getId());
+            st.setString(2, until.getId());
+        }, ReportEngine::row);
+    }
+
+    /**
+     * Builds the trial balance of a period range.
+     *
+     * @param from  the first tax period.
+     * @param until the last tax period.
+     * @return the cold flux of rows, one per account.
+     */
+    public static @NotNull Flux<TrialBalanceRow> trialBalance(@NotNull TaxPeriod from,
+                                                               @NotNull TaxPeriod until) {
+        return trialBalance(ledgerRows(from, until));
+    }
+
+    /**
+     * Builds the general ledger of a period range.
+     *
+     * @param from  the first tax period.
+     * @param until the last tax period.
+     * @return the cold flux of rows.
+     */
+    public static @NotNull Flux<GeneralLedgerRow> generalLedger(@NotNull TaxPeriod from,
+                                                                 @NotNull TaxPeriod until) {
+        return generalLedger(ledgerRows(from, until));
+    }
+
+    /**
+     * Builds the cost center breakdown of a period range.
+     *
+     * @param from  the first tax period.
+     * @param until the last tax period.
+     * @return the cold flux of rows, one per cost center and account.
+     */
+    public static @NotNull Flux<CostCenterRow> costCenters(@NotNull TaxPeriod from,
+                                                           @NotNull TaxPeriod until) {
+        return costCenters(costCenterRows(from, until));
+    }
+
+    /**
+     * Aggregates rows sorted by account into a trial balance.
+     *
+     * @param rows the rows, sorted by account.
+     * @return the trial balance rows.
+     */
+    static @NotNull Flux<TrialBalanceRow> trialBalance(@NotNull Flux<LedgerRow> rows) {
+        return rows.windowUntilChanged(LedgerRow::account)
+                .concatMap(w -> w.reduce(new Totals(), Totals::add))
+                .mapNotNull(Totals::trialBalance);
+    }
+
+    /**
+     * Aggregates rows sorted by account and date into a general
+     * ledger, with the running balance of each account.
+     *
+     * @param rows the rows, sorted by account, period and date.
+     * @return the general ledger rows.
+     */
+    static @NotNull Flux<GeneralLedgerRow> generalLedger(@NotNull Flux<LedgerRow> rows) {
+        return rows.windowUntilChanged(LedgerRow::account)
+                .concatMap(w -> Flux.defer(() -> {
+                    var t = new Totals();
+                    return w.map(r -> t.add(r).ledger(r))
+                            .concatWith(Mono.fromSupplier(t::closing));
+                }));
+    }
+
+    /**
+     * Aggregates rows sorted by cost center and account
+     * into a cost center breakdown.
+     *
+     * @param rows the rows, sorted by cost center and account.
+     * @return the cost center rows.
+     */
+    static @NotNull Flux<CostCenterRow> costCenters(@NotNull Flux<LedgerRow> rows) {
+        return rows.windowUntilChanged(r -> r, (a, b) ->
+                        Objects.equals(a.costCenter(), b.costCenter()) && a.account().equals(b.account()))
+                .concatMap(w -> w.reduce(new Totals(), Totals::add))
+                .mapNotNull(Totals::costCenter);
+    }
+
+    /**
+     * Maps a result set row.
+     *
+     * @param rs the result set.
+     * @return the ledger row.
+     * @throws SQLException if something fails.
+     */
+    private static @NotNull LedgerRow row(@NotNull ResultSet rs) throws SQLException {
+        var date = rs.getDate(6);
+        return new LedgerRow(rs.getBoolean(1),
+                rs.getString(2).strip(),
+                rs.getString(3),
+                AccountNature.valueOf(rs.getString(4)),
+                rs.getString(5),
+                date == null ? null : date.toLocalDate(),
+                rs.getString(7),
+                rs.getInt(8),
+                rs.getString(9),
+                rs.getString(10),
+                rs.getString(11),
+                rs.getLong(12),
+                rs.getLong(13),
+                rs.getLong(14),
+                rs.getLong(15));
+    }
+}
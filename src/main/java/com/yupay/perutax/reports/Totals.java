@@ -0,0 +1,147 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.reports;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static com.yupay.perutax.reports.Cents.decimal;
+
+/**
+ * Mutable accumulator of the rows of a single group (an account,
+ * or an account within a cost center), in long cents. One instance
+ * is used per group, so memory doesn't depend on the row count.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+final class Totals {
+    /**
+     * The first row of the group, holding the group descriptors.
+     */
+    private LedgerRow first;
+    /**
+     * Opening balances.
+     */
+    private long openingSc, openingFc;
+    /**
+     * Movements.
+     */
+    private long debitSc, creditSc, debitFc, creditFc;
+
+    /**
+     * Adds a row to the totals.
+     *
+     * @param row the row.
+     * @return this instance.
+     */
+    @Contract("_->this")
+    @NotNull Totals add(@NotNull LedgerRow row) {
+        if (first == null) first = row;
+        if (row.opening()) {
+            openingSc += row.debitSc() - row.creditSc();
+            openingFc += row.debitFc() - row.creditFc();
+        } else {
+            debitSc += row.debitSc();
+            creditSc += row.creditSc();
+            debitFc += row.debitFc();
+            creditFc += row.creditFc();
+        }
+        return this;
+    }
+
+    /**
+     * Checks if no row has been added.
+     *
+     * @return true if empty.
+     */
+    boolean isEmpty() {
+        return first == null;
+    }
+
+    /**
+     * Current balance in system currency.
+     *
+     * @return the balance, in cents.
+     */
+    long balanceSc() {
+        return openingSc + debitSc - creditSc;
+    }
+
+    /**
+     * Current balance in foreign currency.
+     *
+     * @return the balance, in cents.
+     */
+    long balanceFc() {
+        return openingFc + debitFc - creditFc;
+    }
+
+    /**
+     * Creates the trial balance row of the group.
+     *
+     * @return the row, or null if empty.
+     */
+    @Nullable TrialBalanceRow trialBalance() {
+        if (first == null) return null;
+        return new TrialBalanceRow(first.account(), first.accountName(), first.nature(),
+                decimal(openingSc), decimal(debitSc), decimal(creditSc), decimal(balanceSc()),
+                decimal(openingFc), decimal(debitFc), decimal(creditFc), decimal(balanceFc()));
+    }
+
+    /**
+     * Creates the general ledger row of the last added row.
+     *
+     * @param row the last added row.
+     * @return the general ledger row.
+     */
+    @NotNull GeneralLedgerRow ledger(@NotNull LedgerRow row) {
+        return new GeneralLedgerRow(row.opening() ? GeneralLedgerRow.Kind.OPENING : GeneralLedgerRow.Kind.MOVEMENT,
+                row.account(), row.accountName(), row.period(), row.date(), row.correlative(), row.text(),
+                decimal(row.debitSc()), decimal(row.creditSc()), decimal(balanceSc()),
+                decimal(row.debitFc()), decimal(row.creditFc()), decimal(balanceFc()));
+    }
+
+    /**
+     * Creates the general ledger closing row of the group.
+     *
+     * @return the row, or null if empty.
+     */
+    @Nullable GeneralLedgerRow closing() {
+        if (first == null) return null;
+        return new GeneralLedgerRow(GeneralLedgerRow.Kind.CLOSING,
+                first.account(), first.accountName(), null, null, null, null,
+                decimal(debitSc), decimal(creditSc), decimal(balanceSc()),
+                decimal(debitFc), decimal(creditFc), decimal(balanceFc()));
+    }
+
+    /**
+     * Creates the cost center row of the group.
+     *
+     * @return the row, or null if empty.
+     */
+    @Nullable CostCenterRow costCenter() {
+        if (first == null) return null;
+        return new CostCenterRow(first.costCenter(), first.costCenterName(),
+                first.account(), first.accountName(),
+                decimal(debitSc), decimal(creditSc), decimal(debitFc), decimal(creditFc));
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.reports;
+
+import com.yupay.perutax.entities.AccountNature;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+
+/**
+ * A row of the trial balance (balance de comprobación).
+ * Balances are debit-positive: closing = opening + debit - credit.
+ *
+ * @param account   the tax account id.
+ * @param name      the tax account name.
+ * @param nature    the tax account nature.
+ * @param openingSc opening balance in system currency.
+ * @param debitSc   debit movements in system currency.
+ * @param creditSc  credit movements in system currency.
+ * @param closingSc closing balance in system currency.
+ * @param openingFc opening balance in foreign currency.
+ * @param debitFc   debit movements in foreign currency.
+ * @param creditFc  credit movements in foreign currency.
+ * @param closingFc closing balance in foreign currency.
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+public record TrialBalanceRow(@NotNull String account,
+                              @NotNull String name,
+                              @NotNull AccountNature nature,
+                              @NotNull BigDecimal openingSc,
+                              @NotNull BigDecimal debitSc,
+                              @NotNull BigDecimal creditSc,
+                              @NotNull BigDecimal closingSc,
+                              @NotNull BigDecimal openingFc,
+                              @NotNull BigDecimal debitFc,
+                              @NotNull BigDecimal creditFc,
+                              @NotNull BigDecimal closingFc) {
+}
@@ -10,6 +10,7 @@ module perutax {
     requires jakarta.persistence;
     requires eclipselink;
     requires org.postgresql.jdbc;
+    requires com.zaxxer.hikari;
 
     /*==============================================*
      * JavaFX dependencies                          *
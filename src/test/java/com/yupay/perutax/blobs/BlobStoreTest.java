@@ -0,0 +1,84 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.blobs;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Tests the content addressed blob store.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+class BlobStoreTest {
+    @TempDir
+    Path root;
+
+    @Test
+    void testPutAndOpen() throws IOException {
+        var store = new BlobStore(root);
+        var content = "<Invoice>F001-123</Invoice>".repeat(1_000).getBytes();
+        var digest = store.put(new ByteArrayInputStream(content), true);
+        Assertions.assertEquals(64, digest.length());
+        Assertions.assertTrue(store.contains(digest));
+        try (var in = store.open(digest)) {
+            Assertions.assertArrayEquals(content, in.readAllBytes());
+        }
+        //Same content, same blob: nothing else is written.
+        Assertions.assertEquals(digest, store.put(new ByteArrayInputStream(content), false));
+        Assertions.assertEquals(1, blobs());
+        Assertions.assertTrue(Files.size(root.resolve(digest.substring(0, 2)).resolve(digest + ".gz"))
+                < content.length);
+        var other = store.put(new ByteArrayInputStream(new byte[]{1, 2, 3}), false);
+        Assertions.assertNotEquals(digest, other);
+        Assertions.assertEquals(2, blobs());
+        Assertions.assertArrayEquals(new byte[]{1, 2, 3},
+                Files.readAllBytes(store.copy(other, root.resolve("copy.bin"))));
+    }
+
+    @Test
+    void testMissing() {
+        var store = new BlobStore(root);
+        Assertions.assertThrows(NoSuchFileException.class, () -> store.open("0".repeat(64)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.open("../../etc/passwd"));
+    }
+
+    /**
+     * Counts the blobs in the store.
+     *
+     * @return the count of blobs.
+     * @throws IOException if something fails.
+     */
+    private long blobs() throws IOException {
+        try (Stream<Path> s = Files.walk(root)) {
+            return s.filter(Files::isRegularFile)
+                    .filter(p -> !p.getParent().getFileName().toString().equals("tmp"))
+                    .count();
+        }
+    }
+}
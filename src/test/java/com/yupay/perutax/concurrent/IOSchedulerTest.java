@@ -0,0 +1,186 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnJre;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the lanes metrics of the IO scheduler.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+class IOSchedulerTest {
+    /**
+     * A standalone scheduler with two threads.
+     */
+    private final IOScheduler scheduler = new IOScheduler(2, false);
+
+    @AfterEach
+    void tearDown() {
+        //Disposes the pool.
+        scheduler.configure(2, false);
+    }
+
+    @Test
+    void testCompleted() throws InterruptedException {
+        var lane = scheduler.laneOf("test");
+        var done = new CountDownLatch(3);
+        for (var i = 0; i < 3; i++) lane.schedule(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        var stats = await("test", 3);
+        assertEquals(3, stats.submitted());
+        assertEquals(0, stats.queued());
+        assertEquals(0, stats.active());
+        assertTrue(stats.maxWaitNanos() >= 0);
+        assertSame(lane, scheduler.laneOf("test"));
+    }
+
+    @Test
+    void testQueueDepth() throws InterruptedException {
+        var lane = scheduler.laneOf("busy");
+        var started = new CountDownLatch(2);
+        var release = new CountDownLatch(1);
+        for (var i = 0; i < 2; i++) lane.schedule(() -> block(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        var ran = new AtomicBoolean();
+        lane.schedule(() -> ran.set(true));
+        var stats = stats("busy");
+        assertEquals(3, stats.submitted());
+        assertEquals(2, stats.active());
+        assertEquals(1, stats.queued());
+        assertEquals(0, stats.completed());
+        release.countDown();
+        stats = await("busy", 3);
+        assertEquals(0, stats.queued());
+        assertEquals(0, stats.active());
+        assertTrue(ran.get());
+    }
+
+    @Test
+    void testCancelledBeforeStart() throws InterruptedException {
+        var lane = scheduler.laneOf("cancel");
+        var started = new CountDownLatch(2);
+        var release = new CountDownLatch(1);
+        for (var i = 0; i < 2; i++) lane.schedule(() -> block(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        var ran = new AtomicBoolean();
+        var task = lane.schedule(() -> ran.set(true));
+        assertEquals(1, stats("cancel").queued());
+        task.dispose();
+        assertTrue(task.isDisposed());
+        assertEquals(0, stats("cancel").queued());
+        release.countDown();
+        var stats = await("cancel", 2);
+        assertEquals(3, stats.submitted());
+        assertEquals(0, stats.queued());
+        assertFalse(ran.get());
+    }
+
+    @Test
+    void testWorker() throws InterruptedException {
+        var worker = scheduler.laneOf("worker").createWorker();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        worker.schedule(() -> block(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        //A worker runs its tasks one at a time.
+        worker.schedule(() -> {
+        });
+        assertEquals(1, stats("worker").queued());
+        //Disposing the worker drops its pending tasks.
+        worker.dispose();
+        release.countDown();
+        var stats = await("worker", 1);
+        assertEquals(0, stats.queued());
+    }
+
+    @Test
+    @EnabledOnJre(JRE.JAVA_17)
+    void testVirtualFallback() throws Exception {
+        //Java 17 has no virtual threads, the setting is ignored.
+        var fallback = new IOScheduler(2, true);
+        try {
+            assertFalse(fallback.isVirtual());
+            var thread = new CompletableFuture<String>();
+            fallback.laneOf("fallback").schedule(() -> thread.complete(Thread.currentThread().getName()));
+            assertTrue(thread.get(5, TimeUnit.SECONDS).startsWith("perutax-io"));
+        } finally {
+            fallback.configure(2, false);
+        }
+    }
+
+    /**
+     * Blocks a task until released.
+     *
+     * @param started counted down when the task starts.
+     * @param release awaited by the task.
+     */
+    private static void block(CountDownLatch started, CountDownLatch release) {
+        started.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the metrics of a lane.
+     *
+     * @param lane the lane name.
+     * @return the metrics.
+     */
+    private IOScheduler.Stats stats(String lane) {
+        return scheduler.stats().stream()
+                .filter(s -> s.lane().equals(lane))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    /**
+     * Waits until a lane completes the given count of tasks. The
+     * metrics are updated right after the task, so they may lag.
+     *
+     * @param lane      the lane name.
+     * @param completed the expected completed count.
+     * @return the metrics.
+     * @throws InterruptedException if interrupted.
+     */
+    private IOScheduler.Stats await(String lane, long completed) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        var stats = stats(lane);
+        while (stats.completed() < completed && System.nanoTime() < deadline) {
+            Thread.sleep(10L);
+            stats = stats(lane);
+        }
+        assertEquals(completed, stats.completed());
+        return stats;
+    }
+}
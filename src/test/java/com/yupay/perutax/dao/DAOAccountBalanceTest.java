@@ -0,0 +1,111 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test of the account balances snapshot maintenance. Every
+ * test runs in a transaction which is rolled back at the end.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+class DAOAccountBalanceTest {
+    /**
+     * A tax account id not used by the chart of accounts.
+     */
+    private static final String ACCOUNT = "99999901";
+
+    @BeforeAll
+    static void prepare() {
+        DAOTestUtil.initDAOTest();
+    }
+
+    @AfterAll
+    static void shutdown() {
+        DAOSource.get().stopPersistence();
+    }
+
+    /**
+     * Closing a period without movements (nor row) for an account
+     * with a former balance must not shift the later periods.
+     */
+    @Test
+    void testRebuildWithoutMovements() throws SQLException {
+        var em = DAOSource.manager();
+        var tx = em.getTransaction();
+        try {
+            tx.begin();
+            var con = em.unwrap(Connection.class);
+            try (var st = con.createStatement()) {
+                st.executeUpdate("INSERT INTO public.tax_period (id, date_from, date_until) VALUES " +
+                        "('209901', '2099-01-01', '2099-01-31'), " +
+                        "('209902', '2099-02-01', '2099-02-28'), " +
+                        "('209903', '2099-03-01', '2099-03-31')");
+                st.executeUpdate("INSERT INTO public.tax_account (id, name, nature, currency, balance, usable, trash) " +
+                        "VALUES ('" + ACCOUNT + "', 'PRUEBA', 'DEBIT', 'PEN', 0, TRUE, FALSE)");
+                st.executeUpdate("INSERT INTO public.account_balance (period, account, " +
+                        "opening_sc, debit_sc, credit_sc, closing_sc, " +
+                        "opening_fc, debit_fc, credit_fc, closing_fc) VALUES " +
+                        "('209901', '" + ACCOUNT + "', 0, 100, 0, 100, 0, 0, 0, 0), " +
+                        "('209903', '" + ACCOUNT + "', 100, 10, 0, 110, 0, 0, 0, 0)");
+            }
+            DAOAccountBalance.rebuild(em, "209902");
+            assertBalance(con, "209902", "100.00", "100.00");
+            assertBalance(con, "209903", "100.00", "110.00");
+        } finally {
+            if (tx.isActive()) tx.rollback();
+            if (em.isOpen()) em.close();
+        }
+    }
+
+    /**
+     * Asserts the system currency balance of the test account.
+     *
+     * @param con     the JDBC connection.
+     * @param period  the tax period.
+     * @param opening the expected opening.
+     * @param closing the expected closing.
+     * @throws SQLException if the query fails.
+     */
+    private static void assertBalance(Connection con,
+                                      String period,
+                                      String opening,
+                                      String closing) throws SQLException {
+        try (var st = con.prepareStatement("SELECT opening_sc, closing_sc FROM public.account_balance " +
+                "WHERE period = ? AND account = ?")) {
+            st.setString(1, period);
+            st.setString(2, ACCOUNT);
+            try (var rs = st.executeQuery()) {
+                rs.next();
+                assertEquals(new BigDecimal(opening), rs.getBigDecimal(1), period + " opening");
+                assertEquals(new BigDecimal(closing), rs.getBigDecimal(2), period + " closing");
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import com.yupay.perutax.blobs.BlobStore;
+import com.yupay.perutax.blobs.FolioDocument;
+import com.yupay.perutax.entities.FolioFile;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of the folio documents shared through the database,
+ * as seen by two clients with their own blob stores.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+class DAOFolioFileTest {
+    /**
+     * The id of the test folio file.
+     */
+    private static final String ID = "00000000-0000-0000-0000-00000000f01e";
+    /**
+     * A PDF like content.
+     */
+    private static final byte[] PDF = "%PDF-1.4 test".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * An XML content.
+     */
+    private static final String XML = "<Invoice>Ñandú</Invoice>";
+    /**
+     * The DAO under test.
+     */
+    private final DAOFolioFile dao = new DAOFolioFile();
+
+    @BeforeAll
+    static void prepare() {
+        DAOTestUtil.initDAOTest();
+    }
+
+    @AfterAll
+    static void shutdown() {
+        DAOSource.get().stopPersistence();
+    }
+
+    @AfterEach
+    void cleanup() {
+        execute("DELETE FROM public.folio_file WHERE id = ?1", ID);
+    }
+
+    @Test
+    void testStoreAndOpenElsewhere(@TempDir Path tmp) throws IOException {
+        execute("INSERT INTO public.folio_file (id) VALUES (?1)", ID);
+        var here = new BlobStore(tmp.resolve("here"));
+        var there = new BlobStore(tmp.resolve("there"));
+        var file = dao.fetch(ID);
+        var pdf = Files.write(tmp.resolve("a.pdf"), PDF);
+        var xml = Files.writeString(tmp.resolve("a.xml"), XML);
+        dao.store(here, file, FolioDocument.PDF, pdf);
+        dao.store(here, file, FolioDocument.XML, xml);
+        assertTrue(here.contains(FolioDocument.PDF.digest(file)));
+        //Another client only has the database.
+        var shared = dao.fetch(ID);
+        assertEquals(file.getPdfSha(), shared.getPdfSha());
+        assertEquals(file.getXmlSha(), shared.getXmlSha());
+        assertArrayEquals(PDF, read(there, shared, FolioDocument.PDF));
+        assertEquals(XML, new String(read(there, shared, FolioDocument.XML), StandardCharsets.UTF_8));
+        assertTrue(there.contains(shared.getPdfSha()));
+        assertThrows(NoSuchFileException.class, () -> dao.open(there, shared, FolioDocument.CDR));
+        assertTrue(Files.size(dao.view(there, shared, FolioDocument.PDF)) > 0);
+    }
+
+    @Test
+    void testOlderDocuments(@TempDir Path tmp) throws IOException {
+        execute("INSERT INTO public.folio_file (id, pdf, xml) VALUES (?1, ?2, ?3)", ID, PDF, XML);
+        var here = new BlobStore(tmp.resolve("here"));
+        var there = new BlobStore(tmp.resolve("there"));
+        //Readable before and after the digests are set.
+        assertArrayEquals(PDF, read(there, dao.fetch(ID), FolioDocument.PDF));
+        assertTrue(dao.moveBlobs(here) >= 1);
+        var file = dao.fetch(ID);
+        assertNotNull(file.getPdfSha());
+        assertNotNull(file.getXmlSha());
+        assertTrue(here.contains(file.getPdfSha()));
+        assertArrayEquals(PDF, read(new BlobStore(tmp.resolve("other")), file, FolioDocument.PDF));
+        assertEquals(0, dao.moveBlobs(here));
+    }
+
+    /**
+     * Reads a whole document.
+     *
+     * @param store    the blob store.
+     * @param file     the folio file.
+     * @param document the document kind.
+     * @return the content.
+     * @throws IOException if something fails.
+     */
+    private byte[] read(BlobStore store, FolioFile file, FolioDocument document) throws IOException {
+        try (var in = dao.open(store, file, document)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Executes a native statement in its own transaction.
+     *
+     * @param sql  the statement.
+     * @param args the positional arguments.
+     */
+    private static void execute(String sql, Object... args) {
+        var em = DAOSource.manager();
+        var tx = em.getTransaction();
+        try {
+            tx.begin();
+            var q = em.createNativeQuery(sql);
+            for (var i = 0; i < args.length; i++) q.setParameter(i + 1, args[i]);
+            q.executeUpdate();
+            tx.commit();
+        } finally {
+            if (tx.isActive()) tx.rollback();
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the connection permits (no database needed).
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+class GatedDataSourceTest {
+    /**
+     * Connections open right now on the fake data source.
+     */
+    private final AtomicInteger open = new AtomicInteger();
+    /**
+     * The most connections ever open at once.
+     */
+    private final AtomicInteger maxOpen = new AtomicInteger();
+
+    @Test
+    void testNeverExceedsPermits() throws Exception {
+        var gate = new GatedDataSource(fake(false), 3, 10_000L);
+        ExecutorService threads = Executors.newFixedThreadPool(12);
+        try {
+            var futures = new ArrayList<Future<?>>();
+            for (var i = 0; i < 12; i++)
+                futures.add(threads.submit(() -> {
+                    for (var j = 0; j < 20; j++) {
+                        try (var con = gate.getConnection()) {
+                            assertFalse(con.isClosed());
+                            Thread.sleep(1L);
+                        }
+                    }
+                    return null;
+                }));
+            for (var f : futures) f.get(30, TimeUnit.SECONDS);
+        } finally {
+            threads.shutdownNow();
+        }
+        assertTrue(maxOpen.get() <= 3);
+        assertEquals(0, open.get());
+        assertEquals(3, gate.available());
+    }
+
+    @Test
+    void testHeldUntilClosed() throws SQLException {
+        var gate = new GatedDataSource(fake(false), 2, 50L);
+        var a = gate.getConnection();
+        var b = gate.getConnection();
+        assertEquals(0, gate.available());
+        assertThrows(SQLTransientConnectionException.class, gate::getConnection);
+        a.close();
+        //Closing twice gives the permit back once.
+        a.close();
+        assertEquals(1, gate.available());
+        b.close();
+        assertEquals(2, gate.available());
+        assertEquals(a, a);
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    void testFailedOpen() {
+        var gate = new GatedDataSource(fake(true), 1, 50L);
+        assertThrows(SQLException.class, gate::getConnection);
+        assertEquals(1, gate.available());
+    }
+
+    /**
+     * Creates a fake data source, counting its open connections.
+     *
+     * @param fail true to fail every opening.
+     * @return the fake data source.
+     */
+    private DataSource fake(boolean fail) {
+        return (DataSource) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("getConnection"))
+                        throw new UnsupportedOperationException(method.getName());
+                    if (fail) throw new SQLException("Connection refused.");
+                    maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+                    return connection();
+                });
+    }
+
+    /**
+     * Creates a fake connection.
+     *
+     * @return the fake connection.
+     */
+    private Connection connection() {
+        var closed = new boolean[1];
+        return (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "close" -> {
+                        if (!closed[0]) open.decrementAndGet();
+                        closed[0] = true;
+                        yield null;
+                    }
+                    case "isClosed" -> closed[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import com.yupay.perutax.entities.CostCenter;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the in-memory search index (no database needed).
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+class SearchIndexTest {
+    @Test
+    void testFold() {
+        assertEquals("pena nahui, jose", SearchIndex.fold("Peña ÑAHUI, José"));
+        assertEquals("abc 123", SearchIndex.fold("ABC 123"));
+        assertEquals("", SearchIndex.fold(null));
+        assertTrue(SearchIndex.matches("A01", "Almacén", "alma"));
+        assertTrue(SearchIndex.matches("A01", "Almacén", "a0"));
+        assertFalse(SearchIndex.matches("A01", "Almacén", "01"));
+    }
+
+    @Test
+    void testSearch() {
+        var db = new HashMap<Object, CostCenter>();
+        put(db, "A01", "ADMINISTRACIÓN", false);
+        put(db, "V01", "VENTAS LIMA", false);
+        put(db, "V02", "VENTAS PROVINCIAS", false);
+        put(db, "P01", "PRODUCCIÓN PLANTA VENTANILLA", false);
+        put(db, "X01", "VENTAS ANULADAS", true);
+        var index = index(db);
+        //Key matches first, then text prefix, then text contains.
+        assertEquals(List.of("V01", "V02"), ids(index.search("v0")));
+        assertEquals(List.of("V01", "V02", "P01"), ids(index.search("vent")));
+        assertEquals(List.of("A01", "P01"), ids(index.search("cion")));
+        assertEquals(List.of("V02"), ids(index.search("  Provincias ")));
+        assertEquals(List.of("V01"), ids(index.search("vent", c -> c.getId().endsWith("1"), 1)));
+        assertTrue(index.search("zzz").isEmpty());
+        assertTrue(index.search(" ").isEmpty());
+        //Results are copies.
+        index.search("A01").get(0).setTitle("OTRO");
+        assertEquals("ADMINISTRACIÓN", index.search("A01").get(0).getTitle());
+        //Incremental updates.
+        put(db, "V01", "COMERCIAL LIMA", false);
+        put(db, "V03", "VENTAS EXTERIOR", false);
+        db.get("V02").setTrash(true);
+        db.remove("A01");
+        index.refresh(List.of("V01", "V02", "V03", "A01"));
+        assertEquals(List.of("V03"), ids(index.search("ventas")));
+        assertEquals(List.of("V03", "P01"), ids(index.search("vent")));
+        assertEquals(List.of("V01"), ids(index.search("comercial")));
+        assertTrue(index.search("admin").isEmpty());
+    }
+
+    /**
+     * Creates an index over an in-memory table.
+     *
+     * @param db the table.
+     * @return the index.
+     */
+    private static SearchIndex<CostCenter> index(Map<Object, CostCenter> db) {
+        return new SearchIndex<>(
+                () -> db.values().stream().map(CostCenter::new),
+                id -> db.containsKey(id) ? new CostCenter(db.get(id)) : null,
+                CostCenter::getId,
+                CostCenter::getId,
+                CostCenter::getTitle,
+                c -> !c.isTrash(),
+                CostCenter::new);
+    }
+
+    /**
+     * Puts a cost center into the in-memory table.
+     *
+     * @param db    the table.
+     * @param id    the id.
+     * @param title the title.
+     * @param trash the trash flag.
+     */
+    private static void put(Map<Object, CostCenter> db, String id, String title, boolean trash) {
+        var r = new CostCenter();
+        r.setId(id);
+        r.setTitle(title);
+        r.setTrash(trash);
+        db.put(id, r);
+    }
+
+    /**
+     * Maps results to ids.
+     *
+     * @param results the results.
+     * @return the ids.
+     */
+    private static List<String> ids(List<CostCenter> results) {
+        return results.stream().map(CostCenter::getId).toList();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.dao;
+
+import com.yupay.perutax.entities.XRate;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the date indexed exchange rates series (no database needed).
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+class XRateCacheTest {
+    @Test
+    void testLookups() {
+        var table = new XRateCache.Table(List.of(
+                rate(1, "2021-01-04", "3.612", "3.618"),
+                rate(2, "2021-01-01", "3.600", "3.605"),
+                rate(3, "2021-01-08", "3.700", "3.710")));
+        var day = LocalDate.parse("2021-01-04").toEpochDay();
+        var x = table.at(day);
+        assertNotNull(x);
+        assertEquals(1, x.getId());
+        assertEquals(new BigDecimal("3.612"), x.getPrch());
+        assertEquals(new BigDecimal("3.618"), x.getSale());
+        assertNull(table.at(day + 1));
+        assertNull(table.at(day - 10));
+        assertNull(table.at(day + 10));
+        assertEquals(1, table.floor(day + 1).getId());
+        assertEquals(LocalDate.parse("2021-01-04"), table.floor(day + 3).getTaxDate());
+        assertEquals(3, table.floor(day + 100).getId());
+        assertNull(table.floor(day - 4));
+        assertNull(new XRateCache.Table(List.of()).floor(day));
+    }
+
+    /**
+     * Creates a new exchange rate.
+     *
+     * @param id   the id.
+     * @param date the date.
+     * @param prch the purchase rate.
+     * @param sale the sale rate.
+     * @return the exchange rate.
+     */
+    private static XRate rate(long id, String date, String prch, String sale) {
+        var r = new XRate();
+        r.setId(id);
+        r.setTaxDate(LocalDate.parse(date));
+        r.setPrch(new BigDecimal(prch));
+        r.setSale(new BigDecimal(sale));
+        return r;
+    }
+}
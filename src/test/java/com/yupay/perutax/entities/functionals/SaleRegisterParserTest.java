@@ -0,0 +1,89 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.entities.functionals;
+
+import com.yupay.perutax.entities.Currenci;
+import com.yupay.perutax.entities.SaleTotal;
+import com.yupay.perutax.entities.SaleTotalClass;
+import com.yupay.perutax.entities.TypeFolio;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Tests the sales register line parser.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+class SaleRegisterParserTest {
+    @Test
+    void testSaleRegister() {
+        var invoice = folio("01", "(\\d){4}|F(\\d|\\w){3}");
+        var note = folio("07", "F(\\d|\\w){3}");
+        var parser = new SaleRegisterParser(SaleRegisterParser.Layout.PLE, List.of(invoice, note));
+        var r = parser.apply("20220300|CUO1|M0001|11/03/2022||07|F001|00000010||6|20100070970|CLIENTE|"
+                + "0.00|-100.00|0.00|-18.00|0.00|0.00|0.00|0.00|0.00|0.00|0.00|0.00|-118.00|PEN|3.750|"
+                + "10/03/2022|01|F001|9||||1|\r");
+        Assertions.assertSame(note, r.getFolioType());
+        Assertions.assertEquals("F001", r.getFolioSerie());
+        Assertions.assertEquals("00000010", r.getFolioNum());
+        Assertions.assertEquals(LocalDate.of(2022, 3, 11), r.getDateDoc());
+        Assertions.assertNull(r.getDateDue());
+        Assertions.assertEquals("20100070970", r.getPerson().getDoiNum());
+        Assertions.assertEquals(List.of(SaleTotalClass.TAXABLE, SaleTotalClass.TAX),
+                r.getTotals().stream().map(SaleTotal::getType).toList());
+        Assertions.assertEquals(new BigDecimal("-118.00"), r.getPayableSc());
+        Assertions.assertEquals(Currenci.PEN, r.getCurrency());
+        Assertions.assertEquals(new BigDecimal("3.750"), r.getXrate());
+        Assertions.assertSame(invoice, r.getModified().getFolioType());
+        Assertions.assertEquals(LocalDate.of(2022, 3, 10), r.getModified().getDateDoc());
+        Assertions.assertFalse(r.isVoided());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> parser.apply(
+                "20220300|CUO1|M0001|11/03/2022||01|B001|1||6|20100070970|CLIENTE|"
+                        + "0|0|0|0|0|0|0|0|0|0|0|0|0|PEN|1.000|||||||||1|"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> parser.apply(
+                "20220300|CUO1|M0001|31/02/2022||01|F001|1||6|20100070970|CLIENTE|"
+                        + "0|0|0|0|0|0|0|0|0|0|0|0|0|PEN|1.000|||||||||1|"));
+        var sire = new SaleRegisterParser(SaleRegisterParser.Layout.SIRE, List.of(invoice));
+        Assertions.assertNull(sire.apply("RUC|Apellidos y Nombres|Periodo|CAR SUNAT"));
+        Assertions.assertTrue(sire.apply("20100070970|EMPRESA|202203|CAR1|02/03/2022||01|F001|1||1|12345678|X|"
+                + "0.00|0.00|0.00|0.00|0.00|0.00|0.00|0.00|0.00|0.00|0.00|0.00|0.00|PEN|1.000|||||||").isVoided());
+        Assertions.assertNull(parser.apply(" "));
+    }
+
+    /**
+     * Creates a folio type.
+     *
+     * @param id    the id.
+     * @param serie the serie rule.
+     * @return the folio type.
+     */
+    private static TypeFolio folio(String id, String serie) {
+        var r = new TypeFolio();
+        r.setId(id);
+        r.setRegexSerie(serie);
+        r.setRegexNumber("\\d{1,8}");
+        return r;
+    }
+}
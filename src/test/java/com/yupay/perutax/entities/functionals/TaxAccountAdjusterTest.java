@@ -0,0 +1,93 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.entities.functionals;
+
+import com.yupay.perutax.entities.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Tests the aggregation of balance deltas per account.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+class TaxAccountAdjusterTest {
+    @Test
+    void testDeltas() {
+        var cash = account("10100000", AccountNature.DEBIT, Currenci.PEN);
+        var bank = account("10410100", AccountNature.DEBIT, Currenci.USD);
+        var pay = account("42120000", AccountNature.CREDIT, Currenci.PEN);
+        var journal = new Journal();
+        journal.setCurrency(Currenci.USD);
+        journal.setXrate(new BigDecimal("4.000"));
+        journal.getDetail().addAll(List.of(
+                line(pay, "10.00", "40.00", true),
+                line(pay, "5.00", "20.00", true),
+                line(cash, "2.50", "10.00", false),
+                line(bank, "12.50", "50.00", false)));
+        var deltas = new TaxAccountAdjuster().add(journal).deltas();
+        Assertions.assertEquals(List.of("10100000", "10410100", "42120000"),
+                List.copyOf(deltas.keySet()));
+        Assertions.assertEquals(new BigDecimal("-10.00"), deltas.get("10100000"));
+        Assertions.assertEquals(new BigDecimal("-12.50"), deltas.get("10410100"));
+        Assertions.assertEquals(new BigDecimal("-60.00"), deltas.get("42120000"));
+    }
+
+    /**
+     * Creates a new account.
+     *
+     * @param id       the id.
+     * @param nature   the nature.
+     * @param currency the currency.
+     * @return the account.
+     */
+    private static TaxAccount account(String id, AccountNature nature, Currenci currency) {
+        var r = new TaxAccount();
+        r.setId(id);
+        r.setNature(nature);
+        r.setCurrency(currency);
+        return r;
+    }
+
+    /**
+     * Creates a new journal line.
+     *
+     * @param acc   the account.
+     * @param fc    the foreign currency amount.
+     * @param sc    the system currency amount.
+     * @param debit true for debit, false for credit.
+     * @return the line.
+     */
+    private static JournalDt line(TaxAccount acc, String fc, String sc, boolean debit) {
+        var r = new JournalDt();
+        r.setAccount(acc);
+        if (debit) {
+            r.setDebitFc(new BigDecimal(fc));
+            r.setDebitSc(new BigDecimal(sc));
+        } else {
+            r.setCreditFc(new BigDecimal(fc));
+            r.setCreditSc(new BigDecimal(sc));
+        }
+        return r;
+    }
+}
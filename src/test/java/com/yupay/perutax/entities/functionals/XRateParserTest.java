@@ -0,0 +1,53 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.entities.functionals;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Tests the hand written xrate line parser.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+class XRateParserTest {
+    @Test
+    void testXRate() {
+        var parser = new XRateParser();
+        var r = parser.apply(" 2021-01-23,3.895,3.945 ");
+        Assertions.assertEquals(LocalDate.of(2021, 1, 23), r.getTaxDate());
+        Assertions.assertEquals(new BigDecimal("3.895"), r.getPrch());
+        Assertions.assertEquals(new BigDecimal("3.945"), r.getSale());
+        r = parser.apply("2021-02-30;3.8950000000000000001|03.90");
+        Assertions.assertEquals(LocalDate.of(2021, 2, 28), r.getTaxDate());
+        Assertions.assertEquals(new BigDecimal("3.8950000000000000001"), r.getPrch());
+        Assertions.assertEquals(new BigDecimal("3.90"), r.getSale());
+        Assertions.assertNull(parser.apply("2021-01-23,3.895"));
+        Assertions.assertNull(parser.apply("2021-01-23,3.895,3.945,"));
+        Assertions.assertNull(parser.apply("2021-1-23,3.895,3.945"));
+        Assertions.assertNull(parser.apply("2021-01-23,3,3.945"));
+        Assertions.assertNull(parser.apply("2021-01-23 3.895 3.945"));
+        Assertions.assertNull(parser.apply(""));
+        Assertions.assertNull(parser.apply(null));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.entities.validation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Tests the document of identity validations and the bulk API.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+class DOIValidationTest {
+    @Test
+    void testFormats() {
+        var dni = DOIValidation.dni();
+        Assertions.assertTrue(dni.test("70096813"));
+        Assertions.assertFalse(dni.test("7009681"));
+        Assertions.assertFalse(dni.test("7009681a"));
+        Assertions.assertSame(dni, DOIValidation.forType("1"));
+        Assertions.assertSame(DOIValidation.ruc(), DOIValidation.forType("6"));
+        Assertions.assertTrue(DOIValidation.forType("7").test("AB1234567"));
+        Assertions.assertFalse(DOIValidation.forType("4").test("AB-1234567"));
+        Assertions.assertFalse(DOIValidation.forType("4").test("AB12345678901"));
+        Assertions.assertTrue(DOIValidation.forType("A").test("123456789012345"));
+        Assertions.assertFalse(DOIValidation.forType("A").test("1234567890123456"));
+        Assertions.assertTrue(DOIValidation.forType("0").test("X-1 / 2"));
+        Assertions.assertFalse(DOIValidation.forType("0").test("   "));
+        Assertions.assertNull(DOIValidation.forType("Z"));
+    }
+
+    @Test
+    void testFailures() {
+        var ruc = DOIValidation.ruc();
+        var expected = new BitSet();
+        expected.set(1);
+        expected.set(3);
+        Assertions.assertEquals(expected, ruc.failures(
+                Arrays.asList("20604427909", "10700968132", "10700968133", null)));
+        Assertions.assertEquals(expected, ruc.failures(
+                "20604427909\r\n10700968132\n10700968133\n\n"));
+        Assertions.assertTrue(ruc.failures("").isEmpty());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.yupay.perutax.forms.inner;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the search pipeline cache (no database needed).
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+class SearchPipelineTest {
+    @Test
+    void testPrefixReuse() {
+        var pipeline = new SearchPipeline<String>(s -> List.of(), 3);
+        //Complete results (fewer than the limit) serve longer terms.
+        pipeline.remember("Pe", List.of("PEÑA", "PEREZ"));
+        assertEquals(List.of("PEÑA", "PEREZ"), pipeline.cached("pena"));
+        assertEquals(List.of("PEÑA", "PEREZ"), pipeline.cached("pe"));
+        //Truncated results (as many as the limit) only serve the same terms.
+        pipeline.remember("ma", List.of("MAMANI", "MARIN", "MATOS"));
+        assertEquals(3, pipeline.cached("ma").size());
+        assertNull(pipeline.cached("mar"));
+        //The longest cached prefix wins.
+        pipeline.remember("mar", List.of("MARIN"));
+        assertEquals(List.of("MARIN"), pipeline.cached("marin"));
+        assertNull(pipeline.cached("x"));
+        //Blank terms aren't remembered.
+        pipeline.remember("  ", List.of("X"));
+        assertNull(pipeline.cached(""));
+    }
+
+    @Test
+    void testLeastRecentlyUsed() {
+        var pipeline = new SearchPipeline<String>(s -> List.of(), 10);
+        for (int i = 0; i < 32; i++) pipeline.remember("t" + i, List.of("T" + i));
+        //Touching the eldest keeps it, so the next one is evicted.
+        assertNotNull(pipeline.cached("t0"));
+        pipeline.remember("t32", List.of("T32"));
+        assertNotNull(pipeline.cached("t0"));
+        assertNull(pipeline.cached("t1"));
+        assertNotNull(pipeline.cached("t32"));
+    }
+
+    @Test
+    void testLookup() {
+        var queried = new ArrayList<String>();
+        var pipeline = new SearchPipeline<String>(s -> {
+            queried.add(s);
+            return List.of(s.toUpperCase());
+        }, 10);
+        assertEquals(List.of("AB"), pipeline.lookup("ab").block());
+        //Cached under the folded terms, and reused by longer ones.
+        assertEquals(List.of("AB"), pipeline.lookup("AB").block());
+        assertEquals(List.of("AB"), pipeline.lookup("abc").block());
+        assertEquals(List.of("ab"), queried);
+    }
+
+    @Test
+    void testResults() {
+        var queried = new ArrayList<String>();
+        var pipeline = new SearchPipeline<String>(s -> {
+            queried.add(s);
+            return List.of(s);
+        }, 10);
+        //Blank terms are ignored, and only the last of a burst is queried.
+        var r = pipeline.results(Flux.just(" ", "l", "li", " lim ")).collectList().block();
+        assertEquals(List.of(List.of("lim")), r);
+        assertEquals(List.of("lim"), queried);
+    }
+}
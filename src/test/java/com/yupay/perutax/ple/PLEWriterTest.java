@@ -0,0 +1,71 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.ple;
+
+import com.yupay.perutax.entities.Currenci;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Tests the PLE fields formatting and file naming.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+class PLEWriterTest {
+    @Test
+    void testFields() {
+        var out = new ByteArrayOutputStream();
+        try (var w = new PLEWriter(Channels.newChannel(out))) {
+            w.text(" A|B/C\\D\r\nÑ€ ", 200)
+                    .text("ABCDEF", 3)
+                    .text(null)
+                    .empty()
+                    .amount(0)
+                    .amount(5)
+                    .amount(-123456)
+                    .amount(Long.MIN_VALUE)
+                    .decimal(3750, 3)
+                    .decimal(-5, 0)
+                    .number(7, 3)
+                    .code('M', 12, 4)
+                    .date(LocalDate.of(2022, 3, 5))
+                    .date(null)
+                    .endLine();
+            Assertions.assertEquals(1, w.lines());
+        }
+        Assertions.assertEquals("A B C D  Ñ?|ABC|||0.00|0.05|-1234.56|-92233720368547758.08|3.750|-5|007|M0012|05/03/2022||\r\n",
+                out.toString(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    void testFileName() {
+        var name = new PLEFileName("20100070970", 2022, 3, "050100", false, Currenci.PEN);
+        Assertions.assertEquals("LE2010007097020220300050100001111.TXT", name.resolve(true));
+        Assertions.assertEquals("LE2010007097020220300050100001011.TXT", name.resolve(false));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new PLEFileName("20100070971", 2022, 3, "050100", false, Currenci.PEN));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *  Perutax - Taxation software for Peru.
+ *     Copyright (C) 2021-2022  Ingenieria Informatica Yupay SACS
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.yupay.perutax.reports;
+
+import com.yupay.perutax.entities.AccountNature;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Tests the streaming aggregations of the report engine.
+ *
+ * @author InfoYupay SACS
+ * @version 1.0
+ */
+class ReportEngineTest {
+    private static LedgerRow opening(String account, long sc) {
+        return new LedgerRow(true, account, "CTA " + account, AccountNature.DEBIT, "202202",
+                null, null, 0, null, null, null, Math.max(sc, 0), Math.max(-sc, 0), 0, 0);
+    }
+
+    private static LedgerRow line(String account, String cc, long debit, long credit) {
+        return new LedgerRow(false, account, "CTA " + account, AccountNature.DEBIT, "202203",
+                LocalDate.of(2022, 3, 1), "M000000001", 1, cc, cc, "x", debit, credit, debit, credit);
+    }
+
+    @Test
+    void testTrialBalance() {
+        var rows = ReportEngine.trialBalance(Flux.just(
+                        opening("101", -500),
+                        line("101", null, 1_000, 0),
+                        line("101", null, 0, 250),
+                        line("121", null, 199, 0)))
+                .collectList().block();
+        Assertions.assertNotNull(rows);
+        Assertions.assertEquals(2, rows.size());
+        var r = rows.get(0);
+        Assertions.assertEquals("101", r.account());
+        Assertions.assertEquals(new BigDecimal("-5.00"), r.openingSc());
+        Assertions.assertEquals(new BigDecimal("10.00"), r.debitSc());
+        Assertions.assertEquals(new BigDecimal("2.50"), r.creditSc());
+        Assertions.assertEquals(new BigDecimal("2.50"), r.closingSc());
+        Assertions.assertEquals(new BigDecimal("1.99"), rows.get(1).closingSc());
+        Assertions.assertEquals(0L, ReportEngine.trialBalance(Flux.empty()).count().block());
+    }
+
+    @Test
+    void testGeneralLedger() {
+        var rows = ReportEngine.generalLedger(Flux.just(
+                        opening("101", 500),
+                        line("101", null, 100, 0),
+                        line("121", null, 0, 300)))
+                .collectList().block();
+        Assertions.assertNotNull(rows);
+        Assertions.assertEquals(5, rows.size());
+        Assertions.assertEquals(GeneralLedgerRow.Kind.OPENING, rows.get(0).kind());
+        Assertions.assertEquals(new BigDecimal("6.00"), rows.get(1).balanceSc());
+        Assertions.assertEquals(GeneralLedgerRow.Kind.CLOSING, rows.get(2).kind());
+        Assertions.assertEquals(new BigDecimal("1.00"), rows.get(2).debitSc());
+        Assertions.assertEquals(new BigDecimal("6.00"), rows.get(2).balanceSc());
+        Assertions.assertEquals(new BigDecimal("-3.00"), rows.get(4).balanceSc());
+    }
+
+    @Test
+    void testCostCenters() {
+        var rows = ReportEngine.costCenters(Flux.just(
+                        line("601", "A01", 100, 0),
+                        line("601", "A01", 50, 0),
+                        line("621", "A01", 10, 0),
+                        line("601", null, 7, 0)))
+                .collectList().block();
+        Assertions.assertNotNull(rows);
+        Assertions.assertEquals(3, rows.size());
+        Assertions.assertEquals(new BigDecimal("1.50"), rows.get(0).debitSc());
+        Assertions.assertNull(rows.get(2).costCenter());
+    }
+
+    @Test
+    void testCents() {
+        Assertions.assertEquals(12_346L, Cents.of(new BigDecimal("123.455")));
+        Assertions.assertEquals(new BigDecimal("-0.05"), Cents.decimal(-5));
+    }
+}